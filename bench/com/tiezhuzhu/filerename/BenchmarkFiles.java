@@ -0,0 +1,170 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试使用的临时文件工具
+ * 默认在 /dev/shm（tmpfs）下创建文件，避免磁盘 I/O 干扰测量结果；可通过 {@code bench.dir} 指定其它目录
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class BenchmarkFiles {
+
+    private static final String SHARED_ROOT = "file-rename-bench";
+    // 合成目录中子目录和排除文件的间隔，模拟真实目录中混杂的非候选项
+    private static final int SUBDIRECTORY_INTERVAL = 100;
+    private static final int EXCLUDED_INTERVAL = 50;
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * 创建基准测试使用的临时目录
+     *
+     * @param prefix 目录名前缀
+     * @return 新建的临时目录
+     */
+    static Path createTempDirectory(String prefix) {
+        Path base = baseDirectory();
+        try {
+            return Files.isDirectory(base)
+                    ? Files.createTempDirectory(base, prefix)
+                    : Files.createTempDirectory(prefix);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 获取只读的合成目录，不存在时创建
+     * 每组参数都在独立的 JVM 中运行，为避免 100 万文件的目录被反复生成，目录在多次运行之间共享，
+     * 位于 {@code <bench.dir>/file-rename-bench/<count>}，不再需要时需手动删除。
+     *
+     * @param count 文件数量
+     * @return 合成目录
+     */
+    static Path sharedDirectory(int count) {
+        Path root = baseDirectory().resolve(SHARED_ROOT);
+        Path dir = root.resolve(Integer.toString(count));
+        // 完成标记放在目录外，避免参与扫描
+        Path marker = root.resolve(count + ".complete");
+        if (Files.exists(marker)) {
+            return dir;
+        }
+        deleteRecursively(dir);
+        try {
+            Files.createDirectories(dir);
+            createSyntheticDirectory(dir, count);
+            Files.createFile(marker);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return dir;
+    }
+
+    /**
+     * 获取基准测试的根目录，优先使用 bench.dir，其次 /dev/shm，最后是系统临时目录
+     *
+     * @return 根目录
+     */
+    private static Path baseDirectory() {
+        String configured = System.getProperty("bench.dir");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        Path shm = Paths.get("/dev/shm");
+        return Files.isDirectory(shm) ? shm : Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * 生成一个合成文件名，名称中包含年份、分隔符和扩展名，所有模式都能匹配到内容
+     *
+     * @param index 序号
+     * @return 文件名
+     */
+    static String syntheticName(int index) {
+        return "Series_" + (1900 + index % 200) + "-episode " + index + ".mkv";
+    }
+
+    /**
+     * 在目录中创建指定数量的空文件
+     *
+     * @param dir   目标目录
+     * @param count 文件数量
+     */
+    static void createFiles(Path dir, int count) {
+        try {
+            for (int i = 0; i < count; i++) {
+                Files.createFile(dir.resolve(syntheticName(i)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 在目录中创建接近真实场景的合成内容：大部分为可匹配的文件，夹杂少量子目录和 .exe 文件
+     *
+     * @param dir   目标目录
+     * @param count 目录项数量
+     */
+    static void createSyntheticDirectory(Path dir, int count) {
+        try {
+            for (int i = 0; i < count; i++) {
+                String name = syntheticName(i);
+                if (i % SUBDIRECTORY_INTERVAL == SUBDIRECTORY_INTERVAL - 1) {
+                    Files.createDirectory(dir.resolve(name + ".d"));
+                } else if (i % EXCLUDED_INTERVAL == EXCLUDED_INTERVAL - 1) {
+                    Files.createFile(dir.resolve(name + ".exe"));
+                } else {
+                    Files.createFile(dir.resolve(name));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 为指定模式创建一条能够匹配合成文件名的规则
+     *
+     * @param mode 模式编号（1-8）
+     * @return 规则对象
+     */
+    static RenameRule ruleFor(int mode) {
+        switch (mode) {
+            case 1:
+                return RenameRule.create(1, "", 0, 0, "");
+            case 2:
+            case 3:
+                return RenameRule.create(mode, "", 3, 0, "X");
+            case 4:
+                return RenameRule.create(4, "", 3, 2, "X");
+            default:
+                return RenameRule.create(mode, "-", 4, 0, "X");
+        }
+    }
+
+    /**
+     * 递归删除目录
+     *
+     * @param dir 目标目录
+     */
+    static void deleteRecursively(Path dir) {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
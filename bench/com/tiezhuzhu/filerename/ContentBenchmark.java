@@ -0,0 +1,131 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 按内容计算校验值的基准测试（模式10）
+ * 对总计 256MB 的文件分别用三种方式计算校验值：InputStream 逐个读取（对照）、单线程按位置读取或内存映射、
+ * 以及 {@link FileContent#applyAll} 多线程并行。每次调用前更新文件的修改时间，使缓存失效。
+ * 1MB 的文件按位置读取，32MB 的文件按窗口内存映射。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContentBenchmark {
+
+    private static final long TOTAL_BYTES = 256L << 20;
+
+    @Param({"1", "32"})
+    public int fileSizeMb;
+
+    @Param({"CRC32C", "SHA-256"})
+    public String algorithm;
+
+    private Path dir;
+    private List<String> names;
+    private List<RenameRule> rules;
+    private long mtime = System.currentTimeMillis();
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkFiles.createTempDirectory("content");
+        System.setProperty("rename.contentCache", dir.resolveSibling(dir.getFileName() + ".cache").toString());
+        byte[] data = new byte[fileSizeMb << 20];
+        names = new ArrayList<>();
+        for (int i = 0; i < TOTAL_BYTES / data.length; i++) {
+            ThreadLocalRandom.current().nextBytes(data);
+            String name = "file-" + i + ".bin";
+            Files.write(dir.resolve(name), data);
+            names.add(name);
+        }
+        rules = Collections.singletonList(RenameRule.create(10, algorithm, 8, 0, ""));
+    }
+
+    @Setup(Level.Invocation)
+    public void invalidateCache() throws IOException {
+        mtime += 1000;
+        for (String name : names) {
+            Files.setLastModifiedTime(dir.resolve(name), FileTime.fromMillis(mtime));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(dir);
+        Files.deleteIfExists(dir.resolveSibling(dir.getFileName() + ".cache"));
+    }
+
+    /**
+     * 对照：InputStream 以 8KB 缓冲区逐个读取
+     */
+    @Benchmark
+    public void stream(Blackhole blackhole) throws IOException, NoSuchAlgorithmException {
+        byte[] buffer = new byte[8192];
+        for (String name : names) {
+            CRC32C checksum = new CRC32C();
+            MessageDigest digest = algorithm.equals(FileContent.CRC32C) ? null : MessageDigest.getInstance(algorithm);
+            try (InputStream in = Files.newInputStream(dir.resolve(name))) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    if (digest == null) {
+                        checksum.update(buffer, 0, read);
+                    } else {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+            }
+            blackhole.consume(digest == null ? checksum.getValue() : digest.digest());
+        }
+    }
+
+    /**
+     * 单线程按位置读取或内存映射
+     */
+    @Benchmark
+    public void sequential(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(RenameRule.applyAll(rules, name, dir.resolve(name)));
+        }
+    }
+
+    /**
+     * 多线程并行
+     */
+    @Benchmark
+    public String[] parallel() {
+        return FileContent.applyAll(rules, dir, names);
+    }
+}
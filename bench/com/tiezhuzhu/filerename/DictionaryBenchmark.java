@@ -0,0 +1,83 @@
+package com.tiezhuzhu.filerename;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 词典匹配基准测试
+ * 在 10 万个合成文件名上对比两种查找词条的方式：逐个词条调用 indexOf 与一遍扫描的自动机，
+ * 词条数量从 10 增加到 5 万时，indexOf 的耗时随词条数量线性增长，自动机只随命中次数略有增加。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DictionaryBenchmark {
+
+    private static final int NAME_COUNT = 100_000;
+
+    @Param({"10", "1000", "50000"})
+    public int tokenCount;
+
+    private String[] names;
+    private List<String> tokens;
+    private RenameRule rule;
+
+    @Setup
+    public void setUp() {
+        names = new String[NAME_COUNT];
+        for (int i = 0; i < NAME_COUNT; i++) {
+            names[i] = BenchmarkFiles.syntheticName(i);
+        }
+        // 词条越多，包含词条的文件名也越多
+        tokens = new ArrayList<>(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            tokens.add("episode " + (i * 10));
+        }
+        rule = new RenameRule.DictionaryRule(TokenAutomaton.of(tokens), RenameRule.DictionaryRule.STRIP, "");
+    }
+
+    /**
+     * 逐个词条查找，相当于每个词条各运行一次
+     */
+    @Benchmark
+    @OperationsPerInvocation(NAME_COUNT)
+    public void indexOfEach(Blackhole blackhole) {
+        for (String name : names) {
+            for (String token : tokens) {
+                blackhole.consume(name.indexOf(token));
+            }
+        }
+    }
+
+    /**
+     * 自动机一遍扫描找出全部词条并改写
+     */
+    @Benchmark
+    @OperationsPerInvocation(NAME_COUNT)
+    public void automaton(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(rule.apply(name));
+        }
+    }
+}
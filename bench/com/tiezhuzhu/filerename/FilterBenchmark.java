@@ -0,0 +1,98 @@
+package com.tiezhuzhu.filerename;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 名称过滤基准测试
+ * 在内存中的合成文件名上比较逐个 endsWith 比较扩展名（对照，原 shouldSkipFile 的写法）和 {@link EntryFilter}
+ * 按哈希集合查找扩展名的耗时，以及加入通配符规则后的耗时，不涉及文件系统。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+    private static final int FILE_COUNT = 100_000;
+
+    @Param({"2", "50"})
+    public int extensionCount;
+
+    private String[] names;
+    private String[] extensions;
+    private EntryFilter filter;
+    private EntryFilter globFilter;
+
+    @Setup
+    public void setUp() {
+        names = new String[FILE_COUNT];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            names[i] = BenchmarkFiles.syntheticName(i);
+        }
+        extensions = new String[extensionCount];
+        StringBuilder rules = new StringBuilder();
+        for (int i = 0; i < extensionCount; i++) {
+            extensions[i] = ".x" + i;
+            rules.append(rules.length() == 0 ? "" : ",").append('*').append(extensions[i]);
+        }
+        filter = new EntryFilter(rules.toString(), "", false, 0, Long.MAX_VALUE,
+                Long.MIN_VALUE, Long.MAX_VALUE, "");
+        globFilter = new EntryFilter(rules + ",~$*,*.part[0-9],Series_19?? *.{tmp,bak}", "", false,
+                0, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, "");
+    }
+
+    /**
+     * 对照：对每个名称逐个比较扩展名
+     */
+    @Benchmark
+    public void linear(Blackhole blackhole) {
+        for (String name : names) {
+            boolean skip = false;
+            for (String extension : extensions) {
+                if (name.endsWith(extension)) {
+                    skip = true;
+                    break;
+                }
+            }
+            blackhole.consume(skip);
+        }
+    }
+
+    /**
+     * 扩展名按哈希集合查找
+     */
+    @Benchmark
+    public void hashed(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(filter.excludes(name));
+        }
+    }
+
+    /**
+     * 扩展名按哈希集合查找，另有几条通配符规则（先比较字面文字，再匹配正则）
+     */
+    @Benchmark
+    public void hashedWithGlobs(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(globFilter.excludes(name));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.tiezhuzhu.filerename;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 匹配阶段基准测试
+ * 在内存中的合成文件名上分别测量定位（原 extractInfo）和生成新文件名（原 generateNewName）的耗时，不涉及文件系统。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int fileCount;
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8"})
+    public int mode;
+
+    private String[] names;
+    private RenameRule rule;
+
+    @Setup
+    public void setUp() {
+        names = new String[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            names[i] = BenchmarkFiles.syntheticName(i);
+        }
+        rule = BenchmarkFiles.ruleFor(mode);
+    }
+
+    @Benchmark
+    public void locate(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(rule.locate(name));
+        }
+    }
+
+    @Benchmark
+    public void apply(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(rule.apply(name));
+        }
+    }
+}
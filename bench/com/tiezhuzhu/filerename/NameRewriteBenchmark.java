@@ -0,0 +1,77 @@
+package com.tiezhuzhu.filerename;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 文件名改写基准测试
+ * 在 100 万个合成文件名上对比两种生成新文件名的方式：
+ * 原有的 substring + replaceFirst(Pattern.quote(...)) 与基于匹配区间的 StringBuilder 拼接。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameRewriteBenchmark {
+
+    private static final int NAME_COUNT = 1_000_000;
+
+    @Param({"2", "3", "5", "8"})
+    public int mode;
+
+    private String[] names;
+    private RenameRule rule;
+
+    @Setup
+    public void setUp() {
+        names = new String[NAME_COUNT];
+        for (int i = 0; i < NAME_COUNT; i++) {
+            names[i] = BenchmarkFiles.syntheticName(i);
+        }
+        rule = BenchmarkFiles.ruleFor(mode);
+    }
+
+    /**
+     * 原有方式：截取匹配内容后，再编译一个正则重新查找并替换
+     */
+    @Benchmark
+    @OperationsPerInvocation(NAME_COUNT)
+    public void replaceFirst(Blackhole blackhole) {
+        for (String name : names) {
+            if (rule.locate(name) && rule.start < rule.end) {
+                String matchedPart = name.substring(rule.start, rule.end);
+                blackhole.consume(name.replaceFirst(Pattern.quote(matchedPart), rule.replaceTo));
+            }
+        }
+    }
+
+    /**
+     * 现有方式：按匹配区间在复用的 StringBuilder 中拼接
+     */
+    @Benchmark
+    @OperationsPerInvocation(NAME_COUNT)
+    public void offsets(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(rule.apply(name));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 计划文件基准测试
+ * 比较 JSONL 与二进制计划文件按目录分组读出全部文件对的耗时。读写是否一致由 {@code PlanFileTest} 检查。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PlanFileBenchmark {
+
+    private static final int DIRECTORY_COUNT = 1000;
+
+    @Param({"100000", "1000000"})
+    public int pairCount;
+
+    @Param({"jsonl", "rplan"})
+    public String format;
+
+    private Path dir;
+    private Path plan;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkFiles.createTempDirectory("plan");
+        List<FileRenameTool.RenamePair> pairs = new ArrayList<>(pairCount);
+        int perDirectory = pairCount / DIRECTORY_COUNT;
+        for (int d = 0; d < DIRECTORY_COUNT; d++) {
+            Path directory = dir.resolve("dir-" + d);
+            for (int i = 0; i < perDirectory; i++) {
+                String name = BenchmarkFiles.syntheticName(d * perDirectory + i);
+                pairs.add(new FileRenameTool.RenamePair(directory, name, "[2019] " + name));
+            }
+        }
+        plan = dir.resolve("plan." + format);
+        PlanFile.write(plan, pairs);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.deleteRecursively(dir);
+    }
+
+    /**
+     * 按目录分组读出全部文件对
+     */
+    @Benchmark
+    public List<FileRenameTool.RenamePair> read() throws IOException {
+        List<FileRenameTool.RenamePair> pairs = new ArrayList<>(pairCount);
+        try (PlanFile.Input input = PlanFile.openInput(plan)) {
+            List<FileRenameTool.RenamePair> group;
+            while ((group = input.nextGroup()) != null) {
+                pairs.addAll(group);
+            }
+        }
+        return pairs;
+    }
+}
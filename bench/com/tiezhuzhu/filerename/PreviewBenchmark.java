@@ -0,0 +1,80 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 预览输出阶段基准测试
+ * 标准输出被替换为丢弃所有数据的流，只测量汇总统计、格式化和写出的开销，不包含终端渲染时间。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PreviewBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int fileCount;
+
+    private List<FileRenameTool.RenamePair> previewList;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setUp() {
+        Path folder = Paths.get("preview");
+        previewList = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            String name = BenchmarkFiles.syntheticName(i);
+            previewList.add(new FileRenameTool.RenamePair(folder, name, "[2024]" + name));
+        }
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void firstPage() {
+        PreviewPrinter printer = new PreviewPrinter(previewList, false);
+        printer.printSummary();
+        printer.printNextPage();
+    }
+
+    @Benchmark
+    public void printAll() {
+        new PreviewPrinter(previewList, false).printAll();
+    }
+
+    @Benchmark
+    public void writePlan() throws IOException {
+        new PreviewPrinter(previewList, false).writePlan(Writer.nullWriter());
+    }
+}
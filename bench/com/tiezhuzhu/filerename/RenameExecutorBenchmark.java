@@ -0,0 +1,78 @@
+package com.tiezhuzhu.filerename;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 重命名执行引擎基准测试
+ * 对比原有串行循环与线程池/虚拟线程并发执行在 tmpfs 上的吞吐量。
+ * 每次迭代重新生成一批文件，测量完成整批重命名所需的时间。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RenameExecutorBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int fileCount;
+
+    @Param({"serial", "platform", "virtual"})
+    public String engine;
+
+    @Param({"16"})
+    public int threads;
+
+    private Path dir;
+    private List<FileRenameTool.RenamePair> pairs;
+    private RenameExecutor executor;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        dir = BenchmarkFiles.createTempDirectory("rename-executor-bench");
+        BenchmarkFiles.createFiles(dir, fileCount);
+        pairs = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            String oldName = BenchmarkFiles.syntheticName(i);
+            pairs.add(new FileRenameTool.RenamePair(dir, oldName, "renamed_" + oldName));
+        }
+        if (!"serial".equals(engine)) {
+            executor = new RenameExecutor(threads, "virtual".equals(engine), threads, 256, FileMover.fromSystemProperties());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (executor != null) {
+            executor.close();
+            executor = null;
+        }
+        BenchmarkFiles.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public List<FileRenameTool.RenamePair> renameBatch() {
+        return executor == null ? RenameExecutor.executeSerial(pairs) : executor.execute(pairs);
+    }
+}
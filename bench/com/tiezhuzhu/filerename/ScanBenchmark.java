@@ -0,0 +1,69 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 目录扫描阶段基准测试
+ * enumerate 只遍历目录项并读取文件名，用于衡量纯枚举开销；
+ * buildPreviewList 为完整的扫描、排除、匹配和生成预览列表流程。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int fileCount;
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8"})
+    public int mode;
+
+    private Path dir;
+    private List<RenameRule> rules;
+
+    @Setup
+    public void setUp() {
+        dir = BenchmarkFiles.sharedDirectory(fileCount);
+        rules = Collections.singletonList(BenchmarkFiles.ruleFor(mode));
+    }
+
+    @Benchmark
+    public void enumerate(Blackhole blackhole) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                blackhole.consume(path.getFileName().toString());
+            }
+        }
+    }
+
+    @Benchmark
+    public List<FileRenameTool.RenamePair> buildPreviewList() throws IOException {
+        return FileRenameTool.buildPreviewList(dir, rules, null, new ArrayList<>());
+    }
+}
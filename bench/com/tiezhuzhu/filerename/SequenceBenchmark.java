@@ -0,0 +1,192 @@
+package com.tiezhuzhu.filerename;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 按顺序编号（模式12）的排序基准测试
+ * 在打乱顺序的合成文件名上比较每次比较时解析数字的自然顺序比较器（对照）和 {@link FileSequence} 预先计算排序键后
+ * 串行或并行排序的耗时，不涉及文件系统。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SequenceBenchmark {
+
+    /**
+     * 对照：每次比较时逐段解析数字的自然顺序比较器
+     */
+    private static final Comparator<String> PARSING = (a, b) -> {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char c = a.charAt(i);
+            char d = b.charAt(j);
+            if (isDigit(c) && isDigit(d)) {
+                // 跳过前导零后先比较位数，位数相同时逐位比较
+                while (i < a.length() - 1 && a.charAt(i) == '0' && isDigit(a.charAt(i + 1))) {
+                    i++;
+                }
+                while (j < b.length() - 1 && b.charAt(j) == '0' && isDigit(b.charAt(j + 1))) {
+                    j++;
+                }
+                int endA = i;
+                while (endA < a.length() && isDigit(a.charAt(endA))) {
+                    endA++;
+                }
+                int endB = j;
+                while (endB < b.length() && isDigit(b.charAt(endB))) {
+                    endB++;
+                }
+                int result = (endA - i) - (endB - j);
+                for (; result == 0 && i < endA; i++, j++) {
+                    result = a.charAt(i) - b.charAt(j);
+                }
+                if (result != 0) {
+                    return result;
+                }
+                i = endA;
+                j = endB;
+                continue;
+            }
+            int result = Character.toLowerCase(c) - Character.toLowerCase(d);
+            if (result != 0) {
+                return result;
+            }
+            i++;
+            j++;
+        }
+        int result = (a.length() - i) - (b.length() - j);
+        return result != 0 ? result : a.compareTo(b);
+    };
+
+    @Param({"10000", "100000", "1000000"})
+    public int fileCount;
+
+    private String[] names;
+    private FileSequence sequence;
+
+    @Setup
+    public void setUp() {
+        names = new String[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            names[i] = BenchmarkFiles.syntheticName(i);
+        }
+        // 打乱顺序，避免排序时遇到已排好的输入
+        Random random = new Random(42);
+        for (int i = fileCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String name = names[i];
+            names[i] = names[j];
+            names[j] = name;
+        }
+        sequence = new FileSequence((RenameRule.SequenceRule) RenameRule.create(12, "name", 0, 1, ""));
+        BasicFileAttributes attributes = new Attributes();
+        for (String name : names) {
+            sequence.add(name, attributes);
+        }
+    }
+
+    /**
+     * 对照：每次比较时解析数字
+     */
+    @Benchmark
+    public String[] parsingComparator() {
+        String[] sorted = names.clone();
+        Arrays.sort(sorted, PARSING);
+        return sorted;
+    }
+
+    /**
+     * 预先计算排序键后串行排序
+     */
+    @Benchmark
+    public List<String> precomputedKeys() {
+        return sequence.sorted(false);
+    }
+
+    /**
+     * 预先计算排序键后并行排序
+     */
+    @Benchmark
+    public List<String> precomputedKeysParallel() {
+        return sequence.sorted(true);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * 按文件名排序时不会读取的文件属性
+     */
+    private static final class Attributes implements BasicFileAttributes {
+        @Override
+        public FileTime lastModifiedTime() {
+            return FileTime.fromMillis(0);
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return lastModifiedTime();
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return lastModifiedTime();
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return true;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return false;
+        }
+
+        @Override
+        public boolean isOther() {
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return 0;
+        }
+
+        @Override
+        public Object fileKey() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 启动耗时基准测试
+ * 每次调用启动一个新的 JVM 运行程序 jar，测量从启动到菜单后退出、拖入目录后以模式1预览再退出的耗时（目录中 60 个文件）。
+ * 通过 {@code -p jar=} 传入多个 jar 可比较不同构建，例如默认构建与 {@code cds} 配置的构建；
+ * {@code -p archive=} 指定 AppCDS 归档，为空时不使用归档。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final int FILE_COUNT = 60;
+    // 菜单中直接退出；选择模式1，预览后不执行并退出
+    private static final byte[] QUIT_INPUT = "q\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PREVIEW_INPUT = "1\nn\nq\n".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"target/file-rename-tool-1.0.0.jar"})
+    public String jar;
+
+    @Param({""})
+    public String archive;
+
+    private Path dir;
+    private Path photos;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkFiles.createTempDirectory("startup");
+        photos = dir.resolve("photos");
+        Files.createDirectory(photos);
+        BenchmarkFiles.createFiles(photos, FILE_COUNT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public int menu() throws IOException, InterruptedException {
+        return run(QUIT_INPUT, null);
+    }
+
+    @Benchmark
+    public int previewMode1() throws IOException, InterruptedException {
+        return run(PREVIEW_INPUT, photos);
+    }
+
+    /**
+     * 启动程序，写入标准输入后等待其退出，输出全部丢弃
+     *
+     * @param input  标准输入的内容
+     * @param target 拖入的目录（null 表示不传入）
+     * @return 退出码
+     */
+    private int run(byte[] input, Path target) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (!archive.isEmpty()) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        // 使用独立的撤销日志，不影响用户目录
+        command.add("-Drename.journal=" + dir.resolve("undo.journal"));
+        command.add("-jar");
+        command.add(jar);
+        if (target != null) {
+            command.add(target.toString());
+        }
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(input);
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException(jar + " 退出码为 " + exitCode);
+        }
+        return exitCode;
+    }
+}
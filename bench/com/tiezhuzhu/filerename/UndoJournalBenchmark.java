@@ -0,0 +1,101 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 撤销日志基准测试
+ * 在一个包含 1000 个目录的批次中，比较读出整批文件对（原有的整批回退）与通过目录索引只选出一个目录或一个文件的耗时。
+ * 编解码是否正确由 {@code UndoJournalTest} 检查。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class UndoJournalBenchmark {
+
+    private static final int DIRECTORY_COUNT = 1000;
+
+    @Param({"100000", "1000000"})
+    public int pairCount;
+
+    private Path dir;
+    private UndoJournal journal;
+    private UndoJournal.Batch batch;
+    private Path selectedDirectory;
+    private Path selectedFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkFiles.createTempDirectory("journal");
+        List<FileRenameTool.RenamePair> pairs = new ArrayList<>(pairCount);
+        int perDirectory = pairCount / DIRECTORY_COUNT;
+        for (int d = 0; d < DIRECTORY_COUNT; d++) {
+            Path directory = dir.resolve("dir-" + d);
+            for (int i = 0; i < perDirectory; i++) {
+                String name = BenchmarkFiles.syntheticName(d * perDirectory + i);
+                pairs.add(new FileRenameTool.RenamePair(directory, name, "[2019] " + name));
+            }
+        }
+
+        journal = UndoJournal.open(dir.resolve("undo.journal"));
+        long id = journal.begin(pairs);
+        journal.commit(id, pairs, pairs);
+        batch = journal.batch(id);
+        selectedDirectory = dir.resolve("dir-" + DIRECTORY_COUNT / 2);
+        FileRenameTool.RenamePair pair = pairs.get(pairCount / 3);
+        selectedFile = pair.dir.resolve(pair.newName);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        BenchmarkFiles.deleteRecursively(dir);
+    }
+
+    /**
+     * 对照：从磁盘读出整批文件对
+     */
+    @Benchmark
+    public List<FileRenameTool.RenamePair> loadAll() throws IOException {
+        batch.cachedPairs = null;
+        return journal.loadSucceeded(batch);
+    }
+
+    /**
+     * 按目录索引选出一个目录下的文件
+     */
+    @Benchmark
+    public UndoJournal.Selection selectDirectory() throws IOException {
+        return journal.select(batch, selectedDirectory);
+    }
+
+    /**
+     * 按目录索引选出一个文件
+     */
+    @Benchmark
+    public UndoJournal.Selection selectFile() throws IOException {
+        return journal.select(batch, selectedFile);
+    }
+}
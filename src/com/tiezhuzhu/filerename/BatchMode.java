@@ -0,0 +1,801 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 无人值守的批处理模式
+ * 模式和参数全部来自命令行或规则文件，不会出现任何交互提示，适合在 cron 或流水线中批量处理大量目录。
+ * 多个目录由 {@link DirectoryScheduler} 同时处理，总并发数和同一挂载点上的并发数分别受 {@code --jobs} 和
+ * {@code --per-mount} 限制；每个目录的计划在执行完成后即被释放，内存占用与目录数量无关。
+ *
+ * <p>标准输出只包含机器可读的结果：每个目录一行 JSON，最后一行为汇总；其它提示信息全部输出到标准错误。
+ * 退出码：0 全部成功，1 存在失败、冲突的文件或无法处理的目录，2 参数错误，3 无法初始化（如撤销日志不可用）。
+ * 指定 {@code --watch} 时改为持续监听目录，见 {@link WatchDaemon}；指定 {@code --apply} 时改为执行事先生成的计划文件，
+ * 见 {@link PlanApplier}。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class BatchMode {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILURES = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_FATAL = 3;
+
+    private static final int DEFAULT_JOBS = 4;
+    private static final int DEFAULT_JOBS_PER_MOUNT = 2;
+
+    /**
+     * 一条规则的参数，来自命令行或规则文件
+     */
+    private static final class RuleSpec {
+        final int mode;
+        String x;
+        Integer n;
+        Integer pos;
+        String replaceTo = "";
+
+        RuleSpec(int mode) {
+            this.mode = mode;
+        }
+
+        /**
+         * 校验参数并创建规则
+         *
+         * @return 规则对象
+         */
+        RenameRule toRule() {
+            if (x == null && mode >= 5 && mode <= 9) {
+                throw new IllegalArgumentException("模式 " + mode + " 需要参数 --x");
+            }
+            if (n == null && (mode == 2 || mode == 3 || mode == 4 || mode == 7 || mode == 8 || mode == 9)) {
+                throw new IllegalArgumentException("模式 " + mode + " 需要参数 --n");
+            }
+            if (pos == null && mode == 4) {
+                throw new IllegalArgumentException("模式 4 需要参数 --pos");
+            }
+            // 模式12的起始编号缺省为 1
+            int position = pos != null ? pos : mode == 12 ? 1 : 0;
+            return RenameRule.create(mode, x == null ? "" : x, n == null ? 0 : n, position, replaceTo);
+        }
+    }
+
+    // 机器可读结果的输出流（原标准输出）
+    private final PrintStream results;
+    private final List<RuleSpec> specs = new ArrayList<>();
+    private final List<String> directories = new ArrayList<>();
+    private String directoryList;
+    private String planFile;
+    // 完整计划的输出，未指定 --plan 时为 null
+    private PlanFile.Output planOutput;
+    // 要执行的计划文件、分片（从 0 开始）和检查点，未指定 --apply 时 applyFile 为 null
+    private String applyFile;
+    private int shard;
+    private int shards = 1;
+    private String checkpointFile;
+    private int recursionDepth;
+    private int jobs = DEFAULT_JOBS;
+    private int jobsPerMount = DEFAULT_JOBS_PER_MOUNT;
+    private boolean dryRun;
+    private boolean incremental;
+    private boolean watch;
+    private boolean help;
+
+    // 多目录调度器，同时处理多个目录
+    private DirectoryScheduler scheduler;
+    // 已提交的目录，重复出现的目录只处理一次
+    private final Set<Path> submitted = new HashSet<>();
+
+    // 汇总统计，各目录在调度器的工作线程中处理，持有 this 锁后才能修改
+    private long directoryCount;
+    private long errorCount;
+    private long plannedCount;
+    private long renamedCount;
+    private long conflictCount;
+    private final Map<RenameFailure, Integer> failureCounts = new EnumMap<>(RenameFailure.class);
+
+    private BatchMode(PrintStream results) {
+        this.results = results;
+    }
+
+    /**
+     * 判断命令行参数是否要求进入批处理模式
+     *
+     * @param args 命令行参数
+     * @return true 如果存在以 -- 开头的参数
+     */
+    static boolean isRequested(String[] args) {
+        if (args == null) {
+            return false;
+        }
+        for (String arg : args) {
+            if (arg != null && arg.startsWith("--")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 运行批处理模式
+     *
+     * @param args 命令行参数
+     * @return 退出码
+     */
+    static int run(String[] args) {
+        // 机器可读的结果固定以 UTF-8 写到标准输出，人类可读的提示全部改为输出到标准错误
+        PrintStream results = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        RenameMetrics.registerMBean();
+        BatchMode batch = new BatchMode(results);
+        try {
+            batch.parse(args);
+            if (batch.help) {
+                printUsage();
+                return EXIT_OK;
+            }
+            // 过滤条件（rename.exclude 等）有误时按参数错误处理
+            EntryFilter.defaults();
+            return batch.execute();
+        } catch (IllegalArgumentException e) {
+            System.err.println("参数错误: " + e.getMessage());
+            printUsage();
+            return EXIT_USAGE;
+        }
+    }
+
+    /**
+     * 解析命令行参数，支持 "--key value" 和 "--key=value" 两种写法
+     * --x/--n/--pos/--replace 作用于最近一个 --mode 指定的规则
+     *
+     * @param args 命令行参数
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                directories.add(arg);
+                continue;
+            }
+
+            String key = arg;
+            String value = null;
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                key = arg.substring(0, eq);
+                value = arg.substring(eq + 1);
+            }
+
+            switch (key) {
+                case "--help":
+                    help = true;
+                    break;
+                case "--dry-run":
+                    dryRun = true;
+                    break;
+                case "--recursive":
+                    recursionDepth = TreeWalker.UNLIMITED_DEPTH;
+                    break;
+                case "--incremental":
+                    incremental = true;
+                    break;
+                case "--watch":
+                    watch = true;
+                    break;
+                default:
+                    if (value == null) {
+                        if (i + 1 >= args.length) {
+                            throw new IllegalArgumentException(key + " 缺少参数值");
+                        }
+                        value = args[++i];
+                    }
+                    applyOption(key, value);
+                    break;
+            }
+        }
+
+        if (help) {
+            return;
+        }
+        if (applyFile != null) {
+            if (!specs.isEmpty() || !directories.isEmpty() || directoryList != null) {
+                throw new IllegalArgumentException("--apply 不能与 --mode、--rules、目录或 --dirs-from 同时使用");
+            }
+            if (watch || incremental || planFile != null) {
+                throw new IllegalArgumentException("--apply 不能与 --watch、--incremental 或 --plan 同时使用");
+            }
+            return;
+        }
+        if (shards != 1 || checkpointFile != null) {
+            throw new IllegalArgumentException("--shard 和 --checkpoint 只能与 --apply 一起使用");
+        }
+        if (specs.isEmpty()) {
+            throw new IllegalArgumentException("请通过 --mode 或 --rules 指定至少一条规则");
+        }
+        if (directories.isEmpty() && directoryList == null) {
+            throw new IllegalArgumentException("请指定要处理的目录，或通过 --dirs-from 指定目录列表文件");
+        }
+        if (watch && (planFile != null || incremental)) {
+            throw new IllegalArgumentException("--watch 不能与 --plan 或 --incremental 同时使用");
+        }
+        // 编号取决于目录中的全部文件，不能只处理新出现的文件
+        for (RuleSpec spec : specs) {
+            if (spec.mode == 12 && (watch || incremental)) {
+                throw new IllegalArgumentException("模式 12 不能与 --watch 或 --incremental 同时使用");
+            }
+            // 快照只记录文件名，内容变化后不会被重新检查
+            if ((spec.mode == 10 || spec.mode == 11) && incremental) {
+                throw new IllegalArgumentException("模式 " + spec.mode + " 按文件内容命名，不能与 --incremental 同时使用");
+            }
+        }
+    }
+
+    /**
+     * 处理带参数值的选项
+     *
+     * @param key   选项名
+     * @param value 参数值
+     */
+    private void applyOption(String key, String value) {
+        switch (key) {
+            case "--mode":
+                for (String part : value.split("\\+")) {
+                    specs.add(new RuleSpec(parseMode(part)));
+                }
+                break;
+            case "--x":
+                lastSpec(key).x = value;
+                break;
+            case "--n":
+                lastSpec(key).n = parseInt(key, value);
+                break;
+            case "--pos":
+                lastSpec(key).pos = parseInt(key, value);
+                break;
+            case "--replace":
+                lastSpec(key).replaceTo = value;
+                break;
+            case "--rules":
+                loadRulesFile(value);
+                break;
+            case "--depth":
+                recursionDepth = parseInt(key, value);
+                if (recursionDepth < 0) {
+                    throw new IllegalArgumentException("--depth 不能为负数");
+                }
+                break;
+            case "--dirs-from":
+                directoryList = value;
+                break;
+            case "--plan":
+                planFile = value;
+                break;
+            case "--apply":
+                applyFile = value;
+                break;
+            case "--shard":
+                parseShard(value);
+                break;
+            case "--checkpoint":
+                checkpointFile = value;
+                break;
+            case "--jobs":
+                jobs = parseInt(key, value);
+                if (jobs < 1) {
+                    throw new IllegalArgumentException("--jobs 必须大于 0");
+                }
+                break;
+            case "--per-mount":
+                jobsPerMount = parseInt(key, value);
+                if (jobsPerMount < 1) {
+                    throw new IllegalArgumentException("--per-mount 必须大于 0");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("未知选项 " + key);
+        }
+    }
+
+    /**
+     * 解析分片，格式为 i/k，i 从 1 开始
+     *
+     * @param value 分片
+     */
+    private void parseShard(String value) {
+        int slash = value.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("--shard 的格式为 i/k，例如 1/4: " + value);
+        }
+        int index = parseInt("--shard", value.substring(0, slash));
+        shards = parseInt("--shard", value.substring(slash + 1));
+        if (shards < 1 || index < 1 || index > shards) {
+            throw new IllegalArgumentException("--shard 需要满足 1 <= i <= k: " + value);
+        }
+        shard = index - 1;
+    }
+
+    /**
+     * 读取规则文件（properties 格式，UTF-8 编码）
+     * 规则按编号从小到大依次应用，例如：
+     * <pre>
+     * rule.1.mode=1
+     * rule.2.mode=5
+     * rule.2.x=-
+     * rule.2.replace=
+     * depth=2
+     * </pre>
+     *
+     * @param file 规则文件路径
+     */
+    private void loadRulesFile(String file) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无法读取规则文件 " + file + ": " + e.getMessage());
+        }
+
+        // 按编号排序，编号可以不连续
+        TreeMap<Integer, RuleSpec> ordered = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.startsWith("rule.") || !name.endsWith(".mode")) {
+                continue;
+            }
+            String index = name.substring("rule.".length(), name.length() - ".mode".length());
+            String prefix = "rule." + index + ".";
+            RuleSpec spec = new RuleSpec(parseMode(properties.getProperty(name)));
+            spec.x = properties.getProperty(prefix + "x");
+            String n = properties.getProperty(prefix + "n");
+            spec.n = n == null ? null : parseInt(prefix + "n", n);
+            String pos = properties.getProperty(prefix + "pos");
+            spec.pos = pos == null ? null : parseInt(prefix + "pos", pos);
+            spec.replaceTo = properties.getProperty(prefix + "replace", "");
+            ordered.put(parseInt(name, index), spec);
+        }
+        if (ordered.isEmpty()) {
+            throw new IllegalArgumentException("规则文件 " + file + " 中没有 rule.<编号>.mode 条目");
+        }
+        specs.addAll(ordered.values());
+
+        String depth = properties.getProperty("depth");
+        if (depth != null) {
+            recursionDepth = "all".equalsIgnoreCase(depth.trim())
+                    ? TreeWalker.UNLIMITED_DEPTH
+                    : parseInt("depth", depth);
+        }
+    }
+
+    /**
+     * 依次处理所有目录并输出结果
+     *
+     * @return 退出码
+     */
+    private int execute() {
+        List<RenameRule> rules = new ArrayList<>();
+        for (RuleSpec spec : specs) {
+            rules.add(spec.toRule());
+        }
+
+        if (!dryRun) {
+            try {
+                FileRenameTool.journal = FileRenameTool.openJournal();
+            } catch (RuntimeException e) {
+                System.err.println("无法初始化撤销日志: " + e.getMessage());
+                return EXIT_FATAL;
+            }
+            int pending = FileRenameTool.journal.pendingBatches().size();
+            if (pending > 0) {
+                System.err.println("警告: 存在 " + pending + " 个未完成的重命名批次，请以交互模式启动程序进行处理。");
+            }
+        }
+
+        if (applyFile != null) {
+            try {
+                return apply();
+            } finally {
+                if (!dryRun) {
+                    FileRenameTool.closeJournal();
+                }
+                RenameMetrics.export();
+            }
+        }
+
+        if (watch) {
+            try {
+                return watch(rules);
+            } finally {
+                if (!dryRun) {
+                    FileRenameTool.closeJournal();
+                }
+                RenameMetrics.export();
+            }
+        }
+
+        long startTime = System.nanoTime();
+        scheduler = new DirectoryScheduler(jobs, jobsPerMount);
+        try {
+            if (planFile != null) {
+                planOutput = PlanFile.openOutput(Paths.get(planFile));
+            }
+            for (String directory : directories) {
+                submitDirectory(directory, rules);
+            }
+            if (directoryList != null) {
+                processDirectoryList(rules);
+            }
+        } catch (IOException e) {
+            System.err.println("无法读取目录列表或写入计划文件: " + e.getMessage());
+            synchronized (this) {
+                errorCount++;
+            }
+        } finally {
+            // 已提交的目录全部处理完后才输出汇总
+            scheduler.awaitAll();
+            scheduler.close();
+            closePlan();
+            if (!dryRun) {
+                FileRenameTool.closeJournal();
+            }
+            RenameMetrics.export();
+        }
+
+        long failedCount = dryRun ? 0 : plannedCount - renamedCount;
+        results.println("{\"summary\":true"
+                + ",\"dryRun\":" + dryRun
+                + ",\"directories\":" + directoryCount
+                + ",\"errors\":" + errorCount
+                + ",\"planned\":" + plannedCount
+                + ",\"renamed\":" + renamedCount
+                + ",\"failed\":" + failedCount
+                + ",\"conflicts\":" + conflictCount
+                + json(failureCounts)
+                + ",\"elapsedMs\":" + (System.nanoTime() - startTime) / 1_000_000
+                + "}");
+        results.flush();
+        return errorCount == 0 && failedCount == 0 && conflictCount == 0 ? EXIT_OK : EXIT_FAILURES;
+    }
+
+    /**
+     * 持续监听所有目录，新文件出现后按规则重命名，直到进程被终止
+     *
+     * @param rules 规则链
+     * @return 退出码
+     */
+    private int watch(List<RenameRule> rules) {
+        List<String> paths = new ArrayList<>(directories);
+        if (directoryList != null) {
+            try {
+                readDirectoryList(paths::add);
+            } catch (IOException e) {
+                System.err.println("无法读取目录列表: " + e.getMessage());
+                return EXIT_FATAL;
+            }
+        }
+        List<Path> roots = new ArrayList<>();
+        for (String path : paths) {
+            File folder = FileRenameTool.validateAndGetDirectory(FileRenameTool.normalizePath(path));
+            if (folder == null) {
+                System.err.println("路径无效或不存在: " + path);
+                return EXIT_USAGE;
+            }
+            roots.add(folder.toPath());
+        }
+
+        try {
+            return new WatchDaemon(rules, recursionDepth, dryRun, results).run(roots);
+        } catch (IOException e) {
+            System.err.println("无法启动目录监听: " + e.getMessage());
+            return EXIT_FATAL;
+        }
+    }
+
+    /**
+     * 执行计划文件中属于本分片的组
+     *
+     * @return 退出码
+     */
+    private int apply() {
+        Path plan;
+        Path checkpoint;
+        try {
+            plan = Paths.get(applyFile);
+            checkpoint = checkpointFile != null
+                    ? Paths.get(checkpointFile)
+                    : PlanApplier.defaultCheckpoint(plan.toAbsolutePath(), shard, shards);
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("路径无效: " + e.getMessage());
+        }
+        return new PlanApplier(shard, shards, jobs, jobsPerMount, dryRun, checkpoint, results).run(plan);
+    }
+
+    /**
+     * 逐行读取目录列表文件并处理，"-" 表示从标准输入读取
+     *
+     * @param rules 规则链
+     * @throws IOException 目录列表无法读取时抛出
+     */
+    private void processDirectoryList(List<RenameRule> rules) throws IOException {
+        readDirectoryList(line -> submitDirectory(line, rules));
+    }
+
+    /**
+     * 逐行读取目录列表，忽略空行和 # 开头的行
+     *
+     * @param consumer 目录处理
+     * @throws IOException 目录列表无法读取时抛出
+     */
+    private void readDirectoryList(Consumer<String> consumer) throws IOException {
+        Reader source = "-".equals(directoryList)
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(directoryList), StandardCharsets.UTF_8);
+        try (BufferedReader reader = new BufferedReader(source)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    consumer.accept(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * 校验目录并提交给调度器，排队的目录过多时阻塞
+     *
+     * @param directory 目录路径
+     * @param rules     规则链
+     */
+    private void submitDirectory(String directory, List<RenameRule> rules) {
+        long startTime = System.nanoTime();
+        File folder = FileRenameTool.validateAndGetDirectory(FileRenameTool.normalizePath(directory));
+        Path dir = folder == null ? null : folder.toPath().toAbsolutePath().normalize();
+        if (dir != null && !submitted.add(dir)) {
+            System.err.println("目录重复出现，已忽略: " + dir);
+            return;
+        }
+        synchronized (this) {
+            directoryCount++;
+        }
+        if (folder == null) {
+            reportError(directory, "路径无效或不存在", startTime);
+            return;
+        }
+        // 规则对象含匹配状态，每个目录使用独立的副本
+        List<RenameRule> localRules = RenameRule.copyAll(rules);
+        scheduler.submit(dir, () -> {
+            try {
+                processDirectory(directory, folder, localRules);
+            } catch (RuntimeException e) {
+                reportError(directory, "处理失败: " + e, System.nanoTime());
+            }
+        });
+    }
+
+    /**
+     * 处理单个目录：构建计划、执行重命名，并输出一行 JSON 结果
+     * 在调度器的工作线程中执行，每个目录的重命名单独记录为一个撤销批次
+     *
+     * @param directory 目录路径
+     * @param folder    已校验的目录
+     * @param rules     该目录专用的规则链
+     */
+    private void processDirectory(String directory, File folder, List<RenameRule> rules) {
+        long startTime = System.nanoTime();
+
+        List<FileRenameTool.RenamePair> plan;
+        List<ConflictIndex.Conflict> conflicts = new ArrayList<>();
+        // 试运行不执行重命名，也不更新快照
+        DirectorySnapshot snapshot = incremental && !dryRun
+                ? DirectorySnapshot.load(folder.toPath(), rules, recursionDepth) : null;
+        try {
+            plan = FileRenameTool.buildPlan(folder.toPath(), rules, recursionDepth, snapshot, conflicts);
+        } catch (IOException | DirectoryIteratorException e) {
+            reportError(directory, "读取目录失败: " + e.getMessage(), startTime);
+            return;
+        }
+        PreviewPrinter.printConflicts(conflicts);
+
+        synchronized (this) {
+            if (planOutput != null) {
+                try {
+                    planOutput.write(plan);
+                } catch (IOException e) {
+                    System.err.println("写入计划文件失败，后续目录不再写入: " + e.getMessage());
+                    errorCount++;
+                    closePlan();
+                }
+            }
+        }
+
+        int renamed = 0;
+        if (!dryRun && !plan.isEmpty()) {
+            try {
+                renamed = FileRenameTool.renameAndRecord(plan).size();
+            } catch (IOException e) {
+                reportError(directory, "写入撤销日志失败: " + e.getMessage(), startTime);
+                return;
+            }
+        }
+        FileRenameTool.saveSnapshot(snapshot, plan);
+
+        Map<RenameFailure, Integer> failures = RenameFailure.countAll(plan);
+        PreviewPrinter.printFailures(plan);
+        synchronized (this) {
+            failures.forEach((reason, count) -> failureCounts.merge(reason, count, Integer::sum));
+            plannedCount += plan.size();
+            renamedCount += renamed;
+            conflictCount += conflicts.size();
+        }
+        results.println("{\"dir\":" + json(folder.getAbsolutePath())
+                + ",\"status\":\"ok\""
+                + ",\"planned\":" + plan.size()
+                + ",\"renamed\":" + renamed
+                + ",\"failed\":" + (dryRun ? 0 : plan.size() - renamed)
+                + ",\"conflicts\":" + conflicts.size()
+                + json(failures)
+                + ",\"elapsedMs\":" + (System.nanoTime() - startTime) / 1_000_000
+                + "}");
+    }
+
+    private synchronized void closePlan() {
+        if (planOutput == null) {
+            return;
+        }
+        try {
+            planOutput.close();
+        } catch (IOException e) {
+            System.err.println("关闭计划文件失败: " + e.getMessage());
+            errorCount++;
+        }
+        planOutput = null;
+    }
+
+    private void reportError(String directory, String message, long startTime) {
+        synchronized (this) {
+            errorCount++;
+        }
+        results.println("{\"dir\":" + json(directory)
+                + ",\"status\":\"error\""
+                + ",\"error\":" + json(message)
+                + ",\"elapsedMs\":" + (System.nanoTime() - startTime) / 1_000_000
+                + "}");
+    }
+
+    private RuleSpec lastSpec(String key) {
+        if (specs.isEmpty()) {
+            throw new IllegalArgumentException(key + " 必须出现在 --mode 之后");
+        }
+        return specs.get(specs.size() - 1);
+    }
+
+    private static int parseMode(String value) {
+        int mode = parseInt("--mode", value);
+        if (mode < 1 || mode > 12) {
+            throw new IllegalArgumentException("模式必须是 1-12 之间的数字: " + value);
+        }
+        return mode;
+    }
+
+    private static int parseInt(String key, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " 需要整数: " + value);
+        }
+    }
+
+    /**
+     * 将失败原因统计编码为 JSON 字段，没有失败时返回空字符串
+     *
+     * @param failures 失败原因统计
+     * @return 形如 ,"failures":{"TARGET_EXISTS":1} 的字段
+     */
+    static String json(Map<RenameFailure, Integer> failures) {
+        if (failures.isEmpty()) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(",\"failures\":{");
+        for (Map.Entry<RenameFailure, Integer> entry : failures.entrySet()) {
+            if (builder.charAt(builder.length() - 1) != '{') {
+                builder.append(',');
+            }
+            builder.append('"').append(entry.getKey().name()).append("\":").append(entry.getValue());
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * 将字符串编码为 JSON 字符串字面量
+     *
+     * @param value 原始字符串
+     * @return JSON 字符串
+     */
+    static String json(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                    break;
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static void printUsage() {
+        System.err.println("批处理模式用法:");
+        System.err.println("  FileRenameTool --mode <模式> [参数...] [选项...] <目录>...");
+        System.err.println("  FileRenameTool --apply <计划文件> [--shard <i/k>] [选项...]");
+        System.err.println();
+        System.err.println("规则（可重复，--x/--n/--pos/--replace 作用于前一个 --mode）:");
+        System.err.println("  --mode <1-12|1+5>     重命名模式，可用 + 组合多个模式");
+        System.err.println("  --x <字符>            定位字符 X（模式 5-8）；词典文件（模式 9）；校验算法（模式 10，缺省 SHA-256）；"
+                + "排序方式 name/mtime/size，前加 - 为倒序（模式 12，缺省 name）");
+        System.err.println("  --n <数字>            位数/长度 N（模式 2-4, 7-8）；动作 1=前置 2=替换 3=删除（模式 9）；校验值位数（模式 10，缺省 8）；"
+                + "编号位数（模式 12，缺省自动）");
+        System.err.println("  --pos <数字>          起始位置（模式 4）；起始编号（模式 12，缺省 1）");
+        System.err.println("  --replace <内容>      替换内容，缺省为删除（模式 2-9）");
+        System.err.println("  --rules <文件>        从 properties 规则文件读取规则");
+        System.err.println();
+        System.err.println("选项:");
+        System.err.println("  --recursive           递归处理所有子目录");
+        System.err.println("  --depth <数字>        递归深度，0 表示只处理指定目录");
+        System.err.println("  --incremental         只处理上次运行后新出现的文件（按目录快照判断）");
+        System.err.println("  --watch               持续监听目录，新文件出现后自动重命名，按 Ctrl+C 退出");
+        System.err.println("  --dirs-from <文件|->  从文件（或标准输入）逐行读取要处理的目录");
+        System.err.println("  --jobs <数字>         同时处理的目录数，默认 " + DEFAULT_JOBS);
+        System.err.println("  --per-mount <数字>    同一挂载点（设备）上同时处理的目录数，默认 " + DEFAULT_JOBS_PER_MOUNT);
+        System.err.println("  --dry-run             只生成计划，不执行重命名");
+        System.err.println("  --plan <文件>         将完整的重命名计划写入文件，.jsonl/.rplan 结尾时可由 --apply 执行");
+        System.err.println("  --apply <文件>        执行 .jsonl/.rplan 计划文件，中断后重新运行会从检查点继续");
+        System.err.println("  --shard <i/k>         与 --apply 一起使用，只执行计划的第 i 个分片（共 k 个）");
+        System.err.println("  --checkpoint <文件>   与 --apply 一起使用，指定检查点文件，默认在计划文件旁");
+        System.err.println("  --help                显示本帮助");
+        System.err.println();
+        System.err.println("标准输出为每个目录一行 JSON 结果及一行汇总；退出码 0=成功 1=存在失败或冲突 2=参数错误 3=初始化失败");
+    }
+}
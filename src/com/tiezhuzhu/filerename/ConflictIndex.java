@@ -0,0 +1,258 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 重命名冲突检测
+ * 在生成计划时用哈希索引一次性检查同一目录下的全部重命名，而不是等到执行时逐个失败：
+ * <ul>
+ *     <li>多个文件重命名为同一名称，或目标名称已被其它文件占用：作为冲突从计划中移除</li>
+ *     <li>目标名称被另一个待重命名的文件占用（A -> B, B -> C）：记录依赖，执行时先移走 B</li>
+ *     <li>重命名环（A -> B, B -> A）：先将环中一个文件移到临时名称，再依次完成其余重命名</li>
+ * </ul>
+ * 每个目录的检查都是 O(n) 的。
+ *
+ * <p>Windows 和 macOS 的文件系统默认不区分大小写，此时按忽略大小写比较名称，可通过系统属性
+ * {@code rename.caseInsensitive} 覆盖。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class ConflictIndex {
+
+    // 文件名是否不区分大小写
+    private static final boolean CASE_INSENSITIVE = Boolean.parseBoolean(
+            System.getProperty("rename.caseInsensitive", String.valueOf(defaultCaseInsensitive())));
+    // 重命名环中临时名称的后缀
+    private static final String PARK_SUFFIX = ".rename-tmp";
+
+    // 依赖链遍历状态
+    private static final byte UNKNOWN = 0;
+    private static final byte VISITING = 1;
+    private static final byte RESOLVED = 2;
+
+    /**
+     * 冲突记录
+     */
+    static final class Conflict {
+        final FileRenameTool.RenamePair pair;
+        final String reason;
+
+        Conflict(FileRenameTool.RenamePair pair, String reason) {
+            this.pair = pair;
+            this.reason = reason;
+        }
+    }
+
+    private ConflictIndex() {
+    }
+
+    /**
+     * 计算文件名在索引中的键
+     *
+     * @param name 文件名
+     * @return 索引键，不区分大小写时转为小写
+     */
+    static String key(String name) {
+        return CASE_INSENSITIVE ? name.toLowerCase(Locale.ROOT) : name;
+    }
+
+    /**
+     * 检查同一目录下的重命名计划，移除冲突项，并为存在依赖或环的文件安排执行顺序
+     *
+     * @param pairs         同一目录下的重命名计划（源名称为 oldName），冲突项会被原地移除
+     * @param existingNames 目录中已存在的全部名称的索引键（含目录和被跳过的文件）
+     * @param conflicts     冲突输出
+     */
+    static void resolve(List<FileRenameTool.RenamePair> pairs, Set<String> existingNames, List<Conflict> conflicts) {
+        int n = pairs.size();
+        if (n == 0) {
+            return;
+        }
+        long startNanos = RenameMetrics.start();
+
+        // 源名称索引和目标名称索引
+        Map<String, Integer> sources = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            sources.put(key(pairs.get(i).oldName), i);
+        }
+        Map<String, Integer> targets = new HashMap<>(n * 2);
+        int[] next = new int[n];        // 占用目标名称的待重命名文件，-1 表示没有
+        String[] reasons = new String[n];
+        Arrays.fill(next, -1);
+        for (int i = 0; i < n; i++) {
+            FileRenameTool.RenamePair pair = pairs.get(i);
+            String target = key(pair.newName);
+            Integer previous = targets.putIfAbsent(target, i);
+            if (previous != null) {
+                reasons[i] = "与其它文件重命名为同一名称 " + pair.newName;
+                if (reasons[previous] == null) {
+                    reasons[previous] = reasons[i];
+                }
+                continue;
+            }
+            if (target.equals(key(pair.oldName))) {
+                // 仅大小写不同的重命名，目标就是自身
+                continue;
+            }
+            Integer owner = sources.get(target);
+            if (owner != null) {
+                next[i] = owner;
+            } else if (existingNames.contains(target)) {
+                reasons[i] = "目标文件已存在";
+            }
+        }
+
+        // 沿依赖链传播冲突，并识别重命名环、计算执行轮次
+        byte[] state = new byte[n];
+        int[] position = new int[n];
+        int[] path = new int[n];
+        for (int start = 0; start < n; start++) {
+            int length = 0;
+            int current = start;
+            while (current >= 0 && state[current] == UNKNOWN) {
+                state[current] = VISITING;
+                position[current] = length;
+                path[length++] = current;
+                current = reasons[current] != null ? -1 : next[current];
+            }
+
+            // 链尾：自身无依赖或冲突的文件，或已处理过的文件，或当前路径上形成的环
+            int end = length;
+            if (current >= 0 && state[current] == VISITING) {
+                end = position[current];
+                breakCycle(pairs, path, end, length, existingNames, targets, sources);
+                for (int k = end; k < length; k++) {
+                    state[path[k]] = RESOLVED;
+                }
+            }
+            for (int k = end - 1; k >= 0; k--) {
+                int i = path[k];
+                state[i] = RESOLVED;
+                if (reasons[i] != null || next[i] < 0) {
+                    continue;
+                }
+                int owner = next[i];
+                if (reasons[owner] != null) {
+                    reasons[i] = "目标名称被无法重命名的文件 " + pairs.get(owner).oldName + " 占用";
+                } else {
+                    pairs.get(i).blocker = pairs.get(owner);
+                    pairs.get(i).wave = pairs.get(owner).wave + 1;
+                }
+            }
+        }
+
+        // 移除冲突项，保持其余文件的原有顺序
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            FileRenameTool.RenamePair pair = pairs.get(i);
+            if (reasons[i] != null) {
+                conflicts.add(new Conflict(pair, reasons[i]));
+            } else {
+                pairs.set(kept++, pair);
+            }
+        }
+        pairs.subList(kept, n).clear();
+        RenameMetrics.recordConflicts(n - kept);
+        RenameMetrics.record(RenameMetrics.Stage.RESOLVE, startNanos);
+    }
+
+    /**
+     * 打开重命名环：环中第一个文件先移到临时名称，其余文件沿环依次重命名，最后再将临时文件移到目标名称
+     *
+     * @param pairs         同一目录下的重命名计划
+     * @param path          遍历路径
+     * @param from          环在路径中的起始位置
+     * @param to            环在路径中的结束位置（不包含）
+     * @param existingNames 目录中已存在的名称
+     * @param targets       目标名称索引
+     * @param sources       源名称索引
+     */
+    private static void breakCycle(List<FileRenameTool.RenamePair> pairs, int[] path, int from, int to,
+                                   Set<String> existingNames, Map<String, Integer> targets,
+                                   Map<String, Integer> sources) {
+        FileRenameTool.RenamePair parked = pairs.get(path[from]);
+        String parkName = parked.oldName + PARK_SUFFIX;
+        for (int i = 2; existingNames.contains(key(parkName)) || targets.containsKey(key(parkName))
+                || sources.containsKey(key(parkName)); i++) {
+            parkName = parked.oldName + PARK_SUFFIX + i;
+        }
+        parked.parkName = parkName;
+
+        // path[to - 1] 的目标是被移走的文件，可以在第 0 轮执行；其余文件依次在前一个文件之后执行
+        int wave = 0;
+        for (int k = to - 1; k > from; k--) {
+            FileRenameTool.RenamePair pair = pairs.get(path[k]);
+            pair.blocker = pairs.get(path[k + 1 < to ? k + 1 : from]);
+            pair.wave = wave++;
+        }
+        parked.blocker = pairs.get(path[from + 1]);
+        parked.wave = wave;
+    }
+
+    /**
+     * 按目录分组检查重命名计划，已存在的名称从磁盘读取，用于撤销等没有扫描结果的场景
+     *
+     * @param pairs     重命名计划（源名称为 oldName）
+     * @param conflicts 冲突输出
+     * @return 去除冲突项后的计划，按目录分组排列
+     * @throws IOException 目录无法读取时抛出
+     */
+    static List<FileRenameTool.RenamePair> resolveAgainstDisk(List<FileRenameTool.RenamePair> pairs,
+                                                              List<Conflict> conflicts) throws IOException {
+        Map<Path, List<FileRenameTool.RenamePair>> byDirectory = new LinkedHashMap<>();
+        for (FileRenameTool.RenamePair pair : pairs) {
+            byDirectory.computeIfAbsent(pair.dir, dir -> new ArrayList<>()).add(pair);
+        }
+
+        List<FileRenameTool.RenamePair> resolved = new ArrayList<>(pairs.size());
+        for (Map.Entry<Path, List<FileRenameTool.RenamePair>> entry : byDirectory.entrySet()) {
+            Set<String> existingNames = new HashSet<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(entry.getKey())) {
+                for (Path path : stream) {
+                    existingNames.add(key(path.getFileName().toString()));
+                }
+            }
+            List<FileRenameTool.RenamePair> group = entry.getValue();
+            resolve(group, existingNames, conflicts);
+            resolved.addAll(group);
+        }
+        return resolved;
+    }
+
+    /**
+     * 检查同一目录下的少量重命名，只逐个查询目标名称是否存在，不列出整个目录，用于监听模式等每次只处理几个文件的场景
+     * 不检查临时名称是否被占用，被占用时移动会失败而不会覆盖文件
+     *
+     * @param dir       目录
+     * @param pairs     该目录下的重命名计划（源名称为 oldName），冲突项会被原地移除
+     * @param conflicts 冲突输出
+     */
+    static void resolveAgainstTargets(Path dir, List<FileRenameTool.RenamePair> pairs, List<Conflict> conflicts) {
+        Set<String> existingNames = new HashSet<>();
+        for (FileRenameTool.RenamePair pair : pairs) {
+            if (Files.exists(dir.resolve(pair.newName), LinkOption.NOFOLLOW_LINKS)) {
+                existingNames.add(key(pair.newName));
+            }
+        }
+        resolve(pairs, existingNames, conflicts);
+    }
+
+    private static boolean defaultCaseInsensitive() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        return os.startsWith("windows") || os.startsWith("mac");
+    }
+}
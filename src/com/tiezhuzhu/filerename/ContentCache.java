@@ -0,0 +1,264 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件内容读取结果的缓存（校验值、元数据中的年份等）
+ * 以"文件 + 种类"为键，文件大小和修改时间都未变时直接使用上次的结果，不再读取文件内容。
+ * 文件由文件系统提供的标识（如 inode）识别，重命名后仍能命中；文件系统不提供标识时按路径识别。
+ *
+ * <p>缓存同时保存在 {@code ~/.file-rename-tool/content-cache}（可通过系统属性 {@code rename.contentCache} 修改），
+ * 新结果只追加到文件末尾，由 {@link #flush()} 一次写出；加载时过期的记录较多则重写整个文件。
+ * 异常退出时最后一条记录可能不完整，加载时会被截掉。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class ContentCache {
+
+    private static final int MAGIC = 0x46524331;  // "FRC1"
+    private static final int HEADER_BYTES = 4;
+    // 单条记录：键、大小、修改时间各 8 字节，值的长度 2 字节
+    private static final int RECORD_BYTES = 26;
+
+    /**
+     * 缓存的结果
+     */
+    private static final class Entry {
+        final long size;
+        final long mtime;
+        final String value;
+
+        Entry(long size, long mtime, String value) {
+            this.size = size;
+            this.mtime = mtime;
+            this.value = value;
+        }
+    }
+
+    private static final Map<Long, Entry> ENTRIES = new ConcurrentHashMap<>();
+    // 尚未写入文件的新记录
+    private static final ByteArrayOutputStream PENDING = new ByteArrayOutputStream();
+    private static final DataOutputStream PENDING_OUT = new DataOutputStream(PENDING);
+    // 缓存文件，指向的不是缓存文件时为 null，只在内存中缓存
+    private static Path file;
+    private static volatile boolean loaded;
+
+    private ContentCache() {
+    }
+
+    /**
+     * 获取缓存文件的默认路径
+     *
+     * @return 缓存文件
+     */
+    static Path defaultPath() {
+        String configured = System.getProperty("rename.contentCache");
+        if (configured != null && !configured.trim().isEmpty()) {
+            return Paths.get(configured.trim());
+        }
+        return UndoJournal.defaultPath().toAbsolutePath().getParent().resolve("content-cache");
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param kind       结果种类，如校验算法名称
+     * @param path       文件
+     * @param attributes 文件属性
+     * @return 缓存的结果，不存在或文件已变化时返回 null
+     */
+    static String get(String kind, Path path, BasicFileAttributes attributes) {
+        ensureLoaded();
+        Entry entry = ENTRIES.get(key(kind, path, attributes));
+        if (entry == null || entry.size != attributes.size() || entry.mtime != mtime(attributes)) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * 保存结果，在下次 {@link #flush()} 时写入缓存文件
+     *
+     * @param kind       结果种类
+     * @param path       文件
+     * @param attributes 读取内容前的文件属性
+     * @param value      结果
+     */
+    static void put(String kind, Path path, BasicFileAttributes attributes, String value) {
+        ensureLoaded();
+        long key = key(kind, path, attributes);
+        Entry entry = new Entry(attributes.size(), mtime(attributes), value);
+        ENTRIES.put(key, entry);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        synchronized (PENDING) {
+            try {
+                PENDING_OUT.writeLong(key);
+                PENDING_OUT.writeLong(entry.size);
+                PENDING_OUT.writeLong(entry.mtime);
+                PENDING_OUT.writeShort(bytes.length);
+                PENDING_OUT.write(bytes);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 将新记录追加到缓存文件，写入失败时只提示，缓存仍在内存中有效
+     */
+    static void flush() {
+        byte[] bytes;
+        synchronized (PENDING) {
+            if (PENDING.size() == 0) {
+                return;
+            }
+            bytes = PENDING.toByteArray();
+            PENDING.reset();
+        }
+        synchronized (ContentCache.class) {
+            if (file == null) {
+                // 缓存文件无效，不保存
+                return;
+            }
+            try {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    ByteBuffer buffer;
+                    if (channel.size() == 0) {
+                        buffer = ByteBuffer.allocate(HEADER_BYTES + bytes.length).putInt(MAGIC).put(bytes);
+                        buffer.flip();
+                    } else {
+                        buffer = ByteBuffer.wrap(bytes);
+                    }
+                    // 一次写出全部记录，多个进程同时追加时记录不会交错
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("警告: 内容缓存保存失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (ContentCache.class) {
+            if (loaded) {
+                return;
+            }
+            file = defaultPath();
+            try {
+                load();
+            } catch (IOException e) {
+                System.out.println("警告: 内容缓存无法读取，将重新读取文件内容: " + e.getMessage());
+            } finally {
+                loaded = true;
+            }
+        }
+    }
+
+    /**
+     * 读取缓存文件：截掉不完整的最后一条记录，过期记录过多时重写文件
+     * 文件不是本工具创建的缓存文件时（如 rename.contentCache 指向了其它文件）不读取也不修改，本次结果只缓存在内存中
+     *
+     * @throws IOException 读写失败时抛出
+     */
+    private static void load() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // 读满文件头或读到文件末尾
+            }
+            if (header.position() > 0 && (header.hasRemaining() || header.getInt(0) != MAGIC)) {
+                System.out.println("警告: " + file + " 不是内容缓存文件，已忽略，本次读取的结果不会保存。");
+                file = null;
+                return;
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < HEADER_BYTES) {
+            // 空文件，首次写入时补上文件头
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(HEADER_BYTES);
+        long records = 0;
+        while (buffer.remaining() >= RECORD_BYTES) {
+            int start = buffer.position();
+            long key = buffer.getLong();
+            long size = buffer.getLong();
+            long mtime = buffer.getLong();
+            int length = buffer.getShort() & 0xFFFF;
+            if (buffer.remaining() < length) {
+                buffer.position(start);
+                break;
+            }
+            String value = new String(bytes, buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            ENTRIES.put(key, new Entry(size, mtime, value));
+            records++;
+        }
+        if (records > ENTRIES.size() * 2L + 10_000) {
+            rewrite();
+        } else if (buffer.position() < bytes.length) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(buffer.position());
+            }
+        }
+    }
+
+    /**
+     * 只保留最新的记录，写入临时文件后原子替换
+     *
+     * @throws IOException 写入失败时抛出
+     */
+    private static void rewrite() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            for (Map.Entry<Long, Entry> item : ENTRIES.entrySet()) {
+                byte[] value = item.getValue().value.getBytes(StandardCharsets.UTF_8);
+                out.writeLong(item.getKey());
+                out.writeLong(item.getValue().size);
+                out.writeLong(item.getValue().mtime);
+                out.writeShort(value.length);
+                out.write(value);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long key(String kind, Path path, BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        String identity = fileKey != null ? fileKey.toString() : path.toAbsolutePath().normalize().toString();
+        return DirectorySnapshot.hash(kind + "\u0000" + identity);
+    }
+
+    private static long mtime(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+}
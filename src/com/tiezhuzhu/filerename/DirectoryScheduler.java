@@ -0,0 +1,186 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多目录任务调度器
+ * 批处理模式下同时处理多个目录：总并发数受 {@code jobs} 限制，同一文件系统（挂载点或设备）上的并发数另受
+ * {@code perStore} 限制，避免大量任务集中压在一个慢速挂载点上，而其它挂载点空闲。
+ *
+ * <p>任务按文件系统分别排队，某个文件系统达到上限时调度其它文件系统的任务，不会因队首任务等待而阻塞全部工作线程。
+ * 排队的任务数有上限，超出时 {@link #submit} 阻塞，因此逐行读取的目录列表再长，内存占用也是有界的。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class DirectoryScheduler implements AutoCloseable {
+
+    // 每个工作线程最多对应的排队任务数
+    private static final int QUEUE_PER_JOB = 64;
+    // 无法识别文件系统的目录共用的键
+    private static final Object UNKNOWN_STORE = new Object();
+
+    /**
+     * 单个文件系统的任务队列
+     */
+    private static final class StoreQueue {
+        final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        int running;
+    }
+
+    private final int jobs;
+    private final int perStore;
+    private final int maxQueued;
+    private final ExecutorService pool;
+    // 按文件系统分组的任务队列，按首次出现的顺序轮流调度
+    private final Map<Object, StoreQueue> stores = new LinkedHashMap<>();
+    private int queued;
+    private int active;
+
+    /**
+     * 创建调度器
+     *
+     * @param jobs     同时处理的最大目录数
+     * @param perStore 同一文件系统上同时处理的最大目录数
+     */
+    DirectoryScheduler(int jobs, int perStore) {
+        if (jobs < 1 || perStore < 1) {
+            throw new IllegalArgumentException("并发目录数必须大于 0");
+        }
+        this.jobs = jobs;
+        this.perStore = Math.min(perStore, jobs);
+        this.maxQueued = jobs * QUEUE_PER_JOB;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(jobs, runnable -> {
+            Thread thread = new Thread(runnable, "rename-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交一个目录的处理任务，排队任务过多时阻塞
+     *
+     * @param dir  目录，用于识别所在的文件系统
+     * @param task 处理任务
+     */
+    void submit(Path dir, Runnable task) {
+        Object key = storeKey(dir);
+        synchronized (this) {
+            boolean interrupted = false;
+            while (queued >= maxQueued) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            stores.computeIfAbsent(key, k -> new StoreQueue()).waiting.add(task);
+            queued++;
+            dispatch();
+        }
+    }
+
+    /**
+     * 等待所有已提交的任务完成
+     */
+    synchronized void awaitAll() {
+        boolean interrupted = false;
+        while (queued > 0 || active > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // 已开始的目录必须处理完才能输出汇总，这里继续等待
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 在总并发数和各文件系统的并发数允许时启动排队的任务，调用方须持有锁
+     */
+    private void dispatch() {
+        while (active < jobs && queued > 0) {
+            Map.Entry<Object, StoreQueue> next = null;
+            for (Map.Entry<Object, StoreQueue> entry : stores.entrySet()) {
+                StoreQueue store = entry.getValue();
+                if (!store.waiting.isEmpty() && store.running < perStore) {
+                    next = entry;
+                    break;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            // 被调度的文件系统移到末尾，各文件系统轮流获得空闲的工作线程
+            StoreQueue store = stores.remove(next.getKey());
+            stores.put(next.getKey(), store);
+
+            Runnable task = store.waiting.poll();
+            store.running++;
+            queued--;
+            active++;
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    finished(store);
+                }
+            });
+        }
+    }
+
+    private synchronized void finished(StoreQueue store) {
+        store.running--;
+        active--;
+        // 清理空闲的文件系统队列，避免目录列表很长时无限增长
+        Iterator<StoreQueue> iterator = stores.values().iterator();
+        while (iterator.hasNext()) {
+            StoreQueue candidate = iterator.next();
+            if (candidate.running == 0 && candidate.waiting.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        dispatch();
+        notifyAll();
+    }
+
+    /**
+     * 识别目录所在的文件系统
+     * Unix 上使用设备号（只需一次 stat），其它平台使用 {@link FileStore}
+     *
+     * @param dir 目录
+     * @return 文件系统的键，无法识别时返回共用的键
+     */
+    private static Object storeKey(Path dir) {
+        try {
+            if (dir.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+                return Files.getAttribute(dir, "unix:dev");
+            }
+            return Files.getFileStore(dir);
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return UNKNOWN_STORE;
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,353 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 增量处理使用的目录快照
+ * 对每个目录记录修改时间、已处理过的目录项名称（64 位哈希）和子目录名称。再次运行同一规则链时：
+ * <ul>
+ *     <li>目录的修改时间未变：目录项没有增删改名，直接跳过，不再列目录</li>
+ *     <li>目录已变化：仍需列目录，但已处理过的名称既不读取属性也不再匹配规则，只处理新出现的目录项</li>
+ * </ul>
+ * 快照按"根目录 + 递归深度 + 规则链 + 过滤条件"区分，保存在 {@code ~/.file-rename-tool/snapshots} 下
+ * （可通过系统属性 {@code rename.snapshotDir} 修改），只有在重命名真正执行后才会更新。
+ *
+ * <p>本次重命名成功的文件以新名称记入快照，不会被再次处理；失败或存在冲突的文件不记入快照，下次运行时会重新处理。
+ * 因大小、修改时间或隐藏属性不满足过滤条件而跳过的文件同样不记入快照，这些属性变化时目录的修改时间不变，
+ * 因此含有这类文件的目录下次总是重新列目录、重新检查它们。
+ *
+ * <p>快照不记录文件的大小和修改时间，只修改内容的文件不会被重新处理，因此按文件内容命名的规则（模式 10、11）
+ * 和需要完整目录列表的按顺序编号（模式 12）不使用增量处理。
+ * 名称以 64 位哈希保存，每个目录项只占 8 字节。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class DirectorySnapshot {
+
+    private static final int MAGIC = 0x46525331;  // "FRS1"
+    // 修改时间不可信（刚被修改过，之后同一时间刻度内的变化无法区分），下次必须重新列目录
+    private static final long MTIME_UNKNOWN = Long.MIN_VALUE;
+    private static final long MTIME_SETTLE_MILLIS = 2000;
+    // 读取时单个计数的上限，防止损坏的快照导致分配过大的数组
+    private static final int MAX_COUNT = 1 << 28;
+
+    /**
+     * 单个目录的快照
+     */
+    private static final class DirState {
+        final long mtime;        // 列目录之前读取的目录修改时间（纳秒）
+        final long[] names;      // 已处理过的目录项名称哈希，升序排列
+        final String[] subdirs;  // 子目录名称
+
+        DirState(long mtime, long[] names, String[] subdirs) {
+            this.mtime = mtime;
+            this.names = names;
+            this.subdirs = subdirs;
+        }
+    }
+
+    private final Path file;
+    private final Path root;
+    private final String identity;
+    // 上次保存的快照，按相对根目录的路径索引
+    private final Map<String, DirState> previous;
+    // 本次扫描生成的快照，各扫描线程并发写入
+    private final Map<String, DirState> current = new ConcurrentHashMap<>();
+
+    private DirectorySnapshot(Path file, Path root, String identity, Map<String, DirState> previous) {
+        this.file = file;
+        this.root = root;
+        this.identity = identity;
+        this.previous = previous;
+    }
+
+    /**
+     * 加载根目录在指定规则链下的快照，不存在或无法读取时返回空快照（相当于全量扫描）
+     *
+     * @param root           根目录
+     * @param rules          规则链
+     * @param recursionDepth 递归深度
+     * @return 目录快照
+     */
+    static DirectorySnapshot load(Path root, List<RenameRule> rules, int recursionDepth) {
+        Path normalized = root.toAbsolutePath().normalize();
+        String identity = normalized + "\n" + recursionDepth + "\n" + RenameRule.signature(rules)
+                + "\n" + EntryFilter.defaults().signature();
+        Path file = defaultDirectory().resolve(Long.toHexString(hash(identity)) + ".snapshot");
+
+        Map<String, DirState> previous = Collections.emptyMap();
+        if (Files.isRegularFile(file)) {
+            try {
+                previous = read(file, identity);
+            } catch (IOException e) {
+                System.out.println("警告: 增量快照无法读取，将全量扫描: " + e.getMessage());
+            }
+        }
+        return new DirectorySnapshot(file, normalized, identity, previous);
+    }
+
+    /**
+     * 获取快照的默认保存目录
+     *
+     * @return 快照目录
+     */
+    static Path defaultDirectory() {
+        String configured = System.getProperty("rename.snapshotDir");
+        if (configured != null && !configured.trim().isEmpty()) {
+            return Paths.get(configured.trim());
+        }
+        return UndoJournal.defaultPath().toAbsolutePath().getParent().resolve("snapshots");
+    }
+
+    /**
+     * 获取上次快照中记录的目录数量
+     *
+     * @return 目录数量，为 0 表示首次运行
+     */
+    int previousDirectories() {
+        return previous.size();
+    }
+
+    /**
+     * 开始扫描一个目录：读取目录的修改时间并与上次快照比较
+     *
+     * @param dir 目录
+     * @return 该目录的扫描记录
+     * @throws IOException 目录属性无法读取时抛出
+     */
+    Scan begin(Path dir) throws IOException {
+        long now = System.currentTimeMillis();
+        long mtime = Files.getLastModifiedTime(dir).to(TimeUnit.NANOSECONDS);
+        if (now - TimeUnit.NANOSECONDS.toMillis(mtime) < MTIME_SETTLE_MILLIS) {
+            mtime = MTIME_UNKNOWN;
+        }
+        String key = root.relativize(dir.toAbsolutePath().normalize()).toString();
+        return new Scan(key, previous.get(key), mtime);
+    }
+
+    /**
+     * 单个目录的扫描记录，只在一个线程中使用
+     */
+    final class Scan {
+        private final String key;
+        private final DirState old;
+        private final long mtime;
+        private long[] names = new long[16];
+        private int count;
+        private final List<String> subdirs = new ArrayList<>();
+        private Set<String> knownSubdirs;
+        private boolean revisit;
+
+        private Scan(String key, DirState old, long mtime) {
+            this.key = key;
+            this.old = old;
+            this.mtime = mtime;
+        }
+
+        /**
+         * 判断目录自上次快照以来是否没有变化
+         *
+         * @return true 如果目录项没有增删改名，可以直接跳过
+         */
+        boolean unchanged() {
+            return old != null && mtime != MTIME_UNKNOWN && old.mtime == mtime;
+        }
+
+        /**
+         * 获取上次快照中的子目录，用于跳过未变化目录时继续递归
+         *
+         * @return 子目录名称
+         */
+        String[] knownSubdirectories() {
+            return old == null ? new String[0] : old.subdirs;
+        }
+
+        /**
+         * 判断目录项是否已在上次运行中处理过
+         *
+         * @param name 目录项名称
+         * @return true 如果已处理过
+         */
+        boolean isKnown(String name) {
+            return old != null && Arrays.binarySearch(old.names, hash(name)) >= 0;
+        }
+
+        /**
+         * 判断已处理过的目录项是否为子目录
+         *
+         * @param name 目录项名称
+         * @return true 如果上次快照中它是子目录
+         */
+        boolean isKnownDirectory(String name) {
+            if (knownSubdirs == null) {
+                knownSubdirs = old == null ? Collections.emptySet() : new HashSet<>(Arrays.asList(old.subdirs));
+            }
+            return knownSubdirs.contains(name);
+        }
+
+        /**
+         * 记录已处理完毕、之后无需再处理的目录项
+         *
+         * @param name 目录项名称
+         */
+        void settle(String name) {
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+            }
+            names[count++] = hash(name);
+        }
+
+        /**
+         * 记录因属性（大小、修改时间、隐藏属性）被过滤掉的目录项：不记入快照，且下次不能跳过该目录
+         */
+        void revisit() {
+            revisit = true;
+        }
+
+        /**
+         * 记录子目录
+         *
+         * @param name 子目录名称
+         */
+        void directory(String name) {
+            settle(name);
+            subdirs.add(name);
+        }
+
+        /**
+         * 结束扫描，保存该目录的新快照
+         */
+        void finish() {
+            if (unchanged()) {
+                current.put(key, old);
+                return;
+            }
+            long[] sorted = Arrays.copyOf(names, count);
+            Arrays.sort(sorted);
+            current.put(key, new DirState(revisit ? MTIME_UNKNOWN : mtime, sorted, subdirs.toArray(new String[0])));
+        }
+    }
+
+    /**
+     * 保存快照：本次扫描的结果加上重命名成功的新名称
+     *
+     * @param executed 已执行的重命名计划
+     * @throws IOException 写入失败时抛出
+     */
+    void save(List<FileRenameTool.RenamePair> executed) throws IOException {
+        // 重命名成功的文件以新名称记入快照
+        Map<String, List<String>> renamed = new HashMap<>();
+        for (FileRenameTool.RenamePair pair : executed) {
+            if (pair.failure == null) {
+                Path dir = pair.dir.toAbsolutePath().normalize();
+                renamed.computeIfAbsent(root.relativize(dir).toString(), k -> new ArrayList<>()).add(pair.newName);
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : renamed.entrySet()) {
+            DirState state = current.get(entry.getKey());
+            if (state == null) {
+                continue;
+            }
+            long[] names = Arrays.copyOf(state.names, state.names.length + entry.getValue().size());
+            int index = state.names.length;
+            for (String name : entry.getValue()) {
+                names[index++] = hash(name);
+            }
+            Arrays.sort(names);
+            current.put(entry.getKey(), new DirState(state.mtime, names, state.subdirs));
+        }
+
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(identity);
+            out.writeInt(current.size());
+            for (Map.Entry<String, DirState> entry : current.entrySet()) {
+                DirState state = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(state.mtime);
+                out.writeInt(state.names.length);
+                for (long name : state.names) {
+                    out.writeLong(name);
+                }
+                out.writeInt(state.subdirs.length);
+                for (String subdir : state.subdirs) {
+                    out.writeUTF(subdir);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Map<String, DirState> read(Path file, String identity) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || !identity.equals(in.readUTF())) {
+                return Collections.emptyMap();
+            }
+            int directories = readCount(in);
+            Map<String, DirState> states = new HashMap<>(directories * 2);
+            for (int d = 0; d < directories; d++) {
+                String key = in.readUTF();
+                long mtime = in.readLong();
+                long[] names = new long[readCount(in)];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = in.readLong();
+                }
+                String[] subdirs = new String[readCount(in)];
+                for (int i = 0; i < subdirs.length; i++) {
+                    subdirs[i] = in.readUTF();
+                }
+                states.put(key, new DirState(mtime, names, subdirs));
+            }
+            return states;
+        }
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("快照已损坏");
+        }
+        return count;
+    }
+
+    /**
+     * 64 位字符串哈希（FNV-1a 加 MurmurHash3 的 fmix64 混合），用于紧凑地保存名称
+     *
+     * @param value 字符串
+     * @return 哈希值
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
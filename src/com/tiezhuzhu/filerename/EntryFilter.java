@@ -0,0 +1,634 @@
+package com.tiezhuzhu.filerename;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 目录项过滤器：决定哪些目录项参与重命名
+ * 过滤分两个阶段，在列目录的过程中完成：
+ * <ol>
+ *     <li>名称阶段：刚读到目录项名称、尚未读取文件属性时执行，被排除的目录项不会读取属性，也不会创建文件对；
+ *     被排除的目录同样不再递归</li>
+ *     <li>属性阶段：复用扫描本来就要读取的一次文件属性，检查大小、修改时间和 Windows 的隐藏属性</li>
+ * </ol>
+ *
+ * <p>名称规则以逗号分隔（花括号和方括号内的逗号除外），每条规则可以是：
+ * <ul>
+ *     <li>{@code *.ext}：扩展名，按哈希集合查找，如 {@code *.tmp}、{@code *.tar.gz}</li>
+ *     <li>不含通配符的名称：完整名称，按哈希集合查找，如 {@code Thumbs.db}</li>
+ *     <li>通配符（glob）：支持 {@code * ? [abc] [!abc] {a,b}}，编译为正则，先比较通配符前后的固定文字，可加前缀 {@code glob:}</li>
+ *     <li>{@code re:} 开头：正则表达式，在名称中查找</li>
+ * </ul>
+ * 以 {@code /} 结尾的规则只匹配目录（如 {@code node_modules/}）。扩展名、名称和通配符的大小写规则与冲突检测一致，
+ * 正则按原名称匹配（可用 {@code (?i)} 忽略大小写）。
+ *
+ * <p>可通过系统属性进行配置：
+ * <ul>
+ *     <li>{@code rename.exclude}：排除规则，与内置排除规则（{@code *.exe,*.java,FileRenameTool.class}）一起生效</li>
+ *     <li>{@code rename.defaultExcludes}：为 false 时不使用内置排除规则，默认 true</li>
+ *     <li>{@code rename.include}：包含规则，设置后只处理匹配任一规则的文件（目录不受影响）</li>
+ *     <li>{@code rename.skipHidden}：为 true 时跳过隐藏文件和目录（以 . 开头，Windows 上还包括带隐藏属性的），默认 false</li>
+ *     <li>{@code rename.minSize}、{@code rename.maxSize}：文件大小范围，可带单位 K/M/G/T，如 {@code 10M}</li>
+ *     <li>{@code rename.modifiedAfter}、{@code rename.modifiedBefore}：修改时间范围，可以是日期
+ *     {@code 2024-01-31}、日期时间 {@code 2024-01-31T08:00}，或距今的时长 {@code 30m}/{@code 12h}/{@code 7d}/{@code 2w}</li>
+ * </ul>
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class EntryFilter {
+
+    static final String DEFAULT_EXCLUDES = "*.exe,*.java,FileRenameTool.class";
+
+    private static final boolean WINDOWS = System.getProperty("os.name", "")
+            .toLowerCase(Locale.ROOT).startsWith("windows");
+
+    // 一条通配符展开花括号后最多得到的规则数
+    private static final int MAX_EXPANSIONS = 1024;
+
+    private static volatile EntryFilter defaults;
+
+    /**
+     * 编译后的通配符：先比较通配符前后的固定文字，不相符的名称不必执行正则
+     */
+    private static final class Glob {
+        final String prefix;
+        final String suffix;
+        // 中间必须出现的最长一段字面文字，如 *.part[0-9] 的 ".part"
+        final String infix;
+        final Pattern pattern;
+
+        Glob(String glob) {
+            int first = 0;
+            while (first < glob.length() && !isSpecial(glob.charAt(first))) {
+                first++;
+            }
+            int last = glob.length();
+            while (last > first && !isSpecial(glob.charAt(last - 1))) {
+                last--;
+            }
+            // 含转义字符时前后的文字不一定是字面值，不做预先比较
+            boolean escaped = glob.indexOf('\\') >= 0;
+            this.prefix = escaped ? "" : glob.substring(0, first);
+            this.suffix = escaped ? "" : glob.substring(last);
+            this.infix = escaped ? "" : longestLiteral(glob, first, last);
+            this.pattern = Pattern.compile(globToRegex(glob), Pattern.DOTALL);
+        }
+
+        boolean matches(String key) {
+            return key.startsWith(prefix) && key.endsWith(suffix)
+                    && key.length() >= prefix.length() + suffix.length()
+                    && (infix.isEmpty() || key.indexOf(infix, prefix.length()) >= 0)
+                    && pattern.matcher(key).matches();
+        }
+
+        /**
+         * 找出 [from, to) 中方括号以外最长的一段字面文字
+         */
+        private static String longestLiteral(String glob, int from, int to) {
+            int bestStart = 0;
+            int bestLength = 0;
+            int start = -1;
+            for (int i = from; i <= to; i++) {
+                char c = i < to ? glob.charAt(i) : '*';
+                if (!isSpecial(c)) {
+                    if (start < 0) {
+                        start = i;
+                    }
+                    continue;
+                }
+                if (start >= 0 && i - start > bestLength) {
+                    bestStart = start;
+                    bestLength = i - start;
+                }
+                start = -1;
+                // 与 globToRegex 一致地跳过整个方括号
+                int close = c == '[' ? glob.indexOf(']', i + 2) : -1;
+                if (close > 0 && close < to) {
+                    i = close;
+                }
+            }
+            return glob.substring(bestStart, bestStart + bestLength);
+        }
+
+        private static boolean isSpecial(char c) {
+            return c == '*' || c == '?' || c == '[' || c == ']' || c == '{' || c == '}' || c == ',' || c == '\\';
+        }
+    }
+
+    /**
+     * 一组名称规则
+     */
+    private static final class NameRules {
+        private final Set<String> names = new HashSet<>();
+        private final Set<String> extensions = new HashSet<>();
+        // 扩展名中最多包含的点数，如 *.tar.gz 为 2
+        private int extensionDots;
+        private final List<Glob> globs = new ArrayList<>();
+        private final List<Pattern> regexes = new ArrayList<>();
+
+        boolean isEmpty() {
+            return names.isEmpty() && extensions.isEmpty() && globs.isEmpty() && regexes.isEmpty();
+        }
+
+        /**
+         * 判断名称是否匹配任一规则
+         *
+         * @param name 原名称
+         * @param key  大小写规则处理后的名称
+         * @return true 如果匹配
+         */
+        boolean matches(String name, String key) {
+            if (names.contains(key)) {
+                return true;
+            }
+            if (!extensions.isEmpty()) {
+                int dot = key.length();
+                for (int i = 0; i < extensionDots; i++) {
+                    dot = key.lastIndexOf('.', dot - 1);
+                    if (dot < 0) {
+                        break;
+                    }
+                    if (extensions.contains(key.substring(dot))) {
+                        return true;
+                    }
+                }
+            }
+            for (Glob glob : globs) {
+                if (glob.matches(key)) {
+                    return true;
+                }
+            }
+            for (Pattern regex : regexes) {
+                if (regex.matcher(name).find()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final NameRules excludeRules = new NameRules();
+    private final NameRules directoryRules = new NameRules();
+    private final NameRules includeRules = new NameRules();
+    private final boolean skipHidden;
+    private final long minSize;
+    private final long maxSize;
+    private final long modifiedAfter;
+    private final long modifiedBefore;
+    private final String signature;
+
+    /**
+     * 创建过滤器
+     *
+     * @param exclude        排除规则
+     * @param include        包含规则，为空表示包含全部文件
+     * @param skipHidden     是否跳过隐藏文件和目录
+     * @param minSize        最小文件大小（字节，含）
+     * @param maxSize        最大文件大小（字节，含）
+     * @param modifiedAfter  修改时间下限（毫秒，含），为 Long.MIN_VALUE 表示不限
+     * @param modifiedBefore 修改时间上限（毫秒，不含），为 Long.MAX_VALUE 表示不限
+     * @param signature      过滤条件的文字形式，用于区分增量快照
+     */
+    EntryFilter(String exclude, String include, boolean skipHidden, long minSize, long maxSize,
+                long modifiedAfter, long modifiedBefore, String signature) {
+        if (minSize < 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("文件大小范围无效: " + minSize + " - " + maxSize);
+        }
+        for (String rule : split(exclude)) {
+            if (rule.endsWith("/")) {
+                add(directoryRules, rule.substring(0, rule.length() - 1));
+            } else {
+                add(excludeRules, rule);
+            }
+        }
+        for (String rule : split(include)) {
+            add(includeRules, rule);
+        }
+        this.skipHidden = skipHidden;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.modifiedAfter = modifiedAfter;
+        this.modifiedBefore = modifiedBefore;
+        this.signature = signature;
+    }
+
+    /**
+     * 获取按系统属性创建的过滤器，首次调用时创建
+     *
+     * @return 过滤器
+     * @throws IllegalArgumentException 过滤条件无效时抛出
+     */
+    static EntryFilter defaults() {
+        EntryFilter filter = defaults;
+        if (filter == null) {
+            synchronized (EntryFilter.class) {
+                filter = defaults;
+                if (filter == null) {
+                    filter = fromSystemProperties();
+                    defaults = filter;
+                }
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * 根据系统属性创建过滤器
+     *
+     * @return 过滤器
+     * @throws IllegalArgumentException 过滤条件无效时抛出
+     */
+    static EntryFilter fromSystemProperties() {
+        String exclude = System.getProperty("rename.exclude", "");
+        if (Boolean.parseBoolean(System.getProperty("rename.defaultExcludes", "true"))) {
+            exclude = exclude.trim().isEmpty() ? DEFAULT_EXCLUDES : DEFAULT_EXCLUDES + "," + exclude;
+        }
+        String include = System.getProperty("rename.include", "");
+        boolean skipHidden = Boolean.getBoolean("rename.skipHidden");
+        String minSize = System.getProperty("rename.minSize", "");
+        String maxSize = System.getProperty("rename.maxSize", "");
+        String after = System.getProperty("rename.modifiedAfter", "");
+        String before = System.getProperty("rename.modifiedBefore", "");
+        long now = System.currentTimeMillis();
+        return new EntryFilter(exclude, include, skipHidden,
+                minSize.trim().isEmpty() ? 0 : parseSize("rename.minSize", minSize),
+                maxSize.trim().isEmpty() ? Long.MAX_VALUE : parseSize("rename.maxSize", maxSize),
+                after.trim().isEmpty() ? Long.MIN_VALUE : parseTime("rename.modifiedAfter", after, now),
+                before.trim().isEmpty() ? Long.MAX_VALUE : parseTime("rename.modifiedBefore", before, now),
+                // 使用原始配置而不是换算后的时间，相对时长的快照不会每次运行都变化
+                String.join("\u0000", exclude, include, String.valueOf(skipHidden), minSize, maxSize, after, before));
+    }
+
+    /**
+     * 名称阶段：判断目录项是否被排除（文件和目录均适用，被排除的目录不再递归）
+     * 此时尚未读取文件属性
+     *
+     * @param name 目录项名称
+     * @return true 如果被排除
+     */
+    boolean excludes(String name) {
+        if (skipHidden && name.startsWith(".")) {
+            return true;
+        }
+        return !excludeRules.isEmpty() && excludeRules.matches(name, ConflictIndex.key(name));
+    }
+
+    /**
+     * 名称阶段：判断文件是否满足包含规则
+     *
+     * @param name 文件名
+     * @return true 如果未设置包含规则或匹配任一包含规则
+     */
+    boolean includes(String name) {
+        return includeRules.isEmpty() || includeRules.matches(name, ConflictIndex.key(name));
+    }
+
+    /**
+     * 判断目录是否被只匹配目录的规则（以 / 结尾）或隐藏属性排除
+     *
+     * @param name       目录名
+     * @param attributes 目录属性，为 null 时只按名称判断
+     * @return true 如果被排除
+     */
+    boolean excludesDirectory(String name, BasicFileAttributes attributes) {
+        if (attributes != null && isHidden(attributes)) {
+            return true;
+        }
+        return !directoryRules.isEmpty() && directoryRules.matches(name, ConflictIndex.key(name));
+    }
+
+    /**
+     * 属性阶段：判断文件是否满足大小、修改时间和隐藏属性条件
+     *
+     * @param attributes 文件属性，需按 {@link #attributeType()} 读取
+     * @return true 如果满足
+     */
+    boolean accepts(BasicFileAttributes attributes) {
+        long size = attributes.size();
+        if (size < minSize || size > maxSize) {
+            return false;
+        }
+        if (modifiedAfter != Long.MIN_VALUE || modifiedBefore != Long.MAX_VALUE) {
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (modified < modifiedAfter || modified >= modifiedBefore) {
+                return false;
+            }
+        }
+        return !isHidden(attributes);
+    }
+
+    /**
+     * 扫描时应读取的属性类型：需要检查 Windows 隐藏属性时读取 DOS 属性（与基本属性同一次系统调用）
+     *
+     * @return 属性类型
+     */
+    Class<? extends BasicFileAttributes> attributeType() {
+        return skipHidden && WINDOWS ? DosFileAttributes.class : BasicFileAttributes.class;
+    }
+
+    /**
+     * 过滤条件的文字形式，过滤条件不同的增量快照分别保存
+     *
+     * @return 过滤条件
+     */
+    String signature() {
+        return signature;
+    }
+
+    private boolean isHidden(BasicFileAttributes attributes) {
+        return skipHidden && attributes instanceof DosFileAttributes && ((DosFileAttributes) attributes).isHidden();
+    }
+
+    /**
+     * 按顶层逗号拆分规则，花括号和方括号内的逗号属于规则本身
+     *
+     * @param rules 以逗号分隔的规则
+     * @return 去掉首尾空白后的非空规则
+     */
+    static List<String> split(String rules) {
+        List<String> result = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < rules.length(); i++) {
+            char c = rules.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && depth > 0) {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                addRule(result, rules.substring(start, i));
+                start = i + 1;
+            }
+        }
+        // 最后一条规则（括号未闭合时也在这里，由编译时报错）
+        if (start < rules.length()) {
+            addRule(result, rules.substring(start));
+        }
+        return result;
+    }
+
+    private static void addRule(List<String> result, String rule) {
+        rule = rule.trim();
+        if (!rule.isEmpty()) {
+            result.add(rule);
+        }
+    }
+
+    private static void add(NameRules rules, String rule) {
+        if (rule.startsWith("re:")) {
+            try {
+                rules.regexes.add(Pattern.compile(rule.substring(3)));
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("正则表达式无效: " + rule.substring(3), e);
+            }
+            return;
+        }
+        String pattern = ConflictIndex.key(rule.startsWith("glob:") ? rule.substring(5) : rule);
+        List<String> expanded = new ArrayList<>();
+        expandBraces(pattern, expanded);
+        for (String glob : expanded) {
+            addGlob(rules, glob);
+        }
+    }
+
+    /**
+     * 添加一条已展开花括号的通配符：不含通配符的按名称、{@code *.ext} 按扩展名，其余编译为正则
+     *
+     * @param rules 规则组
+     * @param glob  通配符
+     */
+    private static void addGlob(NameRules rules, String glob) {
+        if (glob.isEmpty()) {
+            return;
+        }
+        if (!hasWildcard(glob, 0)) {
+            rules.names.add(glob);
+        } else if (glob.startsWith("*.") && glob.length() > 2 && !hasWildcard(glob, 1)) {
+            String extension = glob.substring(1);
+            rules.extensions.add(extension);
+            int dots = 0;
+            for (int i = 0; i < extension.length(); i++) {
+                if (extension.charAt(i) == '.') {
+                    dots++;
+                }
+            }
+            rules.extensionDots = Math.max(rules.extensionDots, dots);
+        } else {
+            rules.globs.add(new Glob(glob));
+        }
+    }
+
+    /**
+     * 展开通配符中的花括号，如 {@code *.{jpg,png}} 展开为 {@code *.jpg} 和 {@code *.png}，
+     * 展开后的扩展名和名称也能按哈希集合查找
+     *
+     * @param glob   通配符
+     * @param result 展开结果
+     */
+    static void expandBraces(String glob, List<String> result) {
+        int open = -1;
+        int depth = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '{') {
+                if (depth++ == 0) {
+                    open = i;
+                }
+            } else if (c == '}' && depth > 0 && --depth == 0) {
+                String head = glob.substring(0, open);
+                String tail = glob.substring(i + 1);
+                int start = open + 1;
+                int inner = 0;
+                for (int j = open + 1; j <= i; j++) {
+                    char d = glob.charAt(j);
+                    if (d == '\\') {
+                        j++;
+                    } else if (d == '{') {
+                        inner++;
+                    } else if (d == '}' && inner > 0) {
+                        inner--;
+                    } else if ((d == ',' && inner == 0) || j == i) {
+                        expandBraces(head + glob.substring(start, j) + tail, result);
+                        if (result.size() > MAX_EXPANSIONS) {
+                            throw new IllegalArgumentException("通配符展开后的规则过多: " + glob);
+                        }
+                        start = j + 1;
+                    }
+                }
+                return;
+            }
+        }
+        if (depth > 0) {
+            throw new IllegalArgumentException("通配符中的 { 没有闭合: " + glob);
+        }
+        result.add(glob);
+    }
+
+    private static boolean hasWildcard(String glob, int from) {
+        for (int i = from; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{' || c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 将通配符转换为等价的正则表达式
+     *
+     * @param glob 通配符
+     * @return 正则表达式
+     */
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 16);
+        int braces = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*':
+                    regex.append(".*");
+                    break;
+                case '?':
+                    regex.append('.');
+                    break;
+                case '\\':
+                    if (i + 1 < glob.length()) {
+                        appendLiteral(regex, glob.charAt(++i));
+                    } else {
+                        appendLiteral(regex, c);
+                    }
+                    break;
+                case '[': {
+                    int close = glob.indexOf(']', i + 2);
+                    if (close < 0) {
+                        appendLiteral(regex, c);
+                        break;
+                    }
+                    regex.append('[');
+                    int j = i + 1;
+                    if (glob.charAt(j) == '!' || glob.charAt(j) == '^') {
+                        regex.append('^');
+                        j++;
+                    }
+                    for (; j < close; j++) {
+                        char d = glob.charAt(j);
+                        if (d == '\\' || d == '[' || d == '&' || d == '^') {
+                            regex.append('\\');
+                        }
+                        regex.append(d);
+                    }
+                    regex.append(']');
+                    i = close;
+                    break;
+                }
+                case '{':
+                    regex.append("(?:");
+                    braces++;
+                    break;
+                case '}':
+                    if (braces > 0) {
+                        regex.append(')');
+                        braces--;
+                    } else {
+                        appendLiteral(regex, c);
+                    }
+                    break;
+                case ',':
+                    regex.append(braces > 0 ? '|' : ',');
+                    break;
+                default:
+                    appendLiteral(regex, c);
+            }
+        }
+        if (braces > 0) {
+            throw new IllegalArgumentException("通配符中的 { 没有闭合: " + glob);
+        }
+        return regex.toString();
+    }
+
+    private static void appendLiteral(StringBuilder regex, char c) {
+        if (c < 128 && !Character.isLetterOrDigit(c)) {
+            regex.append('\\');
+        }
+        regex.append(c);
+    }
+
+    /**
+     * 解析文件大小，可带单位 K/M/G/T（按 1024 换算），单位后可再跟 B
+     *
+     * @param key   配置名称
+     * @param value 配置值
+     * @return 字节数
+     */
+    static long parseSize(String key, String value) {
+        String text = value.trim().toUpperCase(Locale.ROOT);
+        if (text.endsWith("B")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        int shift = 0;
+        if (!text.isEmpty()) {
+            int unit = "KMGT".indexOf(text.charAt(text.length() - 1));
+            if (unit >= 0) {
+                shift = (unit + 1) * 10;
+                text = text.substring(0, text.length() - 1);
+            }
+        }
+        try {
+            long number = Long.parseLong(text.trim());
+            if (number < 0 || number > Long.MAX_VALUE >> shift) {
+                throw new IllegalArgumentException(key + " 超出范围: " + value);
+            }
+            return number << shift;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " 无效: " + value);
+        }
+    }
+
+    /**
+     * 解析时间：日期、日期时间（按本地时区）或距今的时长
+     *
+     * @param key   配置名称
+     * @param value 配置值
+     * @param now   当前时间（毫秒）
+     * @return 时间（毫秒）
+     */
+    static long parseTime(String key, String value, long now) {
+        String text = value.trim();
+        int unit = text.isEmpty() ? -1 : "smhdw".indexOf(Character.toLowerCase(text.charAt(text.length() - 1)));
+        if (unit >= 0) {
+            try {
+                long amount = Long.parseLong(text.substring(0, text.length() - 1));
+                long[] seconds = {1, 60, 3600, 86400, 7 * 86400};
+                return now - TimeUnit.SECONDS.toMillis(amount * seconds[unit]);
+            } catch (NumberFormatException e) {
+                // 按日期解析
+            }
+        }
+        try {
+            if (text.indexOf('T') >= 0) {
+                return LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            }
+            return LocalDate.parse(text).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(key + " 无效（示例: 2024-01-31、2024-01-31T08:00、7d）: " + value);
+        }
+    }
+}
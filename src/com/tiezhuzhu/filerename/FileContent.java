@@ -0,0 +1,660 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * 读取文件内容：计算校验值、从元数据中读取日期
+ * 只读取需要的字节：校验值顺序读取整个文件，较大的文件按窗口内存映射，较小的文件用复用的直接缓冲区按位置读取；
+ * 元数据只按位置读取文件头部（以及 ID3v1、PDF 所在的文件末尾）中用到的几段，不读取图片、音频和视频数据本身。
+ * 结果按文件大小和修改时间缓存在 {@link ContentCache} 中，文件未变化时不再读取。
+ *
+ * <p>支持的元数据：JPEG/TIFF 及基于 TIFF 的 RAW 格式的 EXIF 拍摄时间，MP3 的 ID3v2/ID3v1 年份，
+ * PDF 的创建日期，MP4/MOV 的创建时间。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class FileContent {
+
+    static final String CRC32C = "CRC32C";
+    static final String DEFAULT_ALGORITHM = "SHA-256";
+    // 元数据年份在缓存中的种类
+    private static final String YEAR = "year";
+
+    // 不小于该大小的文件按窗口内存映射后计算校验值
+    private static final long MAP_THRESHOLD = Long.getLong("rename.mmapThreshold", 16L << 20);
+    private static final long MAP_WINDOW = 64L << 20;
+    // 按位置读取时每次读取的字节数，也是元数据读取窗口的大小
+    private static final int READ_BUFFER = 1 << 20;
+    private static final int WINDOW = 64 << 10;
+    // 拆分并行任务时每个任务处理的文件数
+    private static final int FILES_PER_TASK = 4;
+
+    // 每个线程复用的读取缓冲区
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER));
+    private static final ThreadLocal<byte[]> WINDOWS = ThreadLocal.withInitial(() -> new byte[WINDOW]);
+
+    /**
+     * 读取文件内容的线程池，按需创建
+     */
+    private static final class Pool {
+        static final ForkJoinPool POOL = new ForkJoinPool(
+                Integer.getInteger("rename.contentThreads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    private FileContent() {
+    }
+
+    /**
+     * 对同一目录下的多个文件应用规则链，各文件的内容由多个线程同时读取
+     * 在 ForkJoin 线程池中调用时（如递归扫描）使用当前线程池，否则使用 {@code rename.contentThreads} 指定大小的线程池
+     *
+     * @param rules 规则链
+     * @param dir   目录
+     * @param names 文件名
+     * @return 与 names 一一对应的新文件名，无需重命名的为 null
+     */
+    static String[] applyAll(List<RenameRule> rules, Path dir, List<String> names) {
+        String[] newNames = new String[names.size()];
+        // 规则对象含匹配状态，每个线程使用独立的副本
+        ThreadLocal<List<RenameRule>> localRules = ThreadLocal.withInitial(() -> RenameRule.copyAll(rules));
+        ApplyTask task = new ApplyTask(localRules, dir, names, newNames, 0, names.size());
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            Pool.POOL.invoke(task);
+        }
+        ContentCache.flush();
+        return newNames;
+    }
+
+    /**
+     * 按文件拆分的规则应用任务，不会被序列化
+     */
+    @SuppressWarnings("serial")
+    private static final class ApplyTask extends RecursiveAction {
+        private final ThreadLocal<List<RenameRule>> localRules;
+        private final Path dir;
+        private final List<String> names;
+        private final String[] newNames;
+        private final int from;
+        private final int to;
+
+        ApplyTask(ThreadLocal<List<RenameRule>> localRules, Path dir, List<String> names, String[] newNames,
+                  int from, int to) {
+            this.localRules = localRules;
+            this.dir = dir;
+            this.names = names;
+            this.newNames = newNames;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ApplyTask(localRules, dir, names, newNames, from, middle),
+                        new ApplyTask(localRules, dir, names, newNames, middle, to));
+                return;
+            }
+            List<RenameRule> rules = localRules.get();
+            for (int i = from; i < to; i++) {
+                String name = names.get(i);
+                // names 为按顺序编号（模式12）排好的顺序时，位置即编号
+                newNames[i] = RenameRule.applyAll(rules, name, dir.resolve(name), i, names.size());
+            }
+        }
+    }
+
+    /**
+     * 校验算法的标准名称
+     *
+     * @param name 算法名称，不区分大小写，为空时使用 SHA-256
+     * @return 标准名称
+     * @throws IllegalArgumentException 不支持该算法时抛出
+     */
+    static String algorithm(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return DEFAULT_ALGORITHM;
+        }
+        if (CRC32C.equalsIgnoreCase(name.trim())) {
+            return CRC32C;
+        }
+        try {
+            return MessageDigest.getInstance(name.trim().toUpperCase()).getAlgorithm();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("不支持的校验算法: " + name);
+        }
+    }
+
+    /**
+     * 校验值的十六进制位数
+     *
+     * @param algorithm 标准算法名称
+     * @return 位数
+     */
+    static int hexLength(String algorithm) {
+        if (CRC32C.equals(algorithm)) {
+            return 8;
+        }
+        return newDigest(algorithm).getDigestLength() * 2;
+    }
+
+    /**
+     * 计算文件内容的校验值
+     *
+     * @param file      文件
+     * @param algorithm 标准算法名称
+     * @return 小写十六进制的校验值，无法读取时提示并返回 null
+     */
+    static String digest(Path file, String algorithm) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            String cached = ContentCache.get(algorithm, file, attributes);
+            if (cached != null) {
+                return cached;
+            }
+            String value = hex(hash(file, algorithm));
+            ContentCache.put(algorithm, file, attributes, value);
+            return value;
+        } catch (IOException e) {
+            warn(file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 从文件元数据中读取年份
+     *
+     * @param file 文件
+     * @return 年份（1900-2099），没有可识别的元数据或无法读取时返回 0
+     */
+    static int metadataYear(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            String cached = ContentCache.get(YEAR, file, attributes);
+            if (cached != null) {
+                return cached.isEmpty() ? 0 : Integer.parseInt(cached);
+            }
+            int year;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                year = readYear(new Source(channel));
+            }
+            ContentCache.put(YEAR, file, attributes, year == 0 ? "" : Integer.toString(year));
+            return year;
+        } catch (IOException e) {
+            warn(file, e);
+            return 0;
+        }
+    }
+
+    private static void warn(Path file, IOException e) {
+        System.out.println("警告: 无法读取文件内容，已跳过: " + file + "（" + e.getMessage() + "）");
+    }
+
+    private static byte[] hash(Path file, String algorithm) throws IOException {
+        Checksum checksum = CRC32C.equals(algorithm) ? new CRC32C() : null;
+        MessageDigest digest = checksum == null ? newDigest(algorithm) : null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_WINDOW) {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(MAP_WINDOW, size - position));
+                    update(checksum, digest, window);
+                }
+            } else {
+                ByteBuffer buffer = BUFFERS.get();
+                long position = 0;
+                while (true) {
+                    buffer.clear();
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        break;
+                    }
+                    position += read;
+                    buffer.flip();
+                    update(checksum, digest, buffer);
+                }
+            }
+        }
+        if (checksum == null) {
+            return digest.digest();
+        }
+        return ByteBuffer.allocate(4).putInt((int) checksum.getValue()).array();
+    }
+
+    private static void update(Checksum checksum, MessageDigest digest, ByteBuffer buffer) {
+        if (checksum != null) {
+            checksum.update(buffer);
+        } else {
+            digest.update(buffer);
+        }
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("不支持的校验算法: " + algorithm);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            chars[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 按文件格式读取元数据中的年份
+     *
+     * @param source 文件
+     * @return 年份，没有时返回 0
+     * @throws IOException 读取失败时抛出
+     */
+    private static int readYear(Source source) throws IOException {
+        if (!source.load(0, 12)) {
+            return 0;
+        }
+        if (source.u8(0) == 0xFF && source.u8(1) == 0xD8) {
+            return jpegYear(source);
+        }
+        String magic = source.ascii(0, 4);
+        if (magic.equals("II*\u0000") || magic.equals("MM\u0000*")) {
+            return tiffYear(source, 0);
+        }
+        if (magic.startsWith("ID3")) {
+            int year = id3v2Year(source);
+            return year != 0 ? year : id3v1Year(source);
+        }
+        if (source.u8(0) == 0xFF && (source.u8(1) & 0xE0) == 0xE0) {
+            // 没有 ID3v2 标签的 MPEG 音频
+            return id3v1Year(source);
+        }
+        if (magic.equals("%PDF")) {
+            return pdfYear(source);
+        }
+        if (source.ascii(4, 4).equals("ftyp")) {
+            return mp4Year(source);
+        }
+        return 0;
+    }
+
+    /**
+     * JPEG：逐个读取段头，找到 APP1 中的 EXIF 数据
+     */
+    private static int jpegYear(Source source) throws IOException {
+        long position = 2;
+        while (source.load(position, 4)) {
+            source.little = false;
+            if (source.u8(position) != 0xFF) {
+                return 0;
+            }
+            int marker = source.u8(position + 1);
+            if (marker == 0xFF) {
+                position++;
+                continue;
+            }
+            // 图像数据开始或结束，之后不再有元数据
+            if (marker == 0xDA || marker == 0xD9) {
+                return 0;
+            }
+            int length = source.u16(position + 2);
+            if (marker == 0xE1 && source.load(position + 4, 6) && source.ascii(position + 4, 4).equals("Exif")
+                    && source.u8(position + 8) == 0 && source.u8(position + 9) == 0) {
+                return tiffYear(source, position + 10);
+            }
+            position += 2 + length;
+        }
+        return 0;
+    }
+
+    /**
+     * TIFF 结构（EXIF）：依次取拍摄时间、数字化时间、修改时间
+     *
+     * @param source 文件
+     * @param base   TIFF 头的位置，其中的偏移量都相对于该位置
+     * @return 年份，没有时返回 0
+     */
+    private static int tiffYear(Source source, long base) throws IOException {
+        if (!source.load(base, 8)) {
+            return 0;
+        }
+        int order = source.u16(base);
+        if (order != 0x4949 && order != 0x4D4D) {
+            return 0;
+        }
+        source.little = order == 0x4949;
+        if (source.u16(base + 2) != 42) {
+            return 0;
+        }
+        long ifd0 = base + source.u32(base + 4);
+        long exif = tiffEntry(source, ifd0, 0x8769);
+        int year = 0;
+        if (exif >= 0 && source.load(exif, 12)) {
+            long exifIfd = base + source.u32(exif + 8);
+            year = asciiYear(source, base, tiffEntry(source, exifIfd, 0x9003));
+            if (year == 0) {
+                year = asciiYear(source, base, tiffEntry(source, exifIfd, 0x9004));
+            }
+        }
+        if (year == 0) {
+            year = asciiYear(source, base, tiffEntry(source, ifd0, 0x0132));
+        }
+        return year;
+    }
+
+    /**
+     * 在 IFD 中查找标签
+     *
+     * @return 标签项的位置，没有时返回 -1
+     */
+    private static long tiffEntry(Source source, long ifd, int tag) throws IOException {
+        if (!source.load(ifd, 2)) {
+            return -1;
+        }
+        int count = source.u16(ifd);
+        for (int i = 0; i < count; i++) {
+            long entry = ifd + 2 + 12L * i;
+            if (!source.load(entry, 12)) {
+                return -1;
+            }
+            if (source.u16(entry) == tag) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 读取 ASCII 类型标签值（如 "2019:06:01 12:00:00"）中的年份
+     */
+    private static int asciiYear(Source source, long base, long entry) throws IOException {
+        if (entry < 0 || !source.load(entry, 12) || source.u16(entry + 2) != 2 || source.u32(entry + 4) < 4) {
+            return 0;
+        }
+        long value = source.u32(entry + 4) <= 4 ? entry + 8 : base + source.u32(entry + 8);
+        return source.load(value, 4) ? year(source.ascii(value, 4)) : 0;
+    }
+
+    /**
+     * ID3v2：逐个读取帧头，只读取年份帧的内容
+     */
+    private static int id3v2Year(Source source) throws IOException {
+        int major = source.u8(3);
+        if (major < 2 || major > 4) {
+            return 0;
+        }
+        long end = 10 + syncsafe(source, 6);
+        long position = 10;
+        if ((source.u8(5) & 0x40) != 0 && major >= 3 && source.load(10, 4)) {
+            source.little = false;
+            position += major == 3 ? 4 + source.u32(10) : syncsafe(source, 10);
+        }
+        int idLength = major == 2 ? 3 : 4;
+        int headerLength = major == 2 ? 6 : 10;
+        while (position + headerLength <= end && source.load(position, headerLength)) {
+            source.little = false;
+            if (source.u8(position) == 0) {
+                // 填充区
+                break;
+            }
+            String id = source.ascii(position, idLength);
+            long size = major == 2 ? source.u32(position + 2) & 0xFFFFFF
+                    : major == 4 ? syncsafe(source, position + 4) : source.u32(position + 4);
+            if (id.equals("TYER") || id.equals("TDRC") || id.equals("TYE")
+                    || id.equals("TORY") || id.equals("TDOR") || id.equals("TOR")) {
+                int length = (int) Math.min(size, 64);
+                if (length > 1 && source.load(position + headerLength, length)) {
+                    int year = year(source.text(position + headerLength + 1, length - 1,
+                            id3Charset(source.u8(position + headerLength))).trim());
+                    if (year != 0) {
+                        return year;
+                    }
+                }
+            }
+            position += headerLength + size;
+        }
+        return 0;
+    }
+
+    private static Charset id3Charset(int encoding) {
+        switch (encoding) {
+            case 1:
+                return StandardCharsets.UTF_16;
+            case 2:
+                return StandardCharsets.UTF_16BE;
+            case 3:
+                return StandardCharsets.UTF_8;
+            default:
+                return StandardCharsets.ISO_8859_1;
+        }
+    }
+
+    private static long syncsafe(Source source, long position) throws IOException {
+        if (!source.load(position, 4)) {
+            return 0;
+        }
+        return (long) (source.u8(position) & 0x7F) << 21 | (source.u8(position + 1) & 0x7F) << 14
+                | (source.u8(position + 2) & 0x7F) << 7 | (source.u8(position + 3) & 0x7F);
+    }
+
+    /**
+     * ID3v1：文件末尾 128 字节的标签
+     */
+    private static int id3v1Year(Source source) throws IOException {
+        long position = source.size - 128;
+        if (position < 0 || !source.load(position, 128) || !source.ascii(position, 3).equals("TAG")) {
+            return 0;
+        }
+        return year(source.ascii(position + 93, 4));
+    }
+
+    /**
+     * PDF：文档信息字典中的 /CreationDate (D:YYYY...)，通常位于文件开头或末尾
+     */
+    private static int pdfYear(Source source) throws IOException {
+        int length = (int) Math.min(source.size, WINDOW);
+        int year = source.load(0, length) ? pdfYear(source, 0, length) : 0;
+        if (year == 0 && source.size > length && source.load(source.size - length, length)) {
+            year = pdfYear(source, source.size - length, length);
+        }
+        return year;
+    }
+
+    private static int pdfYear(Source source, long from, int length) {
+        byte[] key = "/CreationDate".getBytes(StandardCharsets.US_ASCII);
+        int offset = (int) (from - source.base);
+        for (int i = offset; i + key.length < offset + length; i++) {
+            if (!source.matches(i, key)) {
+                continue;
+            }
+            int p = i + key.length;
+            while (p < offset + length && source.bytes[p] == ' ') {
+                p++;
+            }
+            if (p < offset + length && source.bytes[p] == '(') {
+                p++;
+                if (p + 2 <= offset + length && source.bytes[p] == 'D' && source.bytes[p + 1] == ':') {
+                    p += 2;
+                }
+                if (p + 4 <= offset + length) {
+                    return year(new String(source.bytes, p, 4, StandardCharsets.US_ASCII));
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * MP4/MOV：逐个读取盒子头，进入 moov 后读取 mvhd 中的创建时间
+     */
+    private static int mp4Year(Source source) throws IOException {
+        long position = 0;
+        while (source.load(position, 8)) {
+            source.little = false;
+            long size = source.u32(position);
+            String type = source.ascii(position + 4, 4);
+            int header = 8;
+            if (size == 1) {
+                if (!source.load(position, 16)) {
+                    return 0;
+                }
+                size = source.u32(position + 8) << 32 | source.u32(position + 12);
+                header = 16;
+            } else if (size == 0) {
+                size = source.size - position;
+            }
+            if (size < header) {
+                return 0;
+            }
+            if (type.equals("moov")) {
+                // 在 moov 的子盒子中继续查找
+                position += header;
+                continue;
+            }
+            if (type.equals("mvhd")) {
+                if (!source.load(position + header, 12)) {
+                    return 0;
+                }
+                long created = source.u8(position + header) == 1
+                        ? source.u32(position + header + 4) << 32 | source.u32(position + header + 8)
+                        : source.u32(position + header + 4);
+                // 从 1904 年开始的秒数，未设置时多为 0
+                long epochSecond = created - 2_082_844_800L;
+                if (epochSecond <= 0) {
+                    return 0;
+                }
+                return validYear(Instant.ofEpochSecond(epochSecond).atZone(ZoneOffset.UTC).getYear());
+            }
+            position += size;
+        }
+        return 0;
+    }
+
+    /**
+     * 解析文本开头的四位年份
+     *
+     * @param text 文本
+     * @return 年份（1900-2099），不是年份时返回 0
+     */
+    private static int year(String text) {
+        if (text.length() < 4) {
+            return 0;
+        }
+        int year = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            year = year * 10 + (c - '0');
+        }
+        return validYear(year);
+    }
+
+    private static int validYear(int year) {
+        return year >= 1900 && year <= 2099 ? year : 0;
+    }
+
+    /**
+     * 按位置读取的文件窗口
+     * 请求的区间不在当前窗口中时，从该位置重新读取一个窗口；按顺序解析的结构大多落在同一个窗口中。
+     */
+    private static final class Source {
+        final FileChannel channel;
+        final long size;
+        final byte[] bytes = WINDOWS.get();
+        // 窗口在文件中的起始位置和有效长度
+        long base;
+        int length;
+        // 多字节整数的字节序
+        boolean little;
+
+        Source(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        /**
+         * 确保 [position, position + count) 位于窗口中
+         *
+         * @return false 如果超出文件末尾
+         */
+        boolean load(long position, int count) throws IOException {
+            if (position < 0 || count > bytes.length || position > size - count) {
+                return false;
+            }
+            if (position >= base && position + count <= base + length) {
+                return true;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, (int) Math.min(bytes.length, size - position));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            base = position;
+            length = buffer.position();
+            return count <= length;
+        }
+
+        int u8(long position) {
+            return bytes[(int) (position - base)] & 0xFF;
+        }
+
+        int u16(long position) {
+            int a = u8(position);
+            int b = u8(position + 1);
+            return little ? b << 8 | a : a << 8 | b;
+        }
+
+        long u32(long position) {
+            long a = u16(position);
+            long b = u16(position + 2);
+            return little ? b << 16 | a : a << 16 | b;
+        }
+
+        String ascii(long position, int count) {
+            return new String(bytes, (int) (position - base), count, StandardCharsets.ISO_8859_1);
+        }
+
+        String text(long position, int count, Charset charset) {
+            return new String(bytes, (int) (position - base), count, charset);
+        }
+
+        boolean matches(int offset, byte[] key) {
+            for (int i = 0; i < key.length; i++) {
+                if (bytes[offset + i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 基于 NIO 的重命名实现
+ * 与 {@link java.io.File#renameTo} 只返回 boolean 不同，失败时抛出带原因的异常，并对暂时性错误按指数退避重试。
+ *
+ * <p>同一目录内的 {@link Files#move} 本身就是一次 rename 系统调用，且不会覆盖已存在的目标文件。
+ * {@link StandardCopyOption#ATOMIC_MOVE} 在 Linux 和 Windows 上都会直接替换已存在的目标文件，
+ * 因此只用于仅大小写不同的重命名（此时目标就是源文件本身，普通移动在部分平台上会被当作无需操作）。
+ *
+ * <p>可通过系统属性进行配置：
+ * <ul>
+ *     <li>{@code rename.retries}：暂时性错误的最大重试次数，默认 3</li>
+ *     <li>{@code rename.retryDelay}：首次重试前的等待毫秒数，之后每次翻倍，默认 20</li>
+ * </ul>
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class FileMover {
+
+    private static final int DEFAULT_RETRIES = 3;
+    private static final long DEFAULT_RETRY_DELAY = 20;
+
+    private final int retries;
+    private final long retryDelay;
+
+    /**
+     * 创建重命名实现
+     *
+     * @param retries    暂时性错误的最大重试次数
+     * @param retryDelay 首次重试前的等待毫秒数
+     */
+    FileMover(int retries, long retryDelay) {
+        if (retries < 0 || retryDelay < 0) {
+            throw new IllegalArgumentException("重试次数和重试间隔不能为负数");
+        }
+        this.retries = retries;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * 根据系统属性创建重命名实现
+     *
+     * @return 重命名实现
+     */
+    static FileMover fromSystemProperties() {
+        return new FileMover(Integer.getInteger("rename.retries", DEFAULT_RETRIES),
+                Long.getLong("rename.retryDelay", DEFAULT_RETRY_DELAY));
+    }
+
+    /**
+     * 重命名文件，不覆盖已存在的目标文件
+     *
+     * @param source 源文件
+     * @param target 目标文件
+     * @throws IOException 重命名失败（含重试耗尽）时抛出最后一次的异常
+     */
+    void move(Path source, Path target) throws IOException {
+        boolean caseOnly = isCaseOnlyRename(source, target);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                moveOnce(source, target, caseOnly);
+                return;
+            } catch (IOException e) {
+                // NFS 上服务端已完成重命名但响应丢失时，重试会报告源文件不存在，此时视为成功
+                if (attempt > 0 && e instanceof NoSuchFileException
+                        && Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                    return;
+                }
+                if (attempt >= retries || !RenameFailure.of(e).transientError || !backoff(attempt)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static void moveOnce(Path source, Path target, boolean caseOnly) throws IOException {
+        if (caseOnly) {
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                return;
+            } catch (AtomicMoveNotSupportedException e) {
+                // 退回普通移动
+            }
+        }
+        Files.move(source, target);
+    }
+
+    /**
+     * 等待一段时间后再重试，间隔按次数翻倍并加入随机抖动，避免大量线程同时重试
+     *
+     * @param attempt 已失败的次数（从 0 开始）
+     * @return false 如果等待期间线程被中断
+     */
+    private boolean backoff(int attempt) {
+        long delay = retryDelay << Math.min(attempt, 16);
+        if (delay == 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean isCaseOnlyRename(Path source, Path target) {
+        String from = source.getFileName().toString();
+        String to = target.getFileName().toString();
+        return !from.equals(to) && ConflictIndex.key(from).equals(ConflictIndex.key(to));
+    }
+}
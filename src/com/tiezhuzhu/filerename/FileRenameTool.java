@@ -0,0 +1,1567 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 文件批量重命名工具
+ * 模式1：年份前置 [YYYY]文件名
+ * 模式2-8：精准匹配并替换
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+public class FileRenameTool {
+
+    // 标准输入，首次读取时才创建（Scanner 初始化时要编译正则并加载区域数据，拖入启动时耗时明显）
+    private static BufferedReader input;
+    // 持久化撤销日志，记录每次重命名操作，支持撤销功能（程序重启后仍可撤销）
+    static UndoJournal journal;
+
+    // 常量定义
+    private static final int MIN_CHOICE = 0;  // 最小模式编号（0为切换目录）
+    private static final int MAX_CHOICE = 12;  // 最大模式编号
+    private static final String CHAIN_SEPARATOR = "+";  // 组合模式分隔符
+    private static final int HISTORY_SIZE = 20;  // 操作历史显示的条数
+
+    /**
+     * 重命名对，用于记录文件重命名操作
+     * 同一目录下的文件对共用一个目录对象，当前名称直接引用 oldName、newName 或 parkName，
+     * 每个文件对只保存名称本身，不再为每个文件创建 File 对象和完整路径字符串，百万级计划也能常驻内存。
+     */
+    static class RenamePair {
+        final Path dir;      // 所在目录（同一目录下的文件对共用）
+        String currentName;  // 当前文件名（重命名后会更新）
+        String oldName;      // 原始文件名
+        String newName;      // 新文件名
+        // 以下由 ConflictIndex 在生成计划时设置
+        RenamePair blocker;  // 占用目标名称、需要先被移走的文件（null 表示无依赖）
+        int wave;            // 执行轮次，依赖的文件在更早的轮次中执行
+        String parkName;     // 重命名环中先移到的临时名称（null 表示不在环中）
+        // 以下由 RenameExecutor 在重命名失败时设置
+        RenameFailure failure;   // 失败原因（null 表示未失败）
+        String failureMessage;   // 失败详情
+
+        RenamePair(Path dir, String oldName, String newName) {
+            this(dir, oldName, oldName, newName);
+        }
+
+        RenamePair(Path dir, String currentName, String oldName, String newName) {
+            this.dir = dir;
+            this.currentName = currentName;
+            this.oldName = oldName;
+            this.newName = newName;
+        }
+
+        /**
+         * 文件当前的路径，按需创建
+         *
+         * @return 当前路径
+         */
+        Path currentPath() {
+            return dir.resolve(currentName);
+        }
+    }
+
+    /**
+     * 主方法
+     * 支持从命令行参数读取路径（拖入文件/文件夹时会自动传入）
+     * 参数以 -- 开头时进入无人值守的批处理模式，见 {@link BatchMode}
+     *
+     * @param args 命令行参数，第一个参数为路径（可选）
+     */
+    public static void main(String[] args) {
+        if (BatchMode.isRequested(args)) {
+            System.exit(BatchMode.run(args));
+        }
+
+        // 初始化工作目录：优先使用命令行参数，否则使用当前目录
+        File folder = initializeWorkingDirectory(args);
+
+        // 过滤条件（rename.exclude 等）有误时直接提示，而不是在第一次扫描时才报错
+        try {
+            EntryFilter.defaults();
+        } catch (IllegalArgumentException e) {
+            System.out.println("过滤条件无效: " + e.getMessage());
+            return;
+        }
+
+        // 打开撤销日志，并处理上次异常退出时未完成的批次
+        RenameMetrics.registerMBean();
+        journal = openJournal();
+        recoverPendingBatches();
+
+        try {
+            runMenuLoop(folder);
+        } finally {
+            closeJournal();
+            RenameMetrics.export();
+        }
+    }
+
+    /**
+     * 主循环：持续显示菜单并处理用户输入，直到用户退出
+     *
+     * @param folder 初始工作目录
+     */
+    private static void runMenuLoop(File folder) {
+        String folderPath = folder.getAbsolutePath();
+        // 递归深度：0 表示只处理当前目录
+        int recursionDepth = 0;
+        // 增量模式：只处理上次运行之后新出现的文件
+        boolean incremental = false;
+
+        while (true) {
+            printMenu(folderPath, recursionDepth, incremental);
+
+            // 读取并规范化用户输入（转小写、去空格）
+            String line = readLine();
+            
+            // 处理退出命令，输入结束（如标准输入被关闭）时同样退出
+            if (line == null) {
+                break;
+            }
+            String input = line.trim().toLowerCase();
+            if (isQuitCommand(input)) {
+                break;
+            }
+            
+            // 处理撤销命令，参数中的路径保留原始大小写
+            if (isUndoCommand(input)) {
+                int space = line.trim().indexOf(' ');
+                undoAction(space < 0 ? "" : line.trim().substring(space + 1).trim(), folder);
+                continue;
+            }
+
+            // 处理操作历史命令
+            if (isHistoryCommand(input)) {
+                printHistory();
+                continue;
+            }
+
+            // 处理递归设置命令
+            if (isRecursiveCommand(input)) {
+                Integer depth = readRecursionDepth();
+                if (depth != null) {
+                    recursionDepth = depth;
+                    System.out.println(">>> 递归处理: " + describeRecursion(recursionDepth));
+                }
+                continue;
+            }
+
+            // 处理增量模式切换命令
+            if (isIncrementalCommand(input)) {
+                incremental = !incremental;
+                System.out.println(">>> 增量处理: " + (incremental ? "开启" : "关闭"));
+                continue;
+            }
+
+            // 使用 + 组合多个模式，在一次遍历中依次应用
+            if (input.contains(CHAIN_SEPARATOR)) {
+                int[] choices = parseChoiceChain(input);
+                if (choices == null) {
+                    System.out.println("组合模式只能包含 1-" + MAX_CHOICE + " 之间的数字，例如 1+5。");
+                } else {
+                    prepareRename(folder, choices, recursionDepth, incremental);
+                }
+                continue;
+            }
+
+            // 解析数字输入并执行对应的操作
+            try {
+                int choice = Integer.parseInt(input);
+                if (choice == 0) {
+                    // 选项0：切换工作目录
+                    File newFolder = changeDirectory();
+                    if (newFolder != null) {
+                        folder = newFolder;
+                        folderPath = folder.getAbsolutePath();
+                        System.out.println(">>> 已切换到: " + folderPath);
+                    }
+                } else if (choice >= 1 && choice <= MAX_CHOICE) {
+                    // 选项1-12：执行重命名操作
+                    prepareRename(folder, new int[]{choice}, recursionDepth, incremental);
+                } else {
+                    System.out.println("请输入 " + MIN_CHOICE + "-" + MAX_CHOICE + " 之间的数字！");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("无效输入。");
+            }
+        }
+    }
+
+    /**
+     * 打印主菜单
+     *
+     * @param folderPath     当前文件夹路径
+     * @param recursionDepth 递归深度
+     * @param incremental    是否为增量模式
+     */
+    private static void printMenu(String folderPath, int recursionDepth, boolean incremental) {
+        System.out.println("\n========================================");
+        System.out.println("   批量替换工具 - 当前目录/文件: " + folderPath);
+        System.out.println("   递归处理子目录: " + describeRecursion(recursionDepth));
+        System.out.println("   增量处理: " + (incremental ? "开启（只处理上次运行后新出现的文件）" : "关闭"));
+        System.out.println("========================================");
+        System.out.println("0. 切换工作目录/文件");
+        System.out.println("1. 匹配年份 (19xx/20xx) -> 前置 [年份]");
+        System.out.println("2. 匹配前 N 位字符");
+        System.out.println("3. 匹配后 N 位字符");
+        System.out.println("4. 匹配从位置 X 开始的 N 位字符");
+        System.out.println("5. 匹配指定字符 X 之后的全部内容");
+        System.out.println("6. 匹配指定字符 X 之前的全部内容");
+        System.out.println("7. 匹配指定字符 X 之后 N 位字符");
+        System.out.println("8. 匹配指定字符 X 之前 N 位字符");
+        System.out.println("9. 按词典匹配词条 -> 前置 [词条] / 替换 / 删除");
+        System.out.println("10. 按文件内容的校验值 -> 前置 [校验值]");
+        System.out.println("11. 文件名中没有年份时按元数据（EXIF/ID3/PDF/MP4）日期 -> 前置 [年份]");
+        System.out.println("12. 按文件名自然顺序/修改时间/大小排序后编号 -> 前置 001_");
+        System.out.println("可用 + 组合多个模式依次处理，例如 1+5");
+        System.out.println("----------------------------------------");
+        System.out.println("r. 设置递归处理子目录 (recursive)");
+        System.out.println("i. 开启/关闭增量处理 (incremental)");
+        System.out.println("u. 回退上一步操作 (undo)；u <编号> 回退指定操作，u [编号] <目录或文件> 只回退其中的部分文件");
+        System.out.println("h. 查看操作历史及编号 (history)");
+        System.out.println("q. 退出程序 (quit)");
+        System.out.print("请选择模式: ");
+    }
+
+    /**
+     * 初始化工作目录
+     * 优先使用命令行参数，如果没有参数则使用当前目录
+     *
+     * @param args 命令行参数
+     * @return 工作目录的 File 对象
+     */
+    private static File initializeWorkingDirectory(String[] args) {
+        // 如果有命令行参数，使用第一个参数作为路径
+        if (args != null && args.length > 0 && args[0] != null && !args[0].trim().isEmpty()) {
+            File dir = validateAndGetDirectory(args[0]);
+            if (dir != null) {
+                return dir;
+            }
+            // 如果路径无效，提示并继续使用当前目录
+            System.out.println("警告: 命令行参数路径无效，使用当前目录。");
+        }
+        
+        // 默认使用当前工作目录
+        String folderPath = new File(".").getAbsolutePath();
+        // 移除路径末尾的 "." 字符
+        if (folderPath.endsWith(".")) {
+            folderPath = folderPath.substring(0, folderPath.length() - 2);
+        }
+        return new File(folderPath);
+    }
+
+    /**
+     * 切换工作目录
+     * 允许用户输入或拖入路径（支持文件或文件夹）
+     *
+     * @return 新的工作目录 File 对象，如果取消或失败则返回 null
+     */
+    private static File changeDirectory() {
+        System.out.print("请输入目录/文件路径（可直接拖入文件或文件夹）: ");
+        String input = nextLine().trim();
+        
+        if (input.isEmpty()) {
+            System.out.println(">>> 操作已取消。");
+            return null;
+        }
+        
+        // 规范化路径（去除引号等）
+        String normalizedPath = normalizePath(input);
+        File dir = validateAndGetDirectory(normalizedPath);
+        
+        if (dir != null) {
+            return dir;
+        } else {
+            System.out.println(">>> 路径无效或不存在，请检查后重试。");
+            return null;
+        }
+    }
+
+    /**
+     * 规范化路径
+     * 去除路径两端的引号和空格（Windows拖入文件时会自动加引号）
+     *
+     * @param path 原始路径
+     * @return 规范化后的路径
+     */
+    static String normalizePath(String path) {
+        if (path == null) {
+            return "";
+        }
+        
+        // 去除首尾空格
+        path = path.trim();
+        
+        // 去除首尾的引号（支持单引号和双引号）
+        if ((path.startsWith("\"") && path.endsWith("\"")) ||
+            (path.startsWith("'") && path.endsWith("'"))) {
+            path = path.substring(1, path.length() - 1);
+        }
+        
+        return path.trim();
+    }
+
+    /**
+     * 验证并获取目录
+     * 如果输入的是文件，返回文件所在目录；如果是文件夹，直接返回
+     *
+     * @param path 路径字符串
+     * @return 目录的 File 对象，如果路径无效则返回 null
+     */
+    static File validateAndGetDirectory(String path) {
+        if (path == null || path.trim().isEmpty()) {
+            return null;
+        }
+        
+        File file = new File(path);
+        
+        // 检查文件或目录是否存在
+        if (!file.exists()) {
+            return null;
+        }
+        
+        // 如果是文件，返回其所在目录
+        if (file.isFile()) {
+            return file.getParentFile();
+        }
+        
+        // 如果是目录，直接返回
+        if (file.isDirectory()) {
+            return file;
+        }
+        
+        return null;
+    }
+
+    /**
+     * 读取一行用户输入，首次调用时才打开标准输入
+     *
+     * @return 输入的一行内容，输入已结束时返回 null
+     */
+    private static String readLine() {
+        if (input == null) {
+            input = new BufferedReader(new InputStreamReader(System.in));
+        }
+        try {
+            return input.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取输入失败", e);
+        }
+    }
+
+    /**
+     * 读取一行用户输入，输入已结束时返回空字符串（各提示均按直接回车处理）
+     *
+     * @return 输入的一行内容
+     */
+    private static String nextLine() {
+        String line = readLine();
+        return line == null ? "" : line;
+    }
+
+    /**
+     * 判断是否为退出命令
+     *
+     * @param input 用户输入
+     * @return true 如果是退出命令
+     */
+    private static boolean isQuitCommand(String input) {
+        return "q".equals(input) || "quit".equals(input);
+    }
+
+    /**
+     * 判断是否为回退命令
+     *
+     * @param input 用户输入
+     * @return true 如果是回退命令
+     */
+    private static boolean isUndoCommand(String input) {
+        return "u".equals(input) || "undo".equals(input) || input.startsWith("u ") || input.startsWith("undo ");
+    }
+
+    /**
+     * 判断是否为操作历史命令
+     *
+     * @param input 用户输入
+     * @return true 如果是操作历史命令
+     */
+    private static boolean isHistoryCommand(String input) {
+        return "h".equals(input) || "history".equals(input);
+    }
+
+    /**
+     * 判断是否为递归设置命令
+     *
+     * @param input 用户输入
+     * @return true 如果是递归设置命令
+     */
+    private static boolean isRecursiveCommand(String input) {
+        return "r".equals(input) || "recursive".equals(input);
+    }
+
+    /**
+     * 判断是否为增量模式切换命令
+     *
+     * @param input 用户输入
+     * @return true 如果是增量模式切换命令
+     */
+    private static boolean isIncrementalCommand(String input) {
+        return "i".equals(input) || "incremental".equals(input);
+    }
+
+    /**
+     * 读取递归深度
+     *
+     * @return 递归深度，输入无效时返回 null
+     */
+    private static Integer readRecursionDepth() {
+        System.out.print("递归深度（直接回车表示不限，0 表示只处理当前目录）: ");
+        String input = nextLine().trim();
+        if (input.isEmpty()) {
+            return TreeWalker.UNLIMITED_DEPTH;
+        }
+        try {
+            int depth = Integer.parseInt(input);
+            if (depth >= 0) {
+                return depth;
+            }
+        } catch (NumberFormatException e) {
+            // 按无效输入处理
+        }
+        System.out.println("递归深度必须是非负整数。");
+        return null;
+    }
+
+    /**
+     * 描述递归设置
+     *
+     * @param recursionDepth 递归深度
+     * @return 递归设置的文字描述
+     */
+    private static String describeRecursion(int recursionDepth) {
+        if (recursionDepth == 0) {
+            return "关闭";
+        }
+        return recursionDepth == TreeWalker.UNLIMITED_DEPTH ? "开启（不限深度）" : "开启（深度 " + recursionDepth + "）";
+    }
+
+    /**
+     * 解析组合模式，例如 "1+5"
+     *
+     * @param input 用户输入
+     * @return 模式编号数组，如果包含无效的模式则返回 null
+     */
+    private static int[] parseChoiceChain(String input) {
+        // 转义的单个字符由 String.split 直接切分，不会编译正则
+        String[] parts = input.split("\\" + CHAIN_SEPARATOR);
+        int[] choices = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                choices[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (choices[i] < 1 || choices[i] > MAX_CHOICE) {
+                return null;
+            }
+        }
+        return choices;
+    }
+
+    /**
+     * 准备重命名操作
+     * 根据用户选择的模式，收集参数并执行重命名流程
+     * 选择多个模式时，每个文件名依次经过各模式处理，整个目录只遍历一次
+     *
+     * @param folder         目标文件夹
+     * @param choices        选择的模式（1-12），按应用顺序排列
+     * @param recursionDepth 递归深度，0 表示只处理当前目录
+     * @param incremental    是否只处理上次运行后新出现的文件
+     */
+    private static void prepareRename(File folder, int[] choices, int recursionDepth, boolean incremental) {
+        // 为每个模式收集参数并创建规则
+        List<RenameRule> rules = new ArrayList<>();
+        for (int choice : choices) {
+            if (choices.length > 1) {
+                System.out.println("--- 模式 " + choice + " ---");
+            }
+            RenameRule rule = readRule(choice);
+            if (rule == null) {
+                return;
+            }
+            rules.add(rule);
+        }
+
+        // 流式遍历文件夹（或递归遍历目录树），生成重命名预览列表
+        List<RenamePair> previewList;
+        List<ConflictIndex.Conflict> conflicts = new ArrayList<>();
+        // 编号取决于目录中的全部文件，需要完整列出目录，不能只处理新出现的文件
+        if (incremental && FileSequence.forRules(rules) != null) {
+            System.out.println(">>> 按顺序编号需要完整的目录列表，本次不使用增量处理。");
+            incremental = false;
+        }
+        // 快照只记录文件名，不记录大小和修改时间，文件内容变化后无法察觉
+        if (incremental && RenameRule.readsContent(rules)) {
+            System.out.println(">>> 按文件内容命名需要检查每个文件，本次不使用增量处理。");
+            incremental = false;
+        }
+        DirectorySnapshot snapshot = incremental ? DirectorySnapshot.load(folder.toPath(), rules, recursionDepth) : null;
+        try {
+            previewList = buildPlan(folder.toPath(), rules, recursionDepth, snapshot, conflicts);
+        } catch (IOException | DirectoryIteratorException e) {
+            System.out.println("读取目录失败: " + e.getMessage());
+            return;
+        }
+
+        // 存在冲突的文件已从计划中移除，这里提示用户
+        PreviewPrinter.printConflicts(conflicts);
+
+        // 如果没有匹配的文件，提示用户并返回
+        if (previewList.isEmpty()) {
+            if (conflicts.isEmpty()) {
+                System.out.println(snapshot != null && snapshot.previousDirectories() > 0
+                        ? "上次运行后没有新的文件需要处理。" : "未找到符合规则的匹配内容。");
+            }
+            saveSnapshot(snapshot, previewList);
+            return;
+        }
+
+        // 显示分页预览并等待用户确认，确认后执行重命名，否则取消操作
+        if (confirmPreview("处理预览", previewList, false, "确认执行以上更名操作?")) {
+            if (executeRename(previewList)) {
+                saveSnapshot(snapshot, previewList);
+            }
+        } else {
+            System.out.println(">>> 操作已取消。");
+        }
+    }
+
+    /**
+     * 读取模式参数并创建规则
+     *
+     * @param choice 选择的模式（1-12）
+     * @return 规则对象，如果参数输入错误则返回 null
+     */
+    private static RenameRule readRule(int choice) {
+        // 初始化参数变量
+        String paramX;            // 定位字符（用于模式5-8）、词典文件（用于模式9）、校验算法（用于模式10）或排序方式（用于模式12）
+        int paramN;               // 位数/长度（用于模式2-4, 7-8）、动作（用于模式9）、校验值位数（用于模式10）或编号位数（用于模式12）
+        int paramPos;             // 起始位置（用于模式4）或起始编号（用于模式12）
+        String replaceTo = "";    // 替换内容（用于模式2-9）
+
+        // 根据模式获取用户输入的参数
+        try {
+            paramX = getParameterX(choice);
+            paramN = getParameterN(choice);
+            paramPos = getParameterPos(choice);
+        } catch (NumberFormatException e) {
+            System.out.println("参数输入错误");
+            return null;
+        }
+
+        // 模式1、10、11前置标签，模式12前置编号，模式9只有替换动作需要替换内容；其他模式需要用户输入替换内容
+        if (choice >= 2 && choice <= 8 || choice == 9 && paramN == RenameRule.DictionaryRule.REPLACE) {
+            System.out.print("将匹配到的内容替换为 (直接回车代表删除): ");
+            replaceTo = nextLine();
+        }
+
+        try {
+            return RenameRule.create(choice, paramX, paramN, paramPos, replaceTo);
+        } catch (IllegalArgumentException e) {
+            // 词典文件无法读取、动作、校验算法或排序方式无效
+            System.out.println("参数输入错误: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 获取参数 X（定位字符）
+     *
+     * @param choice 选择的模式
+     * @return 参数 X 的值
+     */
+    private static String getParameterX(int choice) {
+        if (choice == 5 || choice == 6 || choice == 7 || choice == 8) {
+            System.out.print("定位字符 X: ");
+            return nextLine();
+        } else if (choice == 9) {
+            System.out.print("词典文件（每行一个词条）: ");
+            return nextLine().trim();
+        } else if (choice == 10) {
+            System.out.print("校验算法（直接回车为 SHA-256，可选 CRC32C、MD5、SHA-1 等）: ");
+            return nextLine().trim();
+        } else if (choice == 12) {
+            System.out.print("排序方式（1=文件名自然顺序 2=修改时间 3=文件大小，前加 - 为倒序，直接回车为 1）: ");
+            return nextLine().trim();
+        }
+        return "";
+    }
+
+    /**
+     * 获取参数 N（位数/长度）
+     *
+     * @param choice 选择的模式
+     * @return 参数 N 的值
+     */
+    private static int getParameterN(int choice) {
+        if (choice == 2 || choice == 3) {
+            System.out.print("位数 N: ");
+            return Integer.parseInt(nextLine());
+        } else if (choice == 4) {
+            System.out.print("长度 N: ");
+            return Integer.parseInt(nextLine());
+        } else if (choice == 7 || choice == 8) {
+            System.out.print("截取长度 N: ");
+            return Integer.parseInt(nextLine());
+        } else if (choice == 9) {
+            System.out.print("动作（1=前置 [词条] 2=替换 3=删除）: ");
+            return Integer.parseInt(nextLine().trim());
+        } else if (choice == 10) {
+            System.out.print("校验值位数 N（直接回车为 8）: ");
+            String input = nextLine().trim();
+            return input.isEmpty() ? 0 : Integer.parseInt(input);
+        } else if (choice == 12) {
+            System.out.print("编号位数 N（直接回车为按文件数自动，至少 3 位）: ");
+            String input = nextLine().trim();
+            return input.isEmpty() ? 0 : Integer.parseInt(input);
+        }
+        return 0;
+    }
+
+    /**
+     * 获取参数 Pos（起始位置）
+     *
+     * @param choice 选择的模式
+     * @return 参数 Pos 的值
+     */
+    private static int getParameterPos(int choice) {
+        if (choice == 4) {
+            System.out.print("起始位置 X: ");
+            return Integer.parseInt(nextLine());
+        } else if (choice == 12) {
+            System.out.print("起始编号（直接回车为 1）: ");
+            String input = nextLine().trim();
+            return input.isEmpty() ? 1 : Integer.parseInt(input);
+        }
+        return 0;
+    }
+
+    /**
+     * 构建预览列表
+     * 通过 DirectoryStream 逐条读取目录项，边遍历边匹配，不会一次性生成整个目录的 File[] 数组；
+     * 遍历时同时记录全部目录项名称，遍历结束后由 {@link ConflictIndex} 一次性检查冲突
+     *
+     * @param folder    目标文件夹
+     * @param rules     规则链，每个文件名依次经过各规则处理
+     * @param snapshot  增量快照，为 null 时全量扫描
+     * @param conflicts 冲突输出，存在冲突的文件不会出现在预览列表中
+     * @return 预览列表，包含所有需要重命名的文件对
+     * @throws IOException 目录无法打开时抛出
+     */
+    static List<RenamePair> buildPreviewList(Path folder, List<RenameRule> rules, DirectorySnapshot snapshot,
+                                             List<ConflictIndex.Conflict> conflicts) throws IOException {
+        List<RenamePair> previewList = new ArrayList<>();
+        // 增量模式下目录自上次快照以来没有变化时，无需再列目录
+        DirectorySnapshot.Scan scan = snapshot == null ? null : snapshot.begin(folder);
+        if (scan != null && scan.unchanged()) {
+            scan.finish();
+            return previewList;
+        }
+        // 目录中已存在的全部名称，用于检测重命名冲突
+        Set<String> existingNames = new HashSet<>();
+        // 规则需要读取文件内容时，先收集普通文件，列完目录后再并行读取和匹配；
+        // 按顺序编号时先收集全部普通文件，列完目录后排序再编号
+        FileSequence sequence = FileSequence.forRules(rules);
+        boolean readsContent = RenameRule.readsContent(rules);
+        List<String> deferredNames = sequence == null && readsContent ? new ArrayList<>() : null;
+        RenameMetrics.Clock clock = RenameMetrics.startDirectory();
+
+        // 流式遍历文件夹中的目录项
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path path : stream) {
+                String originalName = path.getFileName().toString();
+                existingNames.add(ConflictIndex.key(originalName));
+                clock.lap(RenameMetrics.Stage.LIST);
+                // 上次已处理过的目录项既不读取属性也不再匹配
+                if (scan != null && scan.isKnown(originalName)) {
+                    scan.settle(originalName);
+                    clock.lap(RenameMetrics.Stage.FILTER);
+                    continue;
+                }
+                // 跳过被过滤条件排除的文件（如 .exe, .java 等），此时尚未读取文件属性
+                boolean skip = shouldSkipFile(originalName);
+                clock.lap(RenameMetrics.Stage.FILTER);
+                if (skip) {
+                    settle(scan, originalName);
+                    continue;
+                }
+
+                if (sequence != null) {
+                    BasicFileAttributes attributes = candidateAttributes(path);
+                    clock.lap(RenameMetrics.Stage.STAT);
+                    if (attributes != null) {
+                        sequence.add(originalName, attributes);
+                    } else {
+                        settleOrRevisit(scan, path, originalName);
+                    }
+                    continue;
+                }
+                if (deferredNames != null) {
+                    boolean regularFile = isCandidateFile(path);
+                    clock.lap(RenameMetrics.Stage.STAT);
+                    if (regularFile) {
+                        deferredNames.add(originalName);
+                    } else {
+                        settleOrRevisit(scan, path, originalName);
+                    }
+                    continue;
+                }
+
+                // 依次应用规则生成新文件名，只有当新文件名与旧文件名不同时才需要继续处理
+                String newName = RenameRule.applyAll(rules, originalName);
+                clock.lap(RenameMetrics.Stage.MATCH);
+                if (newName == null) {
+                    settle(scan, originalName);
+                    continue;
+                }
+
+                // 只对匹配成功的目录项读取属性，跳过目录，只处理满足大小、修改时间等条件的文件
+                boolean regularFile = isCandidateFile(path);
+                clock.lap(RenameMetrics.Stage.STAT);
+                if (!regularFile) {
+                    settleOrRevisit(scan, path, originalName);
+                    continue;
+                }
+                // 待重命名的文件在执行成功后以新名称记入快照
+                previewList.add(new RenamePair(folder, originalName, newName));
+            }
+        }
+
+        if (sequence != null && !sequence.isEmpty()) {
+            deferredNames = sequence.sorted();
+            clock.lap(RenameMetrics.Stage.SORT);
+        }
+        if (deferredNames != null && !deferredNames.isEmpty()) {
+            String[] newNames = FileSequence.applyAll(rules, folder, deferredNames);
+            clock.lap(readsContent ? RenameMetrics.Stage.CONTENT : RenameMetrics.Stage.MATCH);
+            for (int i = 0; i < newNames.length; i++) {
+                if (newNames[i] != null) {
+                    previewList.add(new RenamePair(folder, deferredNames.get(i), newNames[i]));
+                } else {
+                    settle(scan, deferredNames.get(i));
+                }
+            }
+        }
+        clock.finish();
+        if (scan != null) {
+            scan.finish();
+        }
+        ConflictIndex.resolve(previewList, existingNames, conflicts);
+        return previewList;
+    }
+
+    private static void settle(DirectorySnapshot.Scan scan, String name) {
+        if (scan != null) {
+            scan.settle(name);
+        }
+    }
+
+    /**
+     * 记录未通过属性检查的目录项：只因大小、修改时间或隐藏属性被过滤掉的文件不记入快照，属性变化后需要重新检查；
+     * 目录等其它目录项照常记入
+     *
+     * @param scan 目录的扫描记录，可为 null
+     * @param path 目录项路径
+     * @param name 目录项名称
+     */
+    private static void settleOrRevisit(DirectorySnapshot.Scan scan, Path path, String name) {
+        if (scan == null) {
+            return;
+        }
+        EntryFilter filter = EntryFilter.defaults();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, filter.attributeType());
+            if (attributes.isRegularFile() && !filter.accepts(attributes)) {
+                scan.revisit();
+                return;
+            }
+        } catch (IOException e) {
+            // 无法读取属性（如已被删除、链接目标不存在）时照常记入
+        }
+        scan.settle(name);
+    }
+
+    /**
+     * 构建重命名计划：递归深度为 0 时只流式扫描当前目录，否则递归遍历目录树
+     *
+     * @param folder         目标文件夹
+     * @param rules          规则链
+     * @param recursionDepth 递归深度
+     * @param snapshot       增量快照，为 null 时全量扫描
+     * @param conflicts      冲突输出
+     * @return 预览列表
+     * @throws IOException 目录无法打开时抛出
+     */
+    static List<RenamePair> buildPlan(Path folder, List<RenameRule> rules, int recursionDepth,
+                                      DirectorySnapshot snapshot,
+                                      List<ConflictIndex.Conflict> conflicts) throws IOException {
+        long start = RenameMetrics.start();
+        try {
+            return recursionDepth == 0
+                    ? buildPreviewList(folder, rules, snapshot, conflicts)
+                    : buildTreePreviewList(folder, rules, recursionDepth, snapshot, conflicts);
+        } finally {
+            RenameMetrics.record(RenameMetrics.Phase.PLAN, start);
+        }
+    }
+
+    /**
+     * 递归构建目录树的预览列表
+     * 各子目录由 ForkJoin 线程池并行扫描和匹配，结果合并为一个预览列表
+     *
+     * @param root           根目录
+     * @param rules          规则链
+     * @param recursionDepth 递归深度
+     * @param snapshot       增量快照，为 null 时全量扫描
+     * @param conflicts      冲突输出
+     * @return 预览列表
+     * @throws IOException 根目录无法打开时抛出
+     */
+    private static List<RenamePair> buildTreePreviewList(Path root, List<RenameRule> rules, int recursionDepth,
+                                                         DirectorySnapshot snapshot,
+                                                         List<ConflictIndex.Conflict> conflicts) throws IOException {
+        TreeWalker walker = TreeWalker.fromSystemProperties(rules, recursionDepth, snapshot);
+        List<RenamePair> previewList = walker.walk(root);
+        conflicts.addAll(walker.conflicts());
+        System.out.println(">>> 已扫描 " + walker.scannedDirectories() + " 个目录"
+                + (snapshot == null ? "。" : "，其中 " + walker.unchangedDirectories() + " 个目录未变化，已跳过。"));
+        if (walker.failedDirectories() > 0) {
+            System.out.println("警告: " + walker.failedDirectories() + " 个子目录无法读取，已跳过。");
+        }
+        return previewList;
+    }
+
+    /**
+     * 判断目录项是否为需要处理的文件：普通文件，且满足过滤条件中的大小、修改时间和隐藏属性要求
+     * 只读取一次文件属性；在 Windows 上 DirectoryStream 返回的路径已缓存了文件属性，不会产生额外的系统调用
+     *
+     * @param path 目录项路径
+     * @return true 如果需要处理；读取失败（如文件已被删除）时返回 false
+     */
+    static boolean isCandidateFile(Path path) {
+        return candidateAttributes(path) != null;
+    }
+
+    /**
+     * 读取需要处理的文件的属性，判断方式与 {@link #isCandidateFile(Path)} 相同，供按修改时间或大小排序时使用
+     *
+     * @param path 目录项路径
+     * @return 文件属性（符号链接为其指向的文件的属性）；不需要处理或读取失败时返回 null
+     */
+    static BasicFileAttributes candidateAttributes(Path path) {
+        EntryFilter filter = EntryFilter.defaults();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, filter.attributeType());
+            return attributes.isRegularFile() && filter.accepts(attributes) ? attributes : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 判断是否应该跳过该文件（按名称，见 {@link EntryFilter}）
+     * 此时尚未读取文件属性
+     *
+     * @param fileName 文件名
+     * @return true 如果被排除规则排除或不满足包含规则
+     */
+    static boolean shouldSkipFile(String fileName) {
+        EntryFilter filter = EntryFilter.defaults();
+        return filter.excludes(fileName) || !filter.includes(fileName);
+    }
+
+    /**
+     * 显示分页预览并等待用户确认
+     * 先显示汇总和第一页明细；用户可以继续翻页、显示全部或将完整计划保存到文件，最后输入 y 确认
+     *
+     * @param title       预览标题
+     * @param previewList 预览列表
+     * @param undo        是否为撤销预览
+     * @param question    确认提示
+     * @return true 如果用户确认执行
+     */
+    static boolean confirmPreview(String title, List<RenamePair> previewList, boolean undo, String question) {
+        PreviewPrinter printer = new PreviewPrinter(previewList, undo);
+        System.out.println("\n--- [" + title + "] ---");
+        printer.printSummary();
+        printer.printNextPage();
+
+        while (true) {
+            if (printer.hasMore()) {
+                System.out.println("... 还有 " + printer.remaining() + " 条未显示"
+                        + "（m: 下一页，a: 显示全部，f <文件>: 保存完整列表）");
+            }
+            System.out.print(question + " (y/n): ");
+            String input = nextLine().trim();
+            if (input.equalsIgnoreCase("m") && printer.hasMore()) {
+                printer.printNextPage();
+            } else if (input.equalsIgnoreCase("a") && printer.hasMore()) {
+                printer.printAll();
+            } else if (input.equalsIgnoreCase("f") || input.startsWith("f ") || input.startsWith("F ")) {
+                savePreview(printer, previewList, undo, normalizePath(input.substring(1)));
+            } else {
+                return input.equalsIgnoreCase("y");
+            }
+        }
+    }
+
+    /**
+     * 将完整的预览列表保存到文件，未指定文件名时保存到当前目录下的 rename-plan-时间戳.txt
+     * 文件名以 .jsonl 或 .rplan 结尾时保存为计划文件，可在其它机器上通过批处理模式的 --apply 执行
+     *
+     * @param printer     预览输出
+     * @param previewList 预览列表
+     * @param undo        是否为撤销预览
+     * @param path        目标文件路径
+     */
+    private static void savePreview(PreviewPrinter printer, List<RenamePair> previewList, boolean undo, String path) {
+        try {
+            Path file = Paths.get(path.isEmpty() ? "rename-plan-" + System.currentTimeMillis() + ".txt" : path);
+            if (PlanFile.formatOf(file) == PlanFile.Format.TEXT) {
+                printer.writePlan(file);
+                System.out.println(">>> 完整列表已保存到: " + file.toAbsolutePath());
+            } else if (undo) {
+                System.out.println("回退预览只能保存为文本列表。");
+            } else {
+                PlanFile.write(file, previewList);
+                System.out.println(">>> 计划已保存到: " + file.toAbsolutePath() + "，可通过 --apply 执行");
+            }
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("保存失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 执行重命名操作
+     * 先将整批操作写入撤销日志，再由执行引擎分批并发重命名，最后在日志中记录执行结果以便撤销
+     *
+     * @param previewList 预览列表
+     * @return true 如果重命名已执行（无论是否全部成功）
+     */
+    private static boolean executeRename(List<RenamePair> previewList) {
+        List<RenamePair> successList;
+        try {
+            successList = renameAndRecord(previewList);
+        } catch (IOException e) {
+            System.out.println("写入撤销日志失败，操作已取消: " + e.getMessage());
+            return false;
+        }
+
+        if (!successList.isEmpty()) {
+            System.out.println(">>> 成功处理 " + successList.size() + " 个文件。输入 'u' 可回退预览。");
+        }
+        PreviewPrinter.printFailures(previewList);
+        RenameMetrics.export();
+        return true;
+    }
+
+    /**
+     * 保存增量快照，失败时只提示，不影响已完成的重命名
+     *
+     * @param snapshot 增量快照，为 null 时不做任何操作
+     * @param executed 已执行的重命名计划
+     */
+    static void saveSnapshot(DirectorySnapshot snapshot, List<RenamePair> executed) {
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            snapshot.save(executed);
+        } catch (IOException e) {
+            System.out.println("警告: 增量快照保存失败，下次将重新扫描: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 执行重命名并记录撤销日志
+     * 先写日志再重命名，保证中途异常退出后仍能恢复
+     *
+     * @param previewList 预览列表
+     * @return 重命名成功的文件对
+     * @throws IOException 撤销日志写入失败时抛出，此时不会执行任何重命名
+     */
+    static List<RenamePair> renameAndRecord(List<RenamePair> previewList) throws IOException {
+        return renameAndRecord(previewList, null);
+    }
+
+    /**
+     * 执行重命名并记录撤销日志，写入 BEGIN 记录后、开始重命名前先通知调用方
+     *
+     * @param previewList 预览列表
+     * @param listener    批次开始的回调，为 null 时不通知；回调抛出异常时不执行任何重命名
+     * @return 重命名成功的文件对
+     * @throws IOException 撤销日志写入失败或回调失败时抛出，此时不会执行任何重命名
+     */
+    static List<RenamePair> renameAndRecord(List<RenamePair> previewList, BatchListener listener) throws IOException {
+        long start = RenameMetrics.start();
+        long batchId = journal.begin(previewList);
+        RenameMetrics.record(RenameMetrics.Stage.JOURNAL, start);
+        if (listener != null) {
+            try {
+                listener.begun(journal.batch(batchId));
+            } catch (IOException e) {
+                try {
+                    journal.commit(batchId, new BitSet());
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+
+        List<RenamePair> successList;
+        try (RenameExecutor executor = RenameExecutor.fromSystemProperties()) {
+            // 重命名环中的文件移到临时名称后先记入撤销日志，异常退出后据此判断环是否已完成
+            successList = executor.execute(previewList, parked -> journal.parked(batchId, parked));
+        }
+
+        start = RenameMetrics.start();
+        try {
+            journal.commit(batchId, previewList, successList);
+        } catch (IOException e) {
+            System.out.println("警告: 撤销日志更新失败，下次启动时将提示恢复该批次: " + e.getMessage());
+        }
+        RenameMetrics.record(RenameMetrics.Stage.JOURNAL, start);
+        return successList;
+    }
+
+    /**
+     * 批次写入撤销日志后的回调
+     */
+    interface BatchListener {
+        /**
+         * 批次已写入撤销日志，即将开始重命名
+         *
+         * @param batch 批次
+         * @throws IOException 记录失败时抛出，此时不再执行该批次
+         */
+        void begun(UndoJournal.Batch batch) throws IOException;
+    }
+
+    /**
+     * 回退操作
+     * 不带参数时回退最近一次可撤销的操作；参数为编号时回退该次操作；带路径时只回退其中该目录（含子目录）下的文件
+     * 或该文件，只给路径时从最近的操作往前查找涉及该路径的一次。已回退的文件记入撤销日志，不会被再次回退
+     *
+     * @param args   命令参数：[编号] [路径]
+     * @param folder 当前工作目录，相对路径以此为准
+     */
+    private static void undoAction(String args, File folder) {
+        UndoJournal.Selection selection;
+        try {
+            selection = selectUndo(args, folder);
+        } catch (IOException e) {
+            System.out.println("读取撤销日志失败: " + e.getMessage());
+            return;
+        } catch (InvalidPathException e) {
+            System.out.println("路径无效: " + e.getMessage());
+            return;
+        }
+        if (selection == null) {
+            return;
+        }
+        List<RenamePair> lastAction = selection.pairs;
+
+        // 显示回退预览（当前文件名 -> 原始文件名），用户确认后执行回退操作
+        String title = "回退预览 #" + selection.batch.id + (args.isEmpty() ? "" : " " + args);
+        if (!confirmPreview(title, lastAction, true, "确认回退以上操作?")) {
+            System.out.println(">>> 回退操作已取消。");
+            return;
+        }
+
+        // 将文件名恢复为原始名称：与正常重命名一样先检查冲突，并按依赖顺序并发执行
+        List<RenamePair> reverseList = new ArrayList<>(lastAction.size());
+        Map<RenamePair, Integer> indices = new IdentityHashMap<>(lastAction.size() * 2);
+        for (int i = 0, index = selection.indices.nextSetBit(0); i < lastAction.size();
+             i++, index = selection.indices.nextSetBit(index + 1)) {
+            RenamePair pair = lastAction.get(i);
+            RenamePair reverse = new RenamePair(pair.dir, pair.currentName, pair.currentName, pair.oldName);
+            reverseList.add(reverse);
+            indices.put(reverse, index);
+        }
+        List<ConflictIndex.Conflict> conflicts = new ArrayList<>();
+        try {
+            reverseList = ConflictIndex.resolveAgainstDisk(reverseList, conflicts);
+        } catch (IOException | DirectoryIteratorException e) {
+            System.out.println("读取目录失败，回退已取消: " + e.getMessage());
+            return;
+        }
+        PreviewPrinter.printConflicts(conflicts);
+
+        List<RenamePair> reverted;
+        try (RenameExecutor executor = RenameExecutor.fromSystemProperties()) {
+            reverted = executor.execute(reverseList);
+        }
+        PreviewPrinter.printFailures(reverseList);
+
+        // 只把成功回退的文件记为已撤销，失败或冲突的文件之后仍可再次回退
+        BitSet undone = new BitSet();
+        for (RenamePair pair : reverted) {
+            undone.set(indices.get(pair));
+        }
+        try {
+            journal.markUndone(selection.batch, undone);
+        } catch (IOException e) {
+            System.out.println("警告: 撤销日志更新失败: " + e.getMessage());
+        }
+        System.out.println(">>> 已成功回退 " + reverted.size() + " 个文件。");
+    }
+
+    /**
+     * 按回退命令的参数从撤销日志中选出要回退的文件
+     *
+     * @param args   命令参数：[编号] [路径]
+     * @param folder 当前工作目录
+     * @return 选中的文件，没有可回退的文件时输出原因并返回 null
+     * @throws IOException 读取撤销日志失败时抛出
+     */
+    private static UndoJournal.Selection selectUndo(String args, File folder) throws IOException {
+        String[] parts = args.split("\\s+", 2);
+        String idText = parts[0].startsWith("#") ? parts[0].substring(1) : parts[0];
+        long id = -1;
+        String pathText = args;
+        if (!idText.isEmpty() && idText.chars().allMatch(Character::isDigit)) {
+            try {
+                id = Long.parseLong(idText);
+            } catch (NumberFormatException e) {
+                System.out.println("无效的操作编号: " + parts[0]);
+                return null;
+            }
+            pathText = parts.length > 1 ? parts[1] : "";
+        }
+        pathText = normalizePath(pathText);
+        Path target = pathText.isEmpty() ? null
+                : folder.toPath().toAbsolutePath().resolve(pathText).normalize();
+
+        UndoJournal.Batch batch;
+        if (id >= 0) {
+            batch = journal.batch(id);
+            if (batch == null || batch.isPending()) {
+                System.out.println("没有编号为 #" + id + " 的操作，输入 'h' 可查看操作历史。");
+                return null;
+            }
+            if (batch.remaining() == 0) {
+                System.out.println("操作 #" + id + " 已全部回退。");
+                return null;
+            }
+        } else if (target == null) {
+            batch = journal.lastUndoable();
+            if (batch == null) {
+                System.out.println("当前没有可回退的操作记录。");
+                return null;
+            }
+        } else {
+            UndoJournal.Selection selection = journal.lastTouching(target);
+            if (selection == null) {
+                System.out.println("撤销日志中没有涉及 " + target + " 的可回退操作。");
+            }
+            return selection;
+        }
+
+        UndoJournal.Selection selection = journal.select(batch, target);
+        if (selection.pairs.isEmpty()) {
+            System.out.println("操作 #" + batch.id + " 中没有涉及 " + target + " 的可回退文件。");
+            return null;
+        }
+        return selection;
+    }
+
+    /**
+     * 输出最近的操作历史，编号可用于 u 命令
+     */
+    private static void printHistory() {
+        List<UndoJournal.Batch> batches = journal.batches();
+        if (batches.isEmpty()) {
+            System.out.println("当前没有操作记录。");
+            return;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        StringBuilder buffer = new StringBuilder(1024);
+        buffer.append("\n--- [操作历史] ---\n");
+        for (int i = batches.size() - 1; i >= 0 && i >= batches.size() - HISTORY_SIZE; i--) {
+            UndoJournal.Batch batch = batches.get(i);
+            buffer.append("#").append(batch.id).append("  ")
+                    .append(batch.time > 0 ? format.format(new Date(batch.time)) : "时间未知").append("  ");
+            if (batch.isPending()) {
+                buffer.append("未完成，共 ").append(batch.size).append(" 个文件");
+            } else if (batch.remaining() == 0) {
+                buffer.append(batch.succeeded).append(" 个文件，已全部回退");
+            } else if (batch.remaining() < batch.succeeded) {
+                buffer.append(batch.succeeded).append(" 个文件，已回退 ")
+                        .append(batch.succeeded - batch.remaining()).append(" 个");
+            } else {
+                buffer.append(batch.succeeded).append(" 个文件");
+            }
+            if (!batch.root.isEmpty()) {
+                buffer.append("  ").append(batch.root);
+            }
+            buffer.append('\n');
+        }
+        if (batches.size() > HISTORY_SIZE) {
+            buffer.append("（共 ").append(batches.size()).append(" 个操作，只显示最近 ").append(HISTORY_SIZE).append(" 个）\n");
+        }
+        System.out.print(buffer);
+    }
+
+    /**
+     * 打开撤销日志
+     * 默认日志无法打开时（如用户目录只读），改用临时目录中的日志，退出时不删除，以免丢失撤销记录
+     *
+     * @return 撤销日志
+     */
+    static UndoJournal openJournal() {
+        Path path = UndoJournal.defaultPath();
+        String reason;
+        try {
+            return UndoJournal.open(path);
+        } catch (IOException e) {
+            reason = e.getMessage();
+        }
+        try {
+            Path temp = Files.createTempFile("file-rename-undo", ".journal");
+            Files.delete(temp);
+            System.out.println("警告: 撤销日志 " + path + " 无法打开（" + reason + "），本次改用 " + temp
+                    + "，可通过 -Drename.journal 指定该文件继续撤销。");
+            return UndoJournal.open(temp);
+        } catch (IOException e) {
+            throw new UncheckedIOException("撤销日志无法创建", e);
+        }
+    }
+
+    /**
+     * 关闭撤销日志
+     */
+    static void closeJournal() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("警告: 撤销日志关闭失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 处理上次异常退出时未完成的批次
+     * 根据文件系统的实际状态判断每个文件是否已重命名，由用户选择继续完成剩余文件或回滚已完成的文件
+     */
+    private static void recoverPendingBatches() {
+        for (UndoJournal.Batch batch : journal.pendingBatches()) {
+            List<RenamePair> pairs;
+            try {
+                pairs = journal.loadAll(batch);
+            } catch (IOException e) {
+                System.out.println("读取未完成的批次失败: " + e.getMessage());
+                continue;
+            }
+
+            BitSet done = pendingState(batch, pairs);
+            System.out.println("\n检测到上次未完成的重命名操作：共 " + pairs.size() + " 个文件，已完成 "
+                    + done.cardinality() + " 个。");
+            System.out.print("c=继续完成剩余文件 / r=回滚已完成的文件 / 直接回车=暂不处理: ");
+            String input = nextLine().trim().toLowerCase();
+
+            BitSet successes;
+            if ("c".equals(input)) {
+                successes = completePendingBatch(batch, pairs, done);
+                System.out.println(">>> 已继续完成 " + (successes.cardinality() - done.cardinality())
+                        + " 个文件，输入 'u' 可回退整批操作。");
+            } else if ("r".equals(input)) {
+                successes = rollbackPendingBatch(batch, pairs, done);
+            } else {
+                System.out.println(">>> 已保留，下次启动时将再次提示。");
+                continue;
+            }
+
+            try {
+                journal.commit(batch.id, successes);
+            } catch (IOException e) {
+                System.out.println("警告: 撤销日志更新失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 根据文件系统的实际状态判断未完成批次中每个文件是否已重命名，并将文件对的当前名称设为文件实际所在的名称
+     * 重命名环中先移到临时名称的文件：临时文件存在即未完成；临时文件不存在时，记入 PARKED 记录且目标文件存在才算完成，
+     * 否则文件仍在原名。其它文件：原文件不存在且目标文件存在即已完成；原名被链或环中下一个文件占用时，
+     * 占用者已完成说明该文件早已移走，同样视为已完成
+     *
+     * @param batch 未完成的批次
+     * @param pairs 批次中的全部文件对
+     * @return 已完成的文件对
+     */
+    private static BitSet pendingState(UndoJournal.Batch batch, List<RenamePair> pairs) {
+        BitSet done = new BitSet(pairs.size());
+        Map<Path, Map<String, Integer>> byOldName = new HashMap<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            RenamePair pair = pairs.get(i);
+            Path target = pair.dir.resolve(pair.newName);
+            if (pair.parkName != null) {
+                if (Files.exists(pair.dir.resolve(pair.parkName))) {
+                    pair.currentName = pair.parkName;
+                } else if (batch.parked != null && batch.parked.get(i) && Files.exists(target)) {
+                    done.set(i);
+                }
+                continue;
+            }
+            byOldName.computeIfAbsent(pair.dir, dir -> new HashMap<>()).put(ConflictIndex.key(pair.oldName), i);
+            if (!Files.exists(pair.currentPath()) && Files.exists(target)) {
+                done.set(i);
+            }
+        }
+
+        // 已完成的文件占用的目标名称若是另一个文件的原名，该文件必定已先移走
+        Deque<Integer> work = new ArrayDeque<>();
+        for (int i = done.nextSetBit(0); i >= 0; i = done.nextSetBit(i + 1)) {
+            work.push(i);
+        }
+        while (!work.isEmpty()) {
+            RenamePair pair = pairs.get(work.pop());
+            Map<String, Integer> names = byOldName.get(pair.dir);
+            Integer vacated = names == null ? null : names.get(ConflictIndex.key(pair.newName));
+            if (vacated != null && !done.get(vacated)) {
+                done.set(vacated);
+                work.push(vacated);
+            }
+        }
+        for (int i = done.nextSetBit(0); i >= 0; i = done.nextSetBit(i + 1)) {
+            pairs.get(i).currentName = pairs.get(i).newName;
+        }
+        return done;
+    }
+
+    /**
+     * 继续完成未完成批次中尚未重命名的文件
+     * 与正常重命名一样，重命名环中的文件先移到临时名称并记入撤销日志，再移到目标名称
+     *
+     * @param batch 未完成的批次
+     * @param pairs 批次中的全部文件对
+     * @param done  已完成的文件对
+     * @return 处理后处于已重命名状态的文件对
+     */
+    private static BitSet completePendingBatch(UndoJournal.Batch batch, List<RenamePair> pairs, BitSet done) {
+        FileMover mover = FileMover.fromSystemProperties();
+        BitSet pending = new BitSet(pairs.size());
+        pending.set(0, pairs.size());
+        pending.andNot(done);
+
+        BitSet parked = batch.parked == null ? new BitSet(pairs.size()) : (BitSet) batch.parked.clone();
+        BitSet parking = new BitSet(pairs.size());
+        for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(i + 1)) {
+            RenamePair pair = pairs.get(i);
+            if (pair.parkName == null || pair.currentName.equals(pair.parkName)) {
+                continue;
+            }
+            if (moveTo(mover, pair, pair.parkName, "继续失败")) {
+                parked.set(i);
+                parking.set(i);
+            } else {
+                pending.clear(i);
+            }
+        }
+        if (!parking.isEmpty()) {
+            try {
+                journal.parked(batch.id, parked);
+            } catch (IOException e) {
+                System.out.println("撤销日志更新失败，已取消继续: " + e.getMessage());
+                restoreParked(batch, pairs, parking, mover);
+                return done;
+            }
+        }
+
+        BitSet successes = moveAll(mover, pairs, pending, pair -> pair.newName, "继续失败");
+        successes.or(done);
+
+        // 仍在临时名称的文件恢复原名
+        BitSet stranded = new BitSet(pairs.size());
+        for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(i + 1)) {
+            if (!successes.get(i) && pairs.get(i).currentName.equals(pairs.get(i).parkName)) {
+                stranded.set(i);
+            }
+        }
+        restoreParked(batch, pairs, stranded, mover);
+        return successes;
+    }
+
+    /**
+     * 继续完成未完成的批次并写入 COMMIT 记录，不询问用户，供执行计划文件中断后重新运行时使用
+     *
+     * @param batch 未完成的批次
+     * @param pairs 批次中的全部文件对
+     * @return 处于已重命名状态的文件对
+     * @throws IOException COMMIT 记录写入失败时抛出
+     */
+    static BitSet completePending(UndoJournal.Batch batch, List<RenamePair> pairs) throws IOException {
+        BitSet successes = completePendingBatch(batch, pairs, pendingState(batch, pairs));
+        journal.commit(batch.id, successes);
+        return successes;
+    }
+
+    /**
+     * 回滚未完成批次中已重命名的文件
+     * 重命名环中已完成的文件先移回临时名称，环中其余文件回滚后再从临时名称恢复原名，过程中任一时刻异常退出，
+     * 文件状态都与正常重命名的某个中间状态相同，下次启动时仍能正确识别
+     *
+     * @param batch 未完成的批次
+     * @param pairs 批次中的全部文件对
+     * @param done  已完成的文件对
+     * @return 回滚失败、仍处于已重命名状态的文件对
+     */
+    private static BitSet rollbackPendingBatch(UndoJournal.Batch batch, List<RenamePair> pairs, BitSet done) {
+        FileMover mover = FileMover.fromSystemProperties();
+        BitSet remaining = (BitSet) done.clone();
+        BitSet parked = new BitSet(pairs.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            RenamePair pair = pairs.get(i);
+            if (pair.parkName == null) {
+                continue;
+            }
+            if (done.get(i)) {
+                if (moveTo(mover, pair, pair.parkName, "回滚失败")) {
+                    remaining.clear(i);
+                    parked.set(i);
+                }
+            } else if (pair.currentName.equals(pair.parkName)) {
+                parked.set(i);
+            }
+        }
+
+        BitSet reverting = (BitSet) remaining.clone();
+        for (int i = reverting.nextSetBit(0); i >= 0; i = reverting.nextSetBit(i + 1)) {
+            if (pairs.get(i).parkName != null) {
+                reverting.clear(i);
+            }
+        }
+        BitSet reverted = moveAll(mover, pairs, reverting, pair -> pair.oldName, "回滚失败");
+        remaining.andNot(reverted);
+        BitSet restored = restoreParked(batch, pairs, parked, mover);
+        restored.and(done);
+        System.out.println(">>> 已回滚 " + (reverted.cardinality() + restored.cardinality()) + " 个文件。");
+        return remaining;
+    }
+
+    /**
+     * 将临时名称的文件恢复原名
+     * 恢复前先从撤销日志的 PARKED 记录中去掉这些文件，避免恢复后被误认为已移到目标名称
+     *
+     * @param batch  未完成的批次
+     * @param pairs  批次中的全部文件对
+     * @param parked 处于临时名称的文件对
+     * @param mover  重命名实现
+     * @return 恢复原名的文件对
+     */
+    private static BitSet restoreParked(UndoJournal.Batch batch, List<RenamePair> pairs, BitSet parked,
+                                        FileMover mover) {
+        BitSet restored = new BitSet(pairs.size());
+        if (parked.isEmpty()) {
+            return restored;
+        }
+        if (batch.parked != null && batch.parked.intersects(parked)) {
+            BitSet remaining = (BitSet) batch.parked.clone();
+            remaining.andNot(parked);
+            try {
+                journal.parked(batch.id, remaining);
+            } catch (IOException e) {
+                System.out.println("警告: 撤销日志更新失败，以下文件保留为临时名称: " + e.getMessage());
+                for (int i = parked.nextSetBit(0); i >= 0; i = parked.nextSetBit(i + 1)) {
+                    System.out.println("  " + pairs.get(i).currentPath());
+                }
+                return restored;
+            }
+        }
+        for (int i = parked.nextSetBit(0); i >= 0; i = parked.nextSetBit(i + 1)) {
+            if (moveTo(mover, pairs.get(i), pairs.get(i).oldName, "恢复原名失败")) {
+                restored.set(i);
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * 反复移动选中的文件直到不再有进展
+     * 移动从不覆盖已有文件，链或环中的文件要等占用目标名称的文件移走后才能移动，因此失败的文件在下一轮重试，
+     * 只报告最后一轮仍失败的文件
+     *
+     * @param mover    重命名实现
+     * @param pairs    批次中的全部文件对
+     * @param selected 要移动的文件对
+     * @param target   目标名称
+     * @param action   失败时的提示
+     * @return 移动成功的文件对
+     */
+    private static BitSet moveAll(FileMover mover, List<RenamePair> pairs, BitSet selected,
+                                  Function<RenamePair, String> target, String action) {
+        BitSet moved = new BitSet(pairs.size());
+        BitSet left = (BitSet) selected.clone();
+        Map<Integer, Exception> failures = new HashMap<>();
+        boolean progress = true;
+        while (progress && !left.isEmpty()) {
+            progress = false;
+            failures.clear();
+            for (int i = left.nextSetBit(0); i >= 0; i = left.nextSetBit(i + 1)) {
+                RenamePair pair = pairs.get(i);
+                String name = target.apply(pair);
+                try {
+                    mover.move(pair.currentPath(), pair.dir.resolve(name));
+                    pair.currentName = name;
+                    moved.set(i);
+                    left.clear(i);
+                    progress = true;
+                } catch (IOException | InvalidPathException e) {
+                    failures.put(i, e);
+                }
+            }
+        }
+        for (int i = left.nextSetBit(0); i >= 0; i = left.nextSetBit(i + 1)) {
+            System.out.println(action + ": " + pairs.get(i).currentPath() + " ("
+                    + RenameFailure.of(failures.get(i)).description + ")");
+        }
+        return moved;
+    }
+
+    private static boolean moveTo(FileMover mover, RenamePair pair, String name, String action) {
+        try {
+            mover.move(pair.currentPath(), pair.dir.resolve(name));
+            pair.currentName = name;
+            return true;
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(action + ": " + pair.currentPath() + " (" + RenameFailure.of(e).description + ")");
+            return false;
+        }
+    }
+}
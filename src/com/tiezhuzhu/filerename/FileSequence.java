@@ -0,0 +1,209 @@
+package com.tiezhuzhu.filerename;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 按顺序编号（模式12）时同一目录中参与编号的文件
+ * 列目录时收集文件名及其修改时间或大小，列完后一次排序，再按排序结果依次编号。
+ *
+ * <p>排序键在排序前一次性算好：自然顺序键把文件名中的每段数字改写为"标记 + 位数 + 去掉前导零的数字"，并忽略大小写，
+ * 之后直接按字符比较即与自然顺序（a2 在 a10 之前）一致，比较器不必在每次比较时重新解析数字；
+ * 文件名开头已有的编号不参与比较，重复编号时顺序不变。文件数较多时用 {@link Arrays#parallelSetAll} 计算排序键、
+ * 用 {@link Arrays#parallelSort} 排序，在 ForkJoin 线程池中调用时（如递归扫描）使用当前线程池。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class FileSequence {
+
+    // 文件数不少于该值时并行计算排序键和排序，与 Arrays.parallelSort 不再拆分的粒度相同
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+    // 自然顺序键中数字段的标记，与原字符 '0' 相同，数字段与其它字符的先后关系不变
+    private static final char DIGITS = '0';
+
+    private final RenameRule.SequenceRule rule;
+    private final List<String> names = new ArrayList<>();
+    private long[] values = new long[16];
+
+    FileSequence(RenameRule.SequenceRule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * 规则链中有编号规则时创建
+     *
+     * @param rules 规则链
+     * @return 编号的文件集合，规则链中没有编号规则时返回 null
+     */
+    static FileSequence forRules(List<RenameRule> rules) {
+        for (RenameRule rule : rules) {
+            if (rule instanceof RenameRule.SequenceRule) {
+                return new FileSequence((RenameRule.SequenceRule) rule);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 加入一个参与编号的文件
+     *
+     * @param name       文件名
+     * @param attributes 文件属性，按修改时间或大小排序时使用
+     */
+    void add(String name, BasicFileAttributes attributes) {
+        int index = names.size();
+        if (index == values.length) {
+            values = Arrays.copyOf(values, index * 2);
+        }
+        if (rule.order == RenameRule.SequenceRule.BY_MTIME) {
+            values[index] = attributes.lastModifiedTime().toMillis();
+        } else if (rule.order == RenameRule.SequenceRule.BY_SIZE) {
+            values[index] = attributes.size();
+        }
+        names.add(name);
+    }
+
+    boolean isEmpty() {
+        return names.isEmpty();
+    }
+
+    /**
+     * 按编号规则的排序方式排序
+     *
+     * @return 排好序的文件名
+     */
+    List<String> sorted() {
+        return sorted(names.size() >= PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * 按编号规则的排序方式排序
+     *
+     * @param parallel 是否并行计算排序键和排序
+     * @return 排好序的文件名
+     */
+    List<String> sorted(boolean parallel) {
+        int count = names.size();
+        // 去掉的原有编号与本次编号位数相同，与 SequenceRule 替换编号时一致
+        int digits = rule.digits(count);
+        Entry[] entries = new Entry[count];
+        if (parallel) {
+            Arrays.parallelSetAll(entries, i -> entry(i, digits));
+        } else {
+            for (int i = 0; i < count; i++) {
+                entries[i] = entry(i, digits);
+            }
+        }
+
+        Comparator<Entry> comparator = rule.order == RenameRule.SequenceRule.BY_NAME
+                ? FileSequence::compareKeys : FileSequence::compareValues;
+        if (rule.descending) {
+            comparator = comparator.reversed();
+        }
+        if (parallel) {
+            Arrays.parallelSort(entries, comparator);
+        } else {
+            Arrays.sort(entries, comparator);
+        }
+
+        List<String> sorted = new ArrayList<>(count);
+        for (Entry entry : entries) {
+            sorted.add(entry.name);
+        }
+        return sorted;
+    }
+
+    private Entry entry(int index, int digits) {
+        String name = names.get(index);
+        return new Entry(name, naturalKey(name, RenameRule.SequenceRule.numberedPrefix(name, digits)), values[index]);
+    }
+
+    /**
+     * 对按顺序排好的文件应用规则链，文件在列表中的位置即编号
+     * 规则链中有读取文件内容的规则时由 {@link FileContent#applyAll} 并行读取，否则依次应用
+     *
+     * @param rules 规则链
+     * @param dir   目录
+     * @param names 排好序的文件名
+     * @return 与 names 一一对应的新文件名，无需重命名的为 null
+     */
+    static String[] applyAll(List<RenameRule> rules, Path dir, List<String> names) {
+        if (RenameRule.readsContent(rules)) {
+            return FileContent.applyAll(rules, dir, names);
+        }
+        String[] newNames = new String[names.size()];
+        for (int i = 0; i < newNames.length; i++) {
+            newNames[i] = RenameRule.applyAll(rules, names.get(i), null, i, newNames.length);
+        }
+        return newNames;
+    }
+
+    /**
+     * 计算文件名的自然顺序键
+     * 每段数字改写为标记、位数（一个字符）和去掉前导零的数字，其它字符转为小写；
+     * 位数少的数字较小，位数相同时逐位比较，因此按字符比较两个键即为自然顺序
+     *
+     * @param name 文件名
+     * @param from 开始位置，之前的原有编号不参与比较
+     * @return 自然顺序键
+     */
+    static String naturalKey(String name, int from) {
+        int length = name.length();
+        StringBuilder key = new StringBuilder(length + 8);
+        int i = from;
+        while (i < length) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                key.append(Character.toLowerCase(c));
+                i++;
+                continue;
+            }
+            int end = i + 1;
+            while (end < length && isDigit(name.charAt(end))) {
+                end++;
+            }
+            int significant = i;
+            while (significant < end && name.charAt(significant) == '0') {
+                significant++;
+            }
+            key.append(DIGITS).append((char) (end - significant)).append(name, significant, end);
+            i = end;
+        }
+        return key.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int compareKeys(Entry a, Entry b) {
+        int result = a.key.compareTo(b.key);
+        // 自然顺序相同（如 a01 和 a1、A1 和 a1）时按原文件名区分，结果稳定
+        return result != 0 ? result : a.name.compareTo(b.name);
+    }
+
+    private static int compareValues(Entry a, Entry b) {
+        int result = Long.compare(a.value, b.value);
+        return result != 0 ? result : compareKeys(a, b);
+    }
+
+    /**
+     * 文件名及预先算好的排序键
+     */
+    private static final class Entry {
+        final String name;
+        final String key;
+        final long value;
+
+        Entry(String name, String key, long value) {
+            this.name = name;
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
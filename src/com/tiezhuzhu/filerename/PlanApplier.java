@@ -0,0 +1,616 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 执行计划文件
+ * 流式读取 {@link PlanFile} 写出的计划，按目录分组执行：每组执行前重新列出目录检查冲突、安排依赖和重命名环，
+ * 执行时与批处理模式一样写入撤销日志；多个组由 {@link DirectoryScheduler} 同时执行。
+ *
+ * <p>大计划可以拆分到多个进程或多台机器上同时执行：{@code --shard i/k} 只执行目录路径的哈希值除以 k 余 i-1 的组，
+ * 同一目录的文件总在同一个分片中，各分片之间互不依赖。同一目录在计划中出现在多处时（如递归处理时指定了
+ * 相互包含的目录），执行前先读一遍计划找出这些目录，读到该目录的最后一组时合并为一组执行，
+ * 完全相同的文件对只保留一个，同一目录不会被两组同时检查冲突；合并后的组以第一组的编号记录。每组执行后在检查点文件中追加一行组号，
+ * 组内有失败或冲突的文件时同时记下它们在组内的序号，中断后重新运行同一命令会跳过已完成的组，
+ * 只重试上次失败的文件。每组开始重命名前还会在检查点中记下该组在撤销日志中的批次，
+ * 执行中途中断的组重新运行时先按该批次继续完成（与交互模式恢复时选择"继续"相同），
+ * 已完成的文件不再根据目录的当前状态判断，重命名环（A -> B, B -> A）完成后也不会被再次交换。
+ * 其余文件执行前原名已不存在、新名已存在的视为已完成。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class PlanApplier {
+
+    private final int shard;
+    private final int shards;
+    private final int jobs;
+    private final int perMount;
+    private final boolean dryRun;
+    private final Path checkpointFile;
+    private final PrintStream results;
+
+    private Checkpoint checkpoint;
+
+    // 汇总统计，各组在调度器的工作线程中执行，持有 this 锁后才能修改
+    private long groupCount;
+    private long resumedCount;
+    private long errorCount;
+    private long plannedCount;
+    private long renamedCount;
+    private long skippedCount;
+    private long conflictCount;
+    private final Map<RenameFailure, Integer> failureCounts = new EnumMap<>(RenameFailure.class);
+
+    /**
+     * 创建计划执行器
+     *
+     * @param shard          分片编号（从 0 开始）
+     * @param shards         分片总数
+     * @param jobs           同时执行的最大组数
+     * @param perMount       同一文件系统上同时执行的最大组数
+     * @param dryRun         只检查计划，不执行重命名，也不写检查点
+     * @param checkpointFile 检查点文件
+     * @param results        机器可读结果的输出流
+     */
+    PlanApplier(int shard, int shards, int jobs, int perMount, boolean dryRun, Path checkpointFile,
+                PrintStream results) {
+        this.shard = shard;
+        this.shards = shards;
+        this.jobs = jobs;
+        this.perMount = perMount;
+        this.dryRun = dryRun;
+        this.checkpointFile = checkpointFile;
+        this.results = results;
+    }
+
+    /**
+     * 默认的检查点文件：计划文件旁的 .done 文件，分片执行时每个分片各自一个
+     *
+     * @param planFile 计划文件
+     * @param shard    分片编号（从 0 开始）
+     * @param shards   分片总数
+     * @return 检查点文件
+     */
+    static Path defaultCheckpoint(Path planFile, int shard, int shards) {
+        String name = planFile.getFileName().toString();
+        return planFile.resolveSibling(shards == 1 ? name + ".done" : name + "." + (shard + 1) + "-of-" + shards + ".done");
+    }
+
+    /**
+     * 执行计划文件中属于本分片的全部组
+     *
+     * @param planFile 计划文件
+     * @return 退出码
+     */
+    int run(Path planFile) {
+        long startTime = System.nanoTime();
+        PlanFile.Input input;
+        try {
+            if (!dryRun) {
+                checkpoint = Checkpoint.open(checkpointFile, Files.size(planFile), shard, shards);
+            }
+            input = PlanFile.openInput(planFile);
+        } catch (IOException e) {
+            closeCheckpoint();
+            System.err.println("无法打开计划文件或检查点: " + e.getMessage());
+            return BatchMode.EXIT_FATAL;
+        }
+
+        // 出现在多个组中的目录：之前的组先暂存，读到最后一组时合并执行
+        Map<String, Integer> repeated = repeatedDirectories(planFile);
+        Map<String, Merge> merging = new HashMap<>();
+        DirectoryScheduler scheduler = new DirectoryScheduler(jobs, perMount);
+        try (input) {
+            int index = 0;
+            List<FileRenameTool.RenamePair> group;
+            while ((group = input.nextGroup()) != null) {
+                int position = index++;
+                String dirName = group.get(0).dir.toString();
+                if (shardOf(dirName, shards) != shard) {
+                    continue;
+                }
+                Integer occurrences = repeated.get(dirName);
+                if (occurrences != null) {
+                    Merge merge = merging.get(dirName);
+                    if (merge == null) {
+                        merge = new Merge(position);
+                        merging.put(dirName, merge);
+                    }
+                    merge.add(group);
+                    if (merge.groups < occurrences) {
+                        continue;
+                    }
+                    merging.remove(dirName);
+                    group = merge.pairs;
+                    position = merge.groupIndex;
+                }
+                int groupIndex = position;
+                int[] retry = checkpoint == null ? null : checkpoint.pending(groupIndex);
+                long[] running = checkpoint == null ? null : checkpoint.running(groupIndex);
+                if (retry != null) {
+                    // 上次执行过的组只重试失败的文件，已成功的文件（包括重命名环中的）不再重复执行
+                    List<FileRenameTool.RenamePair> failed = new ArrayList<>(retry.length);
+                    for (int i : retry) {
+                        if (i < group.size()) {
+                            failed.add(group.get(i));
+                        }
+                    }
+                    if (failed.isEmpty()) {
+                        synchronized (this) {
+                            resumedCount++;
+                        }
+                        continue;
+                    }
+                    group = failed;
+                }
+                List<FileRenameTool.RenamePair> pairs = group;
+                scheduler.submit(pairs.get(0).dir, () -> {
+                    try {
+                        applyGroup(groupIndex, pairs, retry, running);
+                    } catch (RuntimeException e) {
+                        reportError(groupIndex, pairs.get(0).dir, "执行失败: " + e, System.nanoTime());
+                    }
+                });
+            }
+        } catch (IOException e) {
+            // 已读到的完整组照常执行完，之后的组留待计划文件修复后再执行
+            System.err.println("读取计划文件失败: " + e.getMessage());
+            synchronized (this) {
+                errorCount++;
+            }
+        } finally {
+            scheduler.awaitAll();
+            scheduler.close();
+            closeCheckpoint();
+        }
+
+        long failedCount = dryRun ? 0 : plannedCount - renamedCount;
+        results.println("{\"summary\":true"
+                + ",\"apply\":" + BatchMode.json(planFile.toString())
+                + ",\"shard\":\"" + (shard + 1) + "/" + shards + "\""
+                + ",\"dryRun\":" + dryRun
+                + ",\"groups\":" + groupCount
+                + ",\"resumed\":" + resumedCount
+                + ",\"errors\":" + errorCount
+                + ",\"planned\":" + plannedCount
+                + ",\"renamed\":" + renamedCount
+                + ",\"skipped\":" + skippedCount
+                + ",\"failed\":" + failedCount
+                + ",\"conflicts\":" + conflictCount
+                + BatchMode.json(failureCounts)
+                + ",\"elapsedMs\":" + (System.nanoTime() - startTime) / 1_000_000
+                + "}");
+        results.flush();
+        return errorCount == 0 && failedCount == 0 && conflictCount == 0 ? BatchMode.EXIT_OK : BatchMode.EXIT_FAILURES;
+    }
+
+    /**
+     * 计算目录所属的分片，与组在计划中的位置无关，同一目录总在同一分片
+     *
+     * @param dirName 计划中的目录
+     * @param shards  分片总数
+     * @return 分片编号（从 0 开始）
+     */
+    static int shardOf(String dirName, int shards) {
+        return Math.floorMod(dirName.hashCode(), shards);
+    }
+
+    /**
+     * 先读一遍计划，找出本分片中出现在多个组里的目录
+     * 计划文件读取失败时只统计已读到的部分，之后执行时会在同一位置报告错误
+     *
+     * @param planFile 计划文件
+     * @return 目录 -> 所在的组数，只包含出现多次的目录
+     */
+    private Map<String, Integer> repeatedDirectories(Path planFile) {
+        Map<String, Integer> counts = new HashMap<>();
+        try (PlanFile.Input input = PlanFile.openInput(planFile)) {
+            List<FileRenameTool.RenamePair> group;
+            while ((group = input.nextGroup()) != null) {
+                String dirName = group.get(0).dir.toString();
+                if (shardOf(dirName, shards) == shard) {
+                    counts.merge(dirName, 1, Integer::sum);
+                }
+            }
+        } catch (IOException e) {
+            // 执行时报告
+        }
+        counts.values().removeIf(count -> count == 1);
+        return counts;
+    }
+
+    /**
+     * 执行一组（同一目录下）的重命名，并输出一行 JSON 结果
+     * 在调度器的工作线程中执行，每组的重命名单独记录为一个撤销批次
+     *
+     * @param groupIndex 组号
+     * @param group      同一目录下的文件对
+     * @param indexes    各文件对在组内的序号，为 null 时即为 group 中的下标
+     * @param running    上次执行该组时中断留下的批次，见 {@link Checkpoint#running}，没有时为 null
+     */
+    private void applyGroup(int groupIndex, List<FileRenameTool.RenamePair> group, int[] indexes,
+                            long[] running) {
+        long startTime = System.nanoTime();
+        Path dir = group.get(0).dir;
+
+        Set<String> finished;
+        try {
+            finished = running == null ? Collections.emptySet() : resume(dir, group, running);
+        } catch (IOException e) {
+            reportError(groupIndex, dir, "恢复上次中断的执行失败: " + e.getMessage(), startTime);
+            return;
+        }
+
+        // 重新列出目录：跳过已完成的文件，并按目录的当前状态检查冲突
+        Set<String> names = new HashSet<>();
+        Set<String> existingNames = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                names.add(name);
+                existingNames.add(ConflictIndex.key(name));
+            }
+        } catch (NoSuchFileException e) {
+            reportError(groupIndex, dir, "目录不存在", startTime);
+            return;
+        } catch (IOException | DirectoryIteratorException e) {
+            reportError(groupIndex, dir, "读取目录失败: " + e.getMessage(), startTime);
+            return;
+        }
+        List<FileRenameTool.RenamePair> plan = new ArrayList<>(group.size());
+        int skipped = 0;
+        for (FileRenameTool.RenamePair pair : group) {
+            if (finished.contains(pair.oldName) || !names.contains(pair.oldName) && names.contains(pair.newName)) {
+                skipped++;
+            } else {
+                plan.add(pair);
+            }
+        }
+        List<ConflictIndex.Conflict> conflicts = new ArrayList<>();
+        ConflictIndex.resolve(plan, existingNames, conflicts);
+        PreviewPrinter.printConflicts(conflicts);
+
+        int renamed = 0;
+        if (!dryRun && !plan.isEmpty()) {
+            try {
+                // 先记下该组已开始，写入撤销日志后、重命名前再记下批次，中断后重新运行时据此找到该批次
+                checkpoint.started(groupIndex);
+                renamed = FileRenameTool.renameAndRecord(plan, batch -> checkpoint.begun(groupIndex, batch)).size();
+            } catch (IOException e) {
+                reportError(groupIndex, dir, "写入撤销日志或检查点失败: " + e.getMessage(), startTime);
+                return;
+            }
+        }
+
+        Map<RenameFailure, Integer> failures = RenameFailure.countAll(plan);
+        PreviewPrinter.printFailures(plan);
+        if (checkpoint != null) {
+            // 记下失败和冲突的文件，重新运行时只重试这些文件
+            Set<FileRenameTool.RenamePair> unfinished = new HashSet<>();
+            for (ConflictIndex.Conflict conflict : conflicts) {
+                unfinished.add(conflict.pair);
+            }
+            for (FileRenameTool.RenamePair pair : plan) {
+                if (pair.failure != null) {
+                    unfinished.add(pair);
+                }
+            }
+            int[] retry = new int[unfinished.size()];
+            int count = 0;
+            for (int i = 0; i < group.size(); i++) {
+                if (unfinished.contains(group.get(i))) {
+                    retry[count++] = indexes == null ? i : indexes[i];
+                }
+            }
+            try {
+                checkpoint.mark(groupIndex, retry);
+            } catch (IOException e) {
+                System.err.println("警告: 检查点写入失败，重新运行时该组会再检查一次: " + e.getMessage());
+            }
+        }
+        synchronized (this) {
+            groupCount++;
+            failures.forEach((reason, count) -> failureCounts.merge(reason, count, Integer::sum));
+            plannedCount += plan.size();
+            renamedCount += renamed;
+            skippedCount += skipped;
+            conflictCount += conflicts.size();
+        }
+        results.println("{\"dir\":" + BatchMode.json(dir.toString())
+                + ",\"group\":" + groupIndex
+                + ",\"status\":\"ok\""
+                + ",\"planned\":" + plan.size()
+                + ",\"renamed\":" + renamed
+                + ",\"skipped\":" + skipped
+                + ",\"failed\":" + (dryRun ? 0 : plan.size() - renamed)
+                + ",\"conflicts\":" + conflicts.size()
+                + BatchMode.json(failures)
+                + ",\"elapsedMs\":" + (System.nanoTime() - startTime) / 1_000_000
+                + "}");
+    }
+
+    /**
+     * 处理上次执行该组时中断留下的批次
+     * 只记下了开始、还没有记下批次时尚未重命名任何文件，撤销日志中与该组计划相同的未完成批次记为全部未执行；
+     * 记下了批次时继续完成该批次，批次已提交的不再执行
+     *
+     * @param dir     目录
+     * @param group   同一目录下的文件对
+     * @param running 上次执行该组的批次
+     * @return 上次已完成重命名的文件原名
+     * @throws IOException 撤销日志读写失败或找不到该批次时抛出
+     */
+    private Set<String> resume(Path dir, List<FileRenameTool.RenamePair> group, long[] running) throws IOException {
+        UndoJournal journal = FileRenameTool.journal;
+        String root = dir.toAbsolutePath().toString();
+        Set<String> finished = new HashSet<>();
+        if (running.length == 0) {
+            Map<String, String> planned = new HashMap<>();
+            for (FileRenameTool.RenamePair pair : group) {
+                planned.put(pair.oldName, pair.newName);
+            }
+            for (UndoJournal.Batch batch : journal.pendingBatches()) {
+                if (batch.root.equals(root) && sameRenames(journal.loadAll(batch), planned)) {
+                    journal.commit(batch.id, new BitSet());
+                }
+            }
+            return finished;
+        }
+
+        UndoJournal.Batch batch = journal.batch(running[0], running[1], root);
+        if (batch == null) {
+            throw new IOException("撤销日志中找不到上次执行该组的批次 #" + running[0] + "，无法判断哪些文件已重命名");
+        }
+        if (batch.isPending()) {
+            List<FileRenameTool.RenamePair> pairs = journal.loadAll(batch);
+            BitSet successes = FileRenameTool.completePending(batch, pairs);
+            for (int i = successes.nextSetBit(0); i >= 0; i = successes.nextSetBit(i + 1)) {
+                finished.add(pairs.get(i).oldName);
+            }
+        } else {
+            for (FileRenameTool.RenamePair pair : journal.select(batch, null).pairs) {
+                finished.add(pair.oldName);
+            }
+        }
+        return finished;
+    }
+
+    private static boolean sameRenames(List<FileRenameTool.RenamePair> pairs, Map<String, String> planned) {
+        for (FileRenameTool.RenamePair pair : pairs) {
+            if (!pair.newName.equals(planned.get(pair.oldName))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reportError(int groupIndex, Path dir, String message, long startTime) {
+        synchronized (this) {
+            groupCount++;
+            errorCount++;
+        }
+        results.println("{\"dir\":" + BatchMode.json(dir.toString())
+                + ",\"group\":" + groupIndex
+                + ",\"status\":\"error\""
+                + ",\"error\":" + BatchMode.json(message)
+                + ",\"elapsedMs\":" + (System.nanoTime() - startTime) / 1_000_000
+                + "}");
+    }
+
+    private void closeCheckpoint() {
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            checkpoint.close();
+        } catch (IOException e) {
+            System.err.println("警告: 检查点关闭失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 同一目录在计划中的多个组，合并后共用第一组的目录对象
+     */
+    private static final class Merge {
+        final int groupIndex;  // 第一组的编号
+        final List<FileRenameTool.RenamePair> pairs = new ArrayList<>();
+        // 已加入的文件对（原名 + "/" + 新名），文件名中不含 "/"
+        private final Set<String> renames = new HashSet<>();
+        int groups;
+
+        Merge(int groupIndex) {
+            this.groupIndex = groupIndex;
+        }
+
+        void add(List<FileRenameTool.RenamePair> group) {
+            Path dir = pairs.isEmpty() ? group.get(0).dir : pairs.get(0).dir;
+            for (FileRenameTool.RenamePair pair : group) {
+                if (renames.add(pair.oldName + "/" + pair.newName)) {
+                    pairs.add(pair.dir == dir ? pair : new FileRenameTool.RenamePair(dir, pair.oldName, pair.newName));
+                }
+            }
+            groups++;
+        }
+    }
+
+    /**
+     * 检查点文件
+     * 首行记录计划文件大小和分片，之后每行一个执行过的组号，组内有需要重试的文件时写作
+     * {@code 组号:序号,序号}，同一组出现多次时以最后一行为准。组开始重命名前先写 {@code 组号>}，
+     * 批次写入撤销日志后再写 {@code 组号>批次编号@开始时间}，组执行完后的组号行使其失效。
+     * 每写一行立即刷新到操作系统；进程异常退出时正在执行的组只留下开始行，重新执行时据此处理撤销日志中的批次。
+     */
+    static final class Checkpoint implements Closeable {
+        private static final int[] NONE = new int[0];
+        private static final long[] NO_BATCH = new long[0];
+
+        // 组号 -> 需要重试的文件序号，已完成的组为空数组
+        private final Map<Integer, int[]> done;
+        // 组号 -> 正在执行的批次（编号、开始时间），还没有写入撤销日志时为空数组
+        private final Map<Integer, long[]> running;
+        private final BufferedWriter writer;
+
+        private Checkpoint(Map<Integer, int[]> done, Map<Integer, long[]> running, BufferedWriter writer) {
+            this.done = done;
+            this.running = running;
+            this.writer = writer;
+        }
+
+        /**
+         * 打开检查点文件，不存在时创建
+         *
+         * @param file     检查点文件
+         * @param planSize 计划文件大小，用于识别计划文件是否已更换
+         * @param shard    分片编号（从 0 开始）
+         * @param shards   分片总数
+         * @return 检查点
+         * @throws IOException 读写失败，或检查点属于其它计划文件或分片时抛出
+         */
+        static Checkpoint open(Path file, long planSize, int shard, int shards) throws IOException {
+            // 分片按目录划分，与按组号划分的旧版本检查点不能混用
+            String header = "# plan-size=" + planSize + " shard=" + (shard + 1) + "/" + shards + " by=dir";
+            Map<Integer, int[]> done = new HashMap<>();
+            Map<Integer, long[]> running = new HashMap<>();
+            // 异常退出时最后一行可能不完整，只读取到最后一个换行符为止，并截掉不完整的部分
+            byte[] bytes = Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+            String content = new String(bytes, StandardCharsets.UTF_8);
+            int complete = content.lastIndexOf('\n') + 1;
+            String[] lines = content.substring(0, complete).split("\n");
+            if (complete > 0 && !lines[0].equals(header)) {
+                throw new IOException("检查点 " + file + " 属于其它计划文件或分片，或由旧版本写入（" + lines[0]
+                        + "），请确认后删除该文件再重新执行");
+            }
+            for (int i = 1; i < lines.length; i++) {
+                try {
+                    String line = lines[i].trim();
+                    int started = line.indexOf('>');
+                    int colon = line.indexOf(':');
+                    if (started >= 0) {
+                        int at = line.indexOf('@', started);
+                        running.put(Integer.parseInt(line.substring(0, started)), started == line.length() - 1
+                                ? NO_BATCH
+                                : new long[]{Long.parseLong(line.substring(started + 1, at)),
+                                        Long.parseLong(line.substring(at + 1))});
+                    } else if (colon < 0) {
+                        int groupIndex = Integer.parseInt(line);
+                        done.put(groupIndex, NONE);
+                        running.remove(groupIndex);
+                    } else {
+                        String[] parts = line.substring(colon + 1).split(",");
+                        int[] retry = new int[parts.length];
+                        for (int j = 0; j < parts.length; j++) {
+                            retry[j] = Integer.parseInt(parts[j]);
+                        }
+                        int groupIndex = Integer.parseInt(line.substring(0, colon));
+                        done.put(groupIndex, retry);
+                        running.remove(groupIndex);
+                    }
+                } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                    throw new IOException("检查点 " + file + " 已损坏: " + lines[i]);
+                }
+            }
+            if (complete < bytes.length) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(complete);
+                }
+            }
+            BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (complete == 0) {
+                writer.write(header);
+                writer.write('\n');
+                writer.flush();
+            }
+            return new Checkpoint(done, running, writer);
+        }
+
+        /**
+         * 查询组的执行情况
+         *
+         * @param groupIndex 组号
+         * @return 需要重试的文件序号，已完成时为空数组，尚未执行过时为 null
+         */
+        synchronized int[] pending(int groupIndex) {
+            return done.get(groupIndex);
+        }
+
+        /**
+         * 查询上次执行组时是否中断
+         *
+         * @param groupIndex 组号
+         * @return 中断时正在执行的批次编号和开始时间，尚未写入撤销日志时为空数组，没有中断时为 null
+         */
+        synchronized long[] running(int groupIndex) {
+            return running.get(groupIndex);
+        }
+
+        /**
+         * 记录组即将写入撤销日志并开始重命名
+         *
+         * @param groupIndex 组号
+         * @throws IOException 写入失败时抛出
+         */
+        synchronized void started(int groupIndex) throws IOException {
+            running.put(groupIndex, NO_BATCH);
+            writer.write(groupIndex + ">\n");
+            writer.flush();
+        }
+
+        /**
+         * 记录组的批次已写入撤销日志，应在开始重命名前调用
+         *
+         * @param groupIndex 组号
+         * @param batch      批次
+         * @throws IOException 写入失败时抛出
+         */
+        synchronized void begun(int groupIndex, UndoJournal.Batch batch) throws IOException {
+            running.put(groupIndex, new long[]{batch.id, batch.time});
+            writer.write(groupIndex + ">" + batch.id + "@" + batch.time + "\n");
+            writer.flush();
+        }
+
+        /**
+         * 记录组已执行
+         *
+         * @param groupIndex 组号
+         * @param retry      需要重试的文件序号，全部完成时为空数组
+         * @throws IOException 写入失败时抛出
+         */
+        synchronized void mark(int groupIndex, int[] retry) throws IOException {
+            done.put(groupIndex, retry);
+            running.remove(groupIndex);
+            StringBuilder line = new StringBuilder().append(groupIndex);
+            for (int i = 0; i < retry.length; i++) {
+                line.append(i == 0 ? ':' : ',').append(retry[i]);
+            }
+            writer.write(line.append('\n').toString());
+            writer.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,646 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 重命名计划文件
+ * 计划可以在一台机器上生成（如批处理模式的 {@code --dry-run --plan}），复制到文件服务器后再通过 {@code --apply} 执行，
+ * 见 {@link PlanApplier}。按文件扩展名选择格式：
+ * <ul>
+ *     <li>{@code .jsonl}：每行一个 JSON 对象，首行为文件头，末行为记录总数，便于用文本工具查看和拆分</li>
+ *     <li>{@code .rplan}：紧凑的二进制格式，按块写出，每块带 CRC32 校验，同一块内同一目录的路径只写一次</li>
+ *     <li>其它：与预览中保存的完整列表相同的文本格式，只用于查看，不能再读入</li>
+ * </ul>
+ * 读写都是流式的，计划再大也不需要一次性读入内存；读取时按目录分组返回，同一目录下的文件对共用一个目录对象。
+ * 两种可读入的格式都以结束记录收尾，传输中被截断的计划文件会被识别出来，不完整的最后一组不会被执行。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class PlanFile {
+
+    /**
+     * 计划文件格式
+     */
+    enum Format {
+        TEXT, JSONL, BINARY
+    }
+
+    static final String JSONL_SUFFIX = ".jsonl";
+    static final String BINARY_SUFFIX = ".rplan";
+
+    // JSONL 文件头中的标识和版本
+    private static final String JSONL_MAGIC = "file-rename-tool";
+    private static final int VERSION = 1;
+    // 二进制文件头：魔数 "RPLN" + 版本
+    private static final int BINARY_MAGIC = 0x52504C4E;
+    // 二进制格式每块最多包含的文件对数量和字节数
+    private static final int CHUNK_PAIRS = 4096;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private PlanFile() {
+    }
+
+    /**
+     * 根据扩展名判断计划文件格式
+     *
+     * @param file 计划文件
+     * @return 格式
+     */
+    static Format formatOf(Path file) {
+        String name = String.valueOf(file.getFileName()).toLowerCase(Locale.ROOT);
+        if (name.endsWith(JSONL_SUFFIX)) {
+            return Format.JSONL;
+        }
+        return name.endsWith(BINARY_SUFFIX) ? Format.BINARY : Format.TEXT;
+    }
+
+    /**
+     * 将计划一次性写入文件
+     *
+     * @param file  计划文件，格式由扩展名决定
+     * @param pairs 重命名计划
+     * @throws IOException 写入失败时抛出
+     */
+    static void write(Path file, List<FileRenameTool.RenamePair> pairs) throws IOException {
+        try (Output output = openOutput(file)) {
+            output.write(pairs);
+        }
+    }
+
+    /**
+     * 打开计划输出，格式由扩展名决定
+     *
+     * @param file 计划文件
+     * @return 计划输出
+     * @throws IOException 文件无法创建时抛出
+     */
+    static Output openOutput(Path file) throws IOException {
+        switch (formatOf(file)) {
+            case JSONL:
+                return new JsonlOutput(file);
+            case BINARY:
+                return new BinaryOutput(file);
+            default:
+                return new TextOutput(file);
+        }
+    }
+
+    /**
+     * 打开计划输入，只支持 JSONL 和二进制格式
+     *
+     * @param file 计划文件
+     * @return 计划输入
+     * @throws IOException 文件无法打开、格式不支持或文件头无效时抛出
+     */
+    static Input openInput(Path file) throws IOException {
+        switch (formatOf(file)) {
+            case JSONL:
+                return new JsonlInput(file);
+            case BINARY:
+                return new BinaryInput(file);
+            default:
+                throw new IOException("只能读入 " + JSONL_SUFFIX + " 或 " + BINARY_SUFFIX + " 格式的计划文件: " + file);
+        }
+    }
+
+    /**
+     * 计划输出，不是线程安全的
+     */
+    abstract static class Output implements Closeable {
+        long count;
+
+        /**
+         * 追加一批文件对
+         *
+         * @param pairs 文件对
+         * @throws IOException 写入失败时抛出
+         */
+        abstract void write(List<FileRenameTool.RenamePair> pairs) throws IOException;
+    }
+
+    /**
+     * 文本格式：与预览中保存的完整列表相同
+     */
+    private static final class TextOutput extends Output {
+        private final Writer writer;
+
+        TextOutput(Path file) throws IOException {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        void write(List<FileRenameTool.RenamePair> pairs) throws IOException {
+            new PreviewPrinter(pairs, false).writePlan(writer);
+            count += pairs.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * JSONL 格式
+     */
+    private static final class JsonlOutput extends Output {
+        private final BufferedWriter writer;
+
+        JsonlOutput(Path file) throws IOException {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            writer.write("{\"plan\":\"" + JSONL_MAGIC + "\",\"version\":" + VERSION + "}\n");
+        }
+
+        @Override
+        void write(List<FileRenameTool.RenamePair> pairs) throws IOException {
+            Path lastDir = null;
+            String dir = null;
+            for (FileRenameTool.RenamePair pair : pairs) {
+                if (pair.dir != lastDir) {
+                    lastDir = pair.dir;
+                    dir = BatchMode.json(pair.dir.toAbsolutePath().toString());
+                }
+                writer.write("{\"dir\":");
+                writer.write(dir);
+                writer.write(",\"from\":");
+                writer.write(BatchMode.json(pair.oldName));
+                writer.write(",\"to\":");
+                writer.write(BatchMode.json(pair.newName));
+                writer.write("}\n");
+            }
+            count += pairs.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (Writer closing = writer) {
+                closing.write("{\"end\":true,\"pairs\":" + count + "}\n");
+            }
+        }
+    }
+
+    /**
+     * 二进制格式：文件头 + 若干块 + 结束记录
+     * 每块为 条数 + 长度 + 内容 + CRC32，内容中每个文件对为 目录是否变化 + [目录] + 原名 + 新名，
+     * 每块的第一个文件对总是写入目录，因此每块都能独立解析；结束记录为条数 0 + 文件对总数。
+     */
+    private static final class BinaryOutput extends Output {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        private final DataOutputStream chunkOut = new DataOutputStream(chunk);
+        private final CRC32 crc = new CRC32();
+        private int chunkPairs;
+        private Path lastDir;
+
+        BinaryOutput(Path file) throws IOException {
+            out = new DataOutputStream(Files.newOutputStream(file));
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        @Override
+        void write(List<FileRenameTool.RenamePair> pairs) throws IOException {
+            for (FileRenameTool.RenamePair pair : pairs) {
+                boolean dirChanged = pair.dir != lastDir;
+                chunkOut.writeBoolean(dirChanged);
+                if (dirChanged) {
+                    chunkOut.writeUTF(pair.dir.toAbsolutePath().toString());
+                    lastDir = pair.dir;
+                }
+                chunkOut.writeUTF(pair.oldName);
+                chunkOut.writeUTF(pair.newName);
+                if (++chunkPairs == CHUNK_PAIRS || chunk.size() >= CHUNK_BYTES) {
+                    flushChunk();
+                }
+            }
+            count += pairs.size();
+        }
+
+        private void flushChunk() throws IOException {
+            if (chunkPairs == 0) {
+                return;
+            }
+            chunkOut.flush();
+            byte[] bytes = chunk.toByteArray();
+            crc.reset();
+            crc.update(bytes);
+            out.writeInt(chunkPairs);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeInt((int) crc.getValue());
+            chunk.reset();
+            chunkPairs = 0;
+            lastDir = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (DataOutputStream closing = out) {
+                flushChunk();
+                closing.writeInt(0);
+                closing.writeLong(count);
+            }
+        }
+    }
+
+    /**
+     * 计划输入，按目录分组流式读取，不是线程安全的
+     */
+    abstract static class Input implements Closeable {
+        final Path file;
+        // 已读取的文件对数量
+        long count;
+        // 已读到但属于下一组的文件对
+        private FileRenameTool.RenamePair pending;
+        // 最近一个目录，相同的目录复用同一个对象
+        private String lastDirName;
+        private Path lastDir;
+
+        Input(Path file) {
+            this.file = file;
+        }
+
+        /**
+         * 读取下一组同一目录下连续的文件对
+         *
+         * @return 文件对，已读完时返回 null
+         * @throws IOException 读取失败、计划文件损坏或不完整时抛出
+         */
+        List<FileRenameTool.RenamePair> nextGroup() throws IOException {
+            FileRenameTool.RenamePair first = pending != null ? pending : next();
+            pending = null;
+            if (first == null) {
+                return null;
+            }
+            List<FileRenameTool.RenamePair> group = new ArrayList<>();
+            group.add(first);
+            FileRenameTool.RenamePair pair;
+            while ((pair = next()) != null) {
+                if (pair.dir != first.dir) {
+                    pending = pair;
+                    break;
+                }
+                group.add(pair);
+            }
+            return group;
+        }
+
+        /**
+         * 读取下一个文件对
+         *
+         * @return 文件对，读到结束记录时返回 null
+         * @throws IOException 读取失败、计划文件损坏或不完整时抛出
+         */
+        abstract FileRenameTool.RenamePair next() throws IOException;
+
+        FileRenameTool.RenamePair pair(String dir, String oldName, String newName) throws IOException {
+            if (!dir.equals(lastDirName)) {
+                try {
+                    lastDir = Paths.get(dir);
+                } catch (InvalidPathException e) {
+                    throw new IOException("计划文件中的目录在本机无效: " + dir, e);
+                }
+                lastDirName = dir;
+            }
+            count++;
+            checkName(oldName);
+            checkName(newName);
+            return new FileRenameTool.RenamePair(lastDir, oldName, newName);
+        }
+
+        /**
+         * 检查计划中的文件名只有一级，不能通过 ..、路径分隔符或盘符把文件移出所在目录
+         * 计划可能在其它机器上生成后分发执行，文件名不可信
+         *
+         * @param name 文件名
+         * @throws IOException 文件名无效时抛出
+         */
+        void checkName(String name) throws IOException {
+            boolean valid = !name.isEmpty() && !name.equals(".") && !name.equals("..")
+                    && name.indexOf('/') < 0 && name.indexOf('\\') < 0;
+            if (valid) {
+                try {
+                    Path path = lastDir.getFileSystem().getPath(name);
+                    valid = path.getRoot() == null && path.getNameCount() == 1
+                            && path.getFileName().toString().equals(name);
+                } catch (InvalidPathException e) {
+                    valid = false;
+                }
+            }
+            if (!valid) {
+                throw new IOException("计划文件已损坏: 第 " + count + " 条记录的文件名无效: " + name);
+            }
+        }
+
+        void checkTotal(long total) throws IOException {
+            if (total != count) {
+                throw new IOException("计划文件已损坏: 应有 " + total + " 条记录，实际读到 " + count + " 条");
+            }
+        }
+
+        IOException truncated() {
+            return new IOException("计划文件不完整（缺少结束记录），可能在写入或传输时被截断: " + file);
+        }
+    }
+
+    /**
+     * JSONL 格式的输入
+     */
+    private static final class JsonlInput extends Input {
+        private final BufferedReader reader;
+        private long lineNumber;
+        private boolean ended;
+
+        JsonlInput(Path file) throws IOException {
+            super(file);
+            reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            Map<String, String> header = readObject();
+            if (header == null || !JSONL_MAGIC.equals(header.get("plan"))) {
+                reader.close();
+                throw new IOException("不是重命名计划文件: " + file);
+            }
+            if (!String.valueOf(VERSION).equals(header.get("version"))) {
+                reader.close();
+                throw new IOException("不支持的计划文件版本 " + header.get("version") + ": " + file);
+            }
+        }
+
+        @Override
+        FileRenameTool.RenamePair next() throws IOException {
+            if (ended) {
+                return null;
+            }
+            Map<String, String> object = readObject();
+            if (object == null) {
+                throw truncated();
+            }
+            if (object.containsKey("end")) {
+                ended = true;
+                checkTotal(parseLong(object.get("pairs")));
+                return null;
+            }
+            String dir = object.get("dir");
+            String from = object.get("from");
+            String to = object.get("to");
+            if (dir == null || from == null || to == null) {
+                throw new IOException("计划文件第 " + lineNumber + " 行缺少 dir/from/to 字段");
+            }
+            return pair(dir, from, to);
+        }
+
+        private Map<String, String> readObject() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return null;
+                }
+            } while (line.trim().isEmpty());
+            try {
+                return parseObject(line);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("计划文件第 " + lineNumber + " 行格式错误: " + e.getMessage());
+            }
+        }
+
+        private long parseLong(String value) throws IOException {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IOException("计划文件第 " + lineNumber + " 行格式错误: pairs=" + value);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * 二进制格式的输入，每块读入后先校验 CRC32 再解析
+     */
+    private static final class BinaryInput extends Input {
+        private final DataInputStream in;
+        private final CRC32 crc = new CRC32();
+        private final ArrayDeque<FileRenameTool.RenamePair> buffer = new ArrayDeque<>();
+        private boolean ended;
+
+        BinaryInput(Path file) throws IOException {
+            super(file);
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            try {
+                if (in.readInt() != BINARY_MAGIC) {
+                    throw new IOException("不是重命名计划文件: " + file);
+                }
+                int version = in.readInt();
+                if (version != VERSION) {
+                    throw new IOException("不支持的计划文件版本 " + version + ": " + file);
+                }
+            } catch (IOException e) {
+                in.close();
+                throw e instanceof EOFException ? new IOException("不是重命名计划文件: " + file) : e;
+            }
+        }
+
+        @Override
+        FileRenameTool.RenamePair next() throws IOException {
+            if (buffer.isEmpty() && !ended) {
+                readChunk();
+            }
+            return buffer.poll();
+        }
+
+        private void readChunk() throws IOException {
+            try {
+                int pairs = in.readInt();
+                if (pairs == 0) {
+                    ended = true;
+                    checkTotal(in.readLong());
+                    return;
+                }
+                int length = in.readInt();
+                if (pairs < 0 || length < 0 || length > CHUNK_BYTES * 2) {
+                    throw new IOException("计划文件已损坏: 块长度无效");
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                crc.reset();
+                crc.update(bytes);
+                if (in.readInt() != (int) crc.getValue()) {
+                    throw new IOException("计划文件已损坏: 第 " + (count + 1) + " 条记录所在的块校验失败");
+                }
+                DataInputStream chunk = new DataInputStream(new ByteArrayInputStream(bytes));
+                String dir = null;
+                for (int i = 0; i < pairs; i++) {
+                    if (chunk.readBoolean()) {
+                        dir = chunk.readUTF();
+                    }
+                    if (dir == null) {
+                        throw new IOException("计划文件已损坏: 块中缺少目录");
+                    }
+                    buffer.add(pair(dir, chunk.readUTF(), chunk.readUTF()));
+                }
+            } catch (EOFException e) {
+                throw truncated();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * 解析只包含字符串、数字和布尔值的单层 JSON 对象
+     *
+     * @param text JSON 文本
+     * @return 字段名到值的映射，字符串值已解码，其它值为原始文本
+     * @throws IllegalArgumentException 格式错误时抛出
+     */
+    static Map<String, String> parseObject(String text) {
+        Map<String, String> object = new HashMap<>();
+        int[] pos = {skipSpaces(text, 0)};
+        expect(text, pos, '{');
+        if (peek(text, pos) == '}') {
+            pos[0]++;
+            return object;
+        }
+        while (true) {
+            String key = parseString(text, pos);
+            expect(text, pos, ':');
+            String value = peek(text, pos) == '"' ? parseString(text, pos) : parseLiteral(text, pos);
+            object.put(key, value);
+            char c = peek(text, pos);
+            pos[0]++;
+            if (c == '}') {
+                break;
+            }
+            if (c != ',') {
+                throw new IllegalArgumentException("位置 " + pos[0] + " 应为 , 或 }");
+            }
+        }
+        if (skipSpaces(text, pos[0]) != text.length()) {
+            throw new IllegalArgumentException("对象之后还有多余内容");
+        }
+        return object;
+    }
+
+    private static String parseString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder builder = new StringBuilder();
+        int i = pos[0];
+        while (true) {
+            if (i >= text.length()) {
+                throw new IllegalArgumentException("字符串没有结束");
+            }
+            char c = text.charAt(i++);
+            if (c == '"') {
+                break;
+            }
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if (i >= text.length()) {
+                throw new IllegalArgumentException("转义字符不完整");
+            }
+            char escaped = text.charAt(i++);
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    builder.append(escaped);
+                    break;
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 > text.length()) {
+                        throw new IllegalArgumentException("\\u 转义不完整");
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("\\u 转义无效");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知的转义字符 \\" + escaped);
+            }
+        }
+        pos[0] = i;
+        return builder.toString();
+    }
+
+    private static String parseLiteral(String text, int[] pos) {
+        int start = pos[0];
+        int i = start;
+        while (i < text.length() && ",} \t".indexOf(text.charAt(i)) < 0) {
+            i++;
+        }
+        if (i == start) {
+            throw new IllegalArgumentException("位置 " + start + " 缺少值");
+        }
+        pos[0] = i;
+        return text.substring(start, i);
+    }
+
+    private static void expect(String text, int[] pos, char c) {
+        if (peek(text, pos) != c) {
+            throw new IllegalArgumentException("位置 " + pos[0] + " 应为 " + c);
+        }
+        pos[0]++;
+    }
+
+    private static char peek(String text, int[] pos) {
+        pos[0] = skipSpaces(text, pos[0]);
+        return pos[0] < text.length() ? text.charAt(pos[0]) : '\0';
+    }
+
+    private static int skipSpaces(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,303 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分页预览输出
+ * 先输出汇总（文件数、目录数、最常见的变更类型），再按页输出明细，完整计划可以保存到文件。
+ * 所有输出先在缓冲区中拼接，达到阈值后整块写出，避免大量文件时逐行写控制台成为瓶颈。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class PreviewPrinter {
+
+    // 每页显示的条数，可通过系统属性 rename.previewPage 调整
+    static final int PAGE_SIZE = Math.max(1, Integer.getInteger("rename.previewPage", 50));
+
+    private static final int TOP_PATTERNS = 10;             // 汇总中显示的变更类型数量
+    private static final int MAX_TRACKED_PATTERNS = 10_000; // 最多统计的变更类型数量，超出部分归入"其它"
+    private static final int FLUSH_THRESHOLD = 64 * 1024;   // 缓冲区整块写出的阈值（字符数）
+    private static final String ARROW = "  ->  ";
+    private static final int COUNT_WIDTH = 8;               // 汇总中数量列的宽度
+
+    private final List<FileRenameTool.RenamePair> pairs;
+    // true 表示撤销预览：当前文件名 -> 原始文件名
+    private final boolean undo;
+    // 已显示的明细条数
+    private int shown;
+
+    /**
+     * 创建预览输出
+     *
+     * @param pairs 重命名列表
+     * @param undo  是否为撤销预览
+     */
+    PreviewPrinter(List<FileRenameTool.RenamePair> pairs, boolean undo) {
+        this.pairs = pairs;
+        this.undo = undo;
+    }
+
+    /**
+     * 输出汇总信息：文件数、涉及的目录数和最常见的变更类型
+     */
+    void printSummary() {
+        Set<Path> directories = new HashSet<>();
+        Map<String, int[]> patterns = new HashMap<>();
+        int untracked = 0;
+        for (FileRenameTool.RenamePair pair : pairs) {
+            directories.add(pair.dir);
+            String key = describeChange(from(pair), to(pair));
+            int[] count = patterns.get(key);
+            if (count != null) {
+                count[0]++;
+            } else if (patterns.size() < MAX_TRACKED_PATTERNS) {
+                patterns.put(key, new int[]{1});
+            } else {
+                untracked++;
+            }
+        }
+
+        List<Map.Entry<String, int[]>> top = new ArrayList<>(patterns.entrySet());
+        top.sort((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]));
+
+        StringBuilder buffer = new StringBuilder(1024);
+        buffer.append("共 ").append(pairs.size()).append(" 个文件，涉及 ")
+                .append(directories.size()).append(" 个目录。\n");
+        buffer.append("变更类型统计:\n");
+        int others = untracked;
+        for (int i = 0; i < top.size(); i++) {
+            int count = top.get(i).getValue()[0];
+            if (i < TOP_PATTERNS) {
+                appendCount(buffer, count).append(top.get(i).getKey()).append('\n');
+            } else {
+                others += count;
+            }
+        }
+        if (others > 0) {
+            appendCount(buffer, others).append("其它变更\n");
+        }
+        System.out.print(buffer);
+        System.out.flush();
+    }
+
+    /**
+     * 输出右对齐的数量列，效果同 {@code %8d  }
+     * 不经过 Formatter，首次预览时不必加载区域格式数据
+     *
+     * @param buffer 输出缓冲区
+     * @param count  数量
+     * @return 输出缓冲区
+     */
+    private static StringBuilder appendCount(StringBuilder buffer, int count) {
+        String digits = Integer.toString(count);
+        for (int i = digits.length(); i < COUNT_WIDTH; i++) {
+            buffer.append(' ');
+        }
+        return buffer.append(digits).append("  ");
+    }
+
+    /**
+     * 输出存在冲突、已从计划中移除的文件，最多显示一页
+     *
+     * @param conflicts 冲突列表
+     */
+    static void printConflicts(List<ConflictIndex.Conflict> conflicts) {
+        if (conflicts.isEmpty()) {
+            return;
+        }
+        StringBuilder buffer = new StringBuilder(1024);
+        buffer.append("\n警告: ").append(conflicts.size()).append(" 个文件存在命名冲突，已跳过:\n");
+        int limit = Math.min(PAGE_SIZE, conflicts.size());
+        for (int i = 0; i < limit; i++) {
+            ConflictIndex.Conflict conflict = conflicts.get(i);
+            buffer.append(conflict.pair.oldName).append(ARROW).append(conflict.pair.newName)
+                    .append("  (").append(conflict.reason).append(")\n");
+        }
+        if (limit < conflicts.size()) {
+            buffer.append("... 其余 ").append(conflicts.size() - limit).append(" 个冲突未显示\n");
+        }
+        System.out.print(buffer);
+        System.out.flush();
+    }
+
+    /**
+     * 输出重命名失败的文件：先按失败原因汇总，再显示一页明细
+     *
+     * @param pairs 已执行的文件对
+     */
+    static void printFailures(List<FileRenameTool.RenamePair> pairs) {
+        Map<RenameFailure, Integer> counts = RenameFailure.countAll(pairs);
+        if (counts.isEmpty()) {
+            return;
+        }
+        int total = 0;
+        StringBuilder buffer = new StringBuilder(1024);
+        for (Map.Entry<RenameFailure, Integer> entry : counts.entrySet()) {
+            appendCount(buffer, entry.getValue()).append(entry.getKey().description).append('\n');
+            total += entry.getValue();
+        }
+        buffer.insert(0, "\n警告: " + total + " 个文件重命名失败:\n");
+
+        int shown = 0;
+        for (FileRenameTool.RenamePair pair : pairs) {
+            if (pair.failure == null) {
+                continue;
+            }
+            if (shown++ == PAGE_SIZE) {
+                buffer.append("... 其余 ").append(total - PAGE_SIZE).append(" 个失败未显示\n");
+                break;
+            }
+            buffer.append(pair.oldName).append(ARROW).append(pair.newName)
+                    .append("  (").append(pair.failure.description);
+            if (pair.failureMessage != null) {
+                buffer.append(": ").append(pair.failureMessage);
+            }
+            buffer.append(")\n");
+        }
+        System.out.print(buffer);
+        System.out.flush();
+    }
+
+    /**
+     * 判断是否还有未显示的明细
+     *
+     * @return true 如果还有未显示的明细
+     */
+    boolean hasMore() {
+        return shown < pairs.size();
+    }
+
+    /**
+     * 获取未显示的明细条数
+     *
+     * @return 未显示的明细条数
+     */
+    int remaining() {
+        return pairs.size() - shown;
+    }
+
+    /**
+     * 输出下一页明细
+     */
+    void printNextPage() {
+        printUpTo(shown + PAGE_SIZE);
+    }
+
+    /**
+     * 输出全部剩余明细
+     */
+    void printAll() {
+        printUpTo(pairs.size());
+    }
+
+    private void printUpTo(int limit) {
+        int to = Math.min(limit, pairs.size());
+        try {
+            writeLines(System.out, shown, to, false);
+        } catch (IOException e) {
+            // PrintStream 不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+        System.out.flush();
+        shown = to;
+    }
+
+    /**
+     * 将完整计划（含完整路径）保存到文件，UTF-8 编码
+     *
+     * @param file 目标文件
+     * @throws IOException 写入失败时抛出
+     */
+    void writePlan(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeLines(writer, 0, pairs.size(), true);
+        }
+    }
+
+    /**
+     * 将完整计划（含完整路径）追加到已打开的输出中，用于批处理模式
+     *
+     * @param sink 输出目标
+     * @throws IOException 写入失败时抛出
+     */
+    void writePlan(Appendable sink) throws IOException {
+        writeLines(sink, 0, pairs.size(), true);
+    }
+
+    /**
+     * 将区间 [from, to) 内的明细按块写出
+     *
+     * @param sink     输出目标
+     * @param from     起始下标
+     * @param to       结束下标
+     * @param fullPath 是否输出完整路径
+     * @throws IOException 写入失败时抛出
+     */
+    private void writeLines(Appendable sink, int from, int to, boolean fullPath) throws IOException {
+        StringBuilder buffer = new StringBuilder(Math.min(FLUSH_THRESHOLD + 512, (to - from) * 64 + 16));
+        for (int i = from; i < to; i++) {
+            FileRenameTool.RenamePair pair = pairs.get(i);
+            if (fullPath) {
+                buffer.append(pair.dir).append(File.separatorChar);
+            }
+            buffer.append(from(pair)).append(ARROW).append(to(pair)).append('\n');
+            if (buffer.length() >= FLUSH_THRESHOLD) {
+                sink.append(buffer);
+                buffer.setLength(0);
+            }
+        }
+        if (buffer.length() > 0) {
+            sink.append(buffer);
+        }
+    }
+
+    private String from(FileRenameTool.RenamePair pair) {
+        return undo ? pair.currentName : pair.oldName;
+    }
+
+    private String to(FileRenameTool.RenamePair pair) {
+        return undo ? pair.oldName : pair.newName;
+    }
+
+    /**
+     * 根据新旧文件名的差异描述变更类型：去掉公共前缀和后缀后剩下的部分即为变更内容
+     *
+     * @param before 变更前的文件名
+     * @param after  变更后的文件名
+     * @return 变更类型描述
+     */
+    static String describeChange(String before, String after) {
+        int limit = Math.min(before.length(), after.length());
+        int prefix = 0;
+        while (prefix < limit && before.charAt(prefix) == after.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix)) {
+            suffix++;
+        }
+        String removed = before.substring(prefix, before.length() - suffix);
+        String added = after.substring(prefix, after.length() - suffix);
+        if (removed.isEmpty()) {
+            return "添加 \"" + added + "\"";
+        }
+        if (added.isEmpty()) {
+            return "删除 \"" + removed + "\"";
+        }
+        return "\"" + removed + "\" 替换为 \"" + added + "\"";
+    }
+}
@@ -0,0 +1,414 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 重命名执行引擎
+ * 将重命名任务按批次分发到线程池中并发执行，并限制同一目录下同时进行的重命名数量。
+ * 在 NFS/SMB 等网络文件系统上，每次重命名都是一次网络往返，并发执行可以显著缩短总耗时。
+ *
+ * <p>可通过系统属性进行配置：
+ * <ul>
+ *     <li>{@code rename.threads}：工作线程数，使用虚拟线程时为最大并发数，默认为 CPU 核数的 4 倍</li>
+ *     <li>{@code rename.virtual}：为 true 时使用虚拟线程（需要 JDK 21+，否则回退为平台线程）</li>
+ *     <li>{@code rename.perDirectory}：同一目录下的最大并发重命名数，默认与线程数相同</li>
+ *     <li>{@code rename.batchSize}：每个任务处理的文件数，默认 256</li>
+ * </ul>
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class RenameExecutor implements AutoCloseable {
+
+    // 少于该数量的文件直接在当前线程串行执行，避免线程池的额外开销
+    private static final int SERIAL_THRESHOLD = 64;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final ExecutorService pool;
+    private final FileMover mover;
+    private final int batchSize;
+    private final int perDirectoryLimit;
+    // 使用虚拟线程时限制同时执行的批次数（虚拟线程池本身不限制并发数），使用平台线程时为 null
+    private final Semaphore concurrency;
+    // 每个目录一个信号量，用于限制同一目录下的并发数
+    private final Map<Path, Semaphore> directoryPermits = new ConcurrentHashMap<>();
+
+    /**
+     * 创建执行引擎
+     *
+     * @param threads           工作线程数（使用虚拟线程时表示最大并发数）
+     * @param virtualThreads    是否使用虚拟线程
+     * @param perDirectoryLimit 同一目录下的最大并发重命名数
+     * @param batchSize         每个任务处理的文件数
+     * @param mover             重命名实现
+     */
+    RenameExecutor(int threads, boolean virtualThreads, int perDirectoryLimit, int batchSize, FileMover mover) {
+        if (threads < 1 || perDirectoryLimit < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("线程数、目录并发数和批次大小必须大于 0");
+        }
+        ExecutorService virtualPool = virtualThreads ? newVirtualThreadPool() : null;
+        this.pool = virtualPool != null ? virtualPool : Executors.newFixedThreadPool(threads, daemonThreadFactory());
+        this.concurrency = virtualPool != null ? new Semaphore(threads) : null;
+        this.perDirectoryLimit = perDirectoryLimit;
+        this.batchSize = batchSize;
+        this.mover = mover;
+    }
+
+    /**
+     * 根据系统属性创建执行引擎
+     *
+     * @return 执行引擎
+     */
+    static RenameExecutor fromSystemProperties() {
+        int threads = Integer.getInteger("rename.threads", Runtime.getRuntime().availableProcessors() * 4);
+        boolean virtualThreads = Boolean.getBoolean("rename.virtual");
+        int perDirectory = Integer.getInteger("rename.perDirectory", threads);
+        int batchSize = Integer.getInteger("rename.batchSize", DEFAULT_BATCH_SIZE);
+        return new RenameExecutor(threads, virtualThreads, perDirectory, batchSize, FileMover.fromSystemProperties());
+    }
+
+    /**
+     * 串行执行重命名（原有的逐个重命名逻辑）
+     *
+     * @param pairs 待重命名的文件对
+     * @return 重命名成功的文件对，顺序与输入一致
+     */
+    static List<FileRenameTool.RenamePair> executeSerial(List<FileRenameTool.RenamePair> pairs) {
+        return executeSerial(pairs, FileMover.fromSystemProperties());
+    }
+
+    private static List<FileRenameTool.RenamePair> executeSerial(List<FileRenameTool.RenamePair> pairs,
+                                                                 FileMover mover) {
+        List<FileRenameTool.RenamePair> successList = new ArrayList<>();
+        for (FileRenameTool.RenamePair pair : pairs) {
+            if (renameOne(pair, mover)) {
+                successList.add(pair);
+            }
+        }
+        return successList;
+    }
+
+    /**
+     * 执行重命名
+     * 计划中存在依赖（目标名称被另一个待重命名的文件占用）或重命名环时，按 {@link ConflictIndex} 安排的轮次依次执行，
+     * 否则全部文件一次并发执行
+     *
+     * @param pairs 待重命名的文件对
+     * @return 重命名成功的文件对，顺序与输入一致
+     */
+    List<FileRenameTool.RenamePair> execute(List<FileRenameTool.RenamePair> pairs) {
+        return execute(pairs, null);
+    }
+
+    /**
+     * 执行重命名，重命名环中的文件移到临时名称后通知 listener
+     *
+     * @param pairs    待重命名的文件对
+     * @param listener 临时名称的监听器，可为 null
+     * @return 重命名成功的文件对，顺序与输入一致
+     */
+    List<FileRenameTool.RenamePair> execute(List<FileRenameTool.RenamePair> pairs, ParkListener listener) {
+        long start = RenameMetrics.start();
+        int lastWave = 0;
+        boolean parking = false;
+        for (FileRenameTool.RenamePair pair : pairs) {
+            lastWave = Math.max(lastWave, pair.wave);
+            parking |= pair.parkName != null;
+        }
+        try {
+            if (lastWave == 0 && !parking) {
+                return executeWave(pairs);
+            }
+            return executeInWaves(pairs, lastWave, listener);
+        } finally {
+            RenameMetrics.record(RenameMetrics.Phase.EXECUTE, start);
+        }
+    }
+
+    /**
+     * 按轮次执行重命名
+     * 先将每个重命名环中的一个文件移到临时名称，再逐轮并发执行，同一轮内的文件互不依赖。
+     * 有 listener 时，开始逐轮执行前和临时文件恢复原名前各通知一次之后会（或已经）移到目标名称的临时文件，
+     * 通知失败时不再继续：开始前失败则全部放弃并恢复原名，恢复原名前失败则保留临时名称
+     *
+     * @param pairs    待重命名的文件对
+     * @param lastWave 最大轮次
+     * @param listener 临时名称的监听器，可为 null
+     * @return 重命名成功的文件对，顺序与输入一致
+     */
+    private List<FileRenameTool.RenamePair> executeInWaves(List<FileRenameTool.RenamePair> pairs, int lastWave,
+                                                           ParkListener listener) {
+        List<List<FileRenameTool.RenamePair>> waves = new ArrayList<>(lastWave + 1);
+        for (int i = 0; i <= lastWave; i++) {
+            waves.add(new ArrayList<>());
+        }
+        BitSet parked = new BitSet(pairs.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            FileRenameTool.RenamePair pair = pairs.get(i);
+            if (pair.parkName != null) {
+                try {
+                    mover.move(pair.currentPath(), pair.dir.resolve(pair.parkName));
+                    pair.currentName = pair.parkName;
+                    parked.set(i);
+                } catch (IOException | InvalidPathException e) {
+                    // 未能移到临时名称，环中其余文件会因依赖未移走而放弃
+                    fail(pair, e);
+                    continue;
+                }
+            }
+            waves.get(pair.wave).add(pair);
+        }
+
+        boolean started = true;
+        if (listener != null && !parked.isEmpty()) {
+            try {
+                listener.parked((BitSet) parked.clone());
+            } catch (IOException e) {
+                for (FileRenameTool.RenamePair pair : pairs) {
+                    if (pair.failure == null) {
+                        fail(pair, e);
+                    }
+                }
+                started = false;
+            }
+        }
+        if (started) {
+            for (List<FileRenameTool.RenamePair> wave : waves) {
+                executeWave(wave);
+            }
+        }
+
+        // 临时文件未能移到目标名称时，尽量恢复原名，避免留下临时名称
+        BitSet failed = new BitSet(pairs.size());
+        for (int i = parked.nextSetBit(0); i >= 0; i = parked.nextSetBit(i + 1)) {
+            if (pairs.get(i).failure != null) {
+                failed.set(i);
+            }
+        }
+        if (started && listener != null && !failed.isEmpty()) {
+            BitSet remaining = (BitSet) parked.clone();
+            remaining.andNot(failed);
+            try {
+                listener.parked(remaining);
+            } catch (IOException e) {
+                failed.clear();
+            }
+        }
+        for (int i = parked.nextSetBit(0); i >= 0; i = parked.nextSetBit(i + 1)) {
+            FileRenameTool.RenamePair pair = pairs.get(i);
+            if (pair.failure == null) {
+                continue;
+            }
+            if (failed.get(i)) {
+                try {
+                    mover.move(pair.currentPath(), pair.dir.resolve(pair.oldName));
+                    pair.currentName = pair.oldName;
+                    continue;
+                } catch (IOException e) {
+                    // 保留临时名称
+                }
+            }
+            pair.failureMessage = pair.failureMessage + "（文件保留为 " + pair.parkName + "）";
+        }
+
+        List<FileRenameTool.RenamePair> successList = new ArrayList<>();
+        for (FileRenameTool.RenamePair pair : pairs) {
+            if (pair.failure == null) {
+                successList.add(pair);
+            }
+        }
+        return successList;
+    }
+
+    /**
+     * 并发执行一组互不依赖的重命名
+     * 文件对按批次分发给工作线程，执行结束后按原始顺序汇总成功列表
+     *
+     * @param pairs 待重命名的文件对
+     * @return 重命名成功的文件对，顺序与输入一致
+     */
+    private List<FileRenameTool.RenamePair> executeWave(List<FileRenameTool.RenamePair> pairs) {
+        if (pairs.size() < SERIAL_THRESHOLD) {
+            return executeSerial(pairs, mover);
+        }
+
+        boolean[] succeeded = new boolean[pairs.size()];
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = 0; start < pairs.size(); start += batchSize) {
+            int from = start;
+            int to = Math.min(pairs.size(), start + batchSize);
+            futures.add(pool.submit(() -> runBatch(pairs, succeeded, from, to)));
+        }
+        awaitAll(futures);
+
+        // 按原始顺序收集成功的文件对，保证撤销记录与预览顺序一致
+        List<FileRenameTool.RenamePair> successList = new ArrayList<>();
+        for (int i = 0; i < succeeded.length; i++) {
+            if (succeeded[i]) {
+                successList.add(pairs.get(i));
+            }
+        }
+        return successList;
+    }
+
+    /**
+     * 执行一个批次的重命名
+     * 使用虚拟线程时先获取全局许可，所有目录合计最多 threads 个批次同时执行，目录信号量再限制单个目录
+     *
+     * @param pairs     全部文件对
+     * @param succeeded 成功标记数组，每个下标只会被一个批次写入
+     * @param from      批次起始下标（包含）
+     * @param to        批次结束下标（不包含）
+     */
+    private void runBatch(List<FileRenameTool.RenamePair> pairs, boolean[] succeeded, int from, int to) {
+        if (concurrency == null) {
+            renameRange(pairs, succeeded, from, to);
+            return;
+        }
+        concurrency.acquireUninterruptibly();
+        try {
+            renameRange(pairs, succeeded, from, to);
+        } finally {
+            concurrency.release();
+        }
+    }
+
+    private void renameRange(List<FileRenameTool.RenamePair> pairs, boolean[] succeeded, int from, int to) {
+        for (int i = from; i < to; i++) {
+            FileRenameTool.RenamePair pair = pairs.get(i);
+            Semaphore permits = directoryPermits.computeIfAbsent(pair.dir,
+                    dir -> new Semaphore(perDirectoryLimit));
+            permits.acquireUninterruptibly();
+            try {
+                succeeded[i] = renameOne(pair, mover);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * 重命名单个文件，成功后更新文件对中的文件对象，失败时记录失败原因
+     * 占用目标名称的文件未能移走时直接放弃，避免覆盖该文件
+     *
+     * @param pair  文件对
+     * @param mover 重命名实现
+     * @return true 如果重命名成功
+     */
+    private static boolean renameOne(FileRenameTool.RenamePair pair, FileMover mover) {
+        FileRenameTool.RenamePair blocker = pair.blocker;
+        if (blocker != null && blocker.currentName.equals(blocker.oldName)) {
+            pair.failure = RenameFailure.BLOCKED;
+            pair.failureMessage = blocker.oldName;
+            RenameMetrics.recordFailure(RenameFailure.BLOCKED);
+            return false;
+        }
+        long start = RenameMetrics.start();
+        try {
+            mover.move(pair.currentPath(), pair.dir.resolve(pair.newName));
+            pair.currentName = pair.newName;
+            pair.failure = null;
+            return true;
+        } catch (IOException | InvalidPathException e) {
+            fail(pair, e);
+            return false;
+        } finally {
+            RenameMetrics.recordRename(start, pair.failure);
+        }
+    }
+
+    /**
+     * 重命名环中的文件移到临时名称后的回调
+     */
+    interface ParkListener {
+        /**
+         * 记录临时名称的文件
+         *
+         * @param parked 之后会（或已经）从临时名称移到目标名称的文件对下标，对应 execute 的参数
+         * @throws IOException 记录失败时抛出
+         */
+        void parked(BitSet parked) throws IOException;
+    }
+
+    private static void fail(FileRenameTool.RenamePair pair, Exception e) {
+        pair.failure = RenameFailure.of(e);
+        pair.failureMessage = e.getMessage();
+    }
+
+    /**
+     * 等待所有批次执行完成
+     *
+     * @param futures 批次任务
+     */
+    private static void awaitAll(List<Future<?>> futures) {
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // 已提交的重命名必须全部完成后才能汇总结果，因此这里继续等待
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("重命名任务执行失败", e.getCause());
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 创建虚拟线程池
+     * 通过反射调用以保持对 JDK 17 的兼容；原生可执行文件中不做反射调用（也未登记反射配置），始终使用平台线程
+     *
+     * @return 虚拟线程池，如果当前 JDK 不支持或在原生可执行文件中运行则返回 null
+     */
+    private static ExecutorService newVirtualThreadPool() {
+        if (System.getProperty("org.graalvm.nativeimage.imagecode") != null) {
+            return null;
+        }
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 创建守护线程工厂，避免工作线程阻止程序退出
+     *
+     * @return 线程工厂
+     */
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "rename-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,87 @@
+package com.tiezhuzhu.filerename;
+
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 重命名失败原因
+ * 由 {@link FileMover} 抛出的异常归类得到，记录在每个失败的文件对上，便于按原因汇总和排查。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+enum RenameFailure {
+
+    TARGET_EXISTS("目标文件已存在", false),
+    SOURCE_MISSING("源文件不存在", false),
+    ACCESS_DENIED("没有权限", false),
+    INVALID_NAME("新文件名无效", false),
+    BLOCKED("目标名称被未能移走的文件占用", false),
+    FILE_BUSY("文件正被其它程序使用", true),
+    IO_ERROR("I/O 错误", true);
+
+    // 显示给用户的说明
+    final String description;
+    // 是否为暂时性错误，暂时性错误会按退避间隔重试
+    final boolean transientError;
+
+    RenameFailure(String description, boolean transientError) {
+        this.description = description;
+        this.transientError = transientError;
+    }
+
+    /**
+     * 根据异常类型归类失败原因
+     *
+     * @param e 重命名时抛出的异常
+     * @return 失败原因
+     */
+    static RenameFailure of(Exception e) {
+        if (e instanceof FileAlreadyExistsException) {
+            return TARGET_EXISTS;
+        }
+        if (e instanceof NoSuchFileException) {
+            return SOURCE_MISSING;
+        }
+        if (e instanceof AccessDeniedException) {
+            return ACCESS_DENIED;
+        }
+        if (e instanceof InvalidPathException) {
+            return INVALID_NAME;
+        }
+        if (e instanceof FileSystemException) {
+            String reason = ((FileSystemException) e).getReason();
+            if (reason != null) {
+                reason = reason.toLowerCase(Locale.ROOT);
+                // Windows: "being used by another process"，Linux: "Device or resource busy"
+                if (reason.contains("another process") || reason.contains("busy")) {
+                    return FILE_BUSY;
+                }
+            }
+        }
+        return IO_ERROR;
+    }
+
+    /**
+     * 按失败原因统计文件对
+     *
+     * @param pairs 已执行的文件对
+     * @return 每种失败原因的数量，没有失败时为空
+     */
+    static Map<RenameFailure, Integer> countAll(List<FileRenameTool.RenamePair> pairs) {
+        Map<RenameFailure, Integer> counts = new EnumMap<>(RenameFailure.class);
+        for (FileRenameTool.RenamePair pair : pairs) {
+            if (pair.failure != null) {
+                counts.merge(pair.failure, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+}
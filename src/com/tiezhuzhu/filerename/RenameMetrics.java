@@ -0,0 +1,515 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+/**
+ * 运行指标
+ * 记录扫描、匹配、重命名各阶段的耗时和次数、单个文件的重命名耗时分布、吞吐量以及按原因统计的失败数，
+ * 用于定位慢速挂载点和性能回退。
+ *
+ * <p>默认关闭，此时所有记录方法都是空操作。可通过系统属性开启：
+ * <ul>
+ *     <li>{@code rename.metricsFile}：运行结束时将指标写入该文件，以 {@code .json} 结尾时为 JSON，
+ *     否则为 Prometheus 文本格式（可直接交给 node_exporter 的 textfile 采集器）</li>
+ *     <li>{@code rename.jmx}：为 true 时注册 MBean {@code com.tiezhuzhu.filerename:type=RenameMetrics}，
+ *     可用 JConsole 等工具实时查看</li>
+ * </ul>
+ * 扫描是并行进行的，各阶段耗时为所有线程的累计值，可能大于实际经过的时间。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class RenameMetrics {
+
+    private static final String FILE = System.getProperty("rename.metricsFile");
+    private static final boolean JMX = Boolean.getBoolean("rename.jmx");
+    static final boolean ENABLED = (FILE != null && !FILE.trim().isEmpty()) || JMX;
+
+    private static final String PREFIX = "file_rename_";
+    private static final String OBJECT_NAME = "com.tiezhuzhu.filerename:type=RenameMetrics";
+
+    /**
+     * 计时的阶段
+     */
+    enum Stage {
+        LIST("list"),          // 读取目录项
+        STAT("stat"),          // 读取文件属性
+        FILTER("filter"),      // 排除系统文件和已处理过的文件
+        MATCH("match"),        // 应用规则生成新文件名
+        CONTENT("content"),    // 读取文件内容并应用规则（模式10-11）
+        SORT("sort"),          // 按顺序编号前排序（模式12）
+        RESOLVE("resolve"),    // 冲突检测
+        JOURNAL("journal"),    // 写撤销日志
+        RENAME("rename");      // 重命名（含重试）
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * 计时的整体阶段（经过时间）
+     */
+    enum Phase {
+        PLAN("plan"),          // 生成计划
+        EXECUTE("execute");    // 执行重命名
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    // 单个文件重命名耗时分布的上界（纳秒）
+    private static final long[] LATENCY_BOUNDS = {
+            10_000, 50_000, 100_000, 500_000,
+            1_000_000, 5_000_000, 10_000_000, 50_000_000,
+            100_000_000, 500_000_000, 1_000_000_000, 5_000_000_000L
+    };
+
+    private static final LongAdder[] STAGE_NANOS = adders(Stage.values().length);
+    private static final LongAdder[] STAGE_CALLS = adders(Stage.values().length);
+    private static final LongAdder[] PHASE_NANOS = adders(Phase.values().length);
+    // 最后一个桶对应 +Inf
+    private static final LongAdder[] LATENCY_BUCKETS = adders(LATENCY_BOUNDS.length + 1);
+    private static final LongAdder[] FAILURES = adders(RenameFailure.values().length);
+    private static final LongAdder DIRECTORIES = new LongAdder();
+    private static final LongAdder RENAMED = new LongAdder();
+    private static final LongAdder CONFLICTS = new LongAdder();
+
+    // 未开启时使用的空计时器
+    private static final Clock DISABLED = new Clock();
+
+    private RenameMetrics() {
+    }
+
+    /**
+     * 分段计时器，在一个线程中扫描单个目录时使用
+     * 每次调用 {@link #lap} 将距上一次调用经过的时间计入指定阶段，结束时一次性累加到全局指标，避免线程间竞争
+     */
+    static final class Clock {
+        private final long[] nanos = new long[Stage.values().length];
+        private final long[] calls = new long[Stage.values().length];
+        private long last;
+
+        private Clock() {
+        }
+
+        /**
+         * 将距上一次调用经过的时间计入指定阶段
+         *
+         * @param stage 阶段
+         */
+        void lap(Stage stage) {
+            if (!ENABLED) {
+                return;
+            }
+            long now = System.nanoTime();
+            nanos[stage.ordinal()] += now - last;
+            calls[stage.ordinal()]++;
+            last = now;
+        }
+
+        /**
+         * 结束计时，累加到全局指标
+         */
+        void finish() {
+            if (!ENABLED) {
+                return;
+            }
+            for (int i = 0; i < nanos.length; i++) {
+                if (calls[i] > 0) {
+                    STAGE_NANOS[i].add(nanos[i]);
+                    STAGE_CALLS[i].add(calls[i]);
+                }
+            }
+            DIRECTORIES.increment();
+        }
+    }
+
+    /**
+     * 开始扫描一个目录，返回分段计时器
+     *
+     * @return 分段计时器，未开启时返回空计时器
+     */
+    static Clock startDirectory() {
+        if (!ENABLED) {
+            return DISABLED;
+        }
+        Clock clock = new Clock();
+        clock.last = System.nanoTime();
+        return clock;
+    }
+
+    /**
+     * 获取计时起点
+     *
+     * @return 当前时间（纳秒），未开启时返回 0
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 记录一次阶段耗时
+     *
+     * @param stage     阶段
+     * @param startNanos {@link #start()} 返回的起点
+     */
+    static void record(Stage stage, long startNanos) {
+        if (ENABLED) {
+            STAGE_NANOS[stage.ordinal()].add(System.nanoTime() - startNanos);
+            STAGE_CALLS[stage.ordinal()].increment();
+        }
+    }
+
+    /**
+     * 记录一次整体阶段的经过时间
+     *
+     * @param phase      整体阶段
+     * @param startNanos {@link #start()} 返回的起点
+     */
+    static void record(Phase phase, long startNanos) {
+        if (ENABLED) {
+            PHASE_NANOS[phase.ordinal()].add(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * 记录单个文件的重命名结果和耗时
+     *
+     * @param startNanos {@link #start()} 返回的起点
+     * @param failure    失败原因，成功时为 null
+     */
+    static void recordRename(long startNanos, RenameFailure failure) {
+        if (!ENABLED) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        STAGE_NANOS[Stage.RENAME.ordinal()].add(elapsed);
+        STAGE_CALLS[Stage.RENAME.ordinal()].increment();
+        int bucket = 0;
+        while (bucket < LATENCY_BOUNDS.length && elapsed > LATENCY_BOUNDS[bucket]) {
+            bucket++;
+        }
+        LATENCY_BUCKETS[bucket].increment();
+        if (failure == null) {
+            RENAMED.increment();
+        } else {
+            FAILURES[failure.ordinal()].increment();
+        }
+    }
+
+    /**
+     * 记录未执行重命名就已失败的文件（如占用目标名称的文件未能移走）
+     *
+     * @param failure 失败原因
+     */
+    static void recordFailure(RenameFailure failure) {
+        if (ENABLED) {
+            FAILURES[failure.ordinal()].increment();
+        }
+    }
+
+    /**
+     * 记录检测到的冲突数量
+     *
+     * @param count 冲突数量
+     */
+    static void recordConflicts(int count) {
+        if (ENABLED && count > 0) {
+            CONFLICTS.add(count);
+        }
+    }
+
+    /**
+     * 开启 JMX 时注册 MBean，重复调用无副作用
+     */
+    static synchronized void registerMBean() {
+        if (!JMX) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), name);
+            }
+        } catch (JMException e) {
+            System.out.println("警告: 指标 MBean 注册失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 配置了 {@code rename.metricsFile} 时将当前指标写入文件，失败时只提示
+     * 先写临时文件再原子替换，采集程序不会读到写了一半的文件
+     */
+    static void export() {
+        if (FILE == null || FILE.trim().isEmpty()) {
+            return;
+        }
+        Path file = Paths.get(FILE.trim());
+        boolean json = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json");
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = parent.resolve(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(json ? toJson(snapshot()) : toPrometheus(snapshot()));
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("警告: 指标文件写入失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 单个指标值
+     */
+    private static final class Sample {
+        final String name;        // 指标名（不含前缀）
+        final String type;        // counter / gauge / histogram
+        final String help;        // 说明
+        final String label;       // 标签名，没有标签时为 null
+        final String labelValue;  // 标签值
+        final double value;
+
+        Sample(String name, String type, String help, String label, String labelValue, double value) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.label = label;
+            this.labelValue = labelValue;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 读取当前全部指标
+     *
+     * @return 指标值，同名指标相邻排列
+     */
+    private static List<Sample> snapshot() {
+        List<Sample> samples = new ArrayList<>();
+        samples.add(new Sample("directories_scanned_total", "counter", "Directories listed while planning",
+                null, null, DIRECTORIES.sum()));
+        long entries = STAGE_CALLS[Stage.LIST.ordinal()].sum();
+        samples.add(new Sample("entries_scanned_total", "counter", "Directory entries read while planning",
+                null, null, entries));
+        samples.add(new Sample("files_renamed_total", "counter", "Files renamed successfully",
+                null, null, RENAMED.sum()));
+        samples.add(new Sample("conflicts_total", "counter", "Files skipped because of naming conflicts",
+                null, null, CONFLICTS.sum()));
+        for (RenameFailure failure : RenameFailure.values()) {
+            samples.add(new Sample("failures_total", "counter", "Failed renames by reason",
+                    "reason", failure.name(), FAILURES[failure.ordinal()].sum()));
+        }
+        for (Stage stage : Stage.values()) {
+            samples.add(new Sample("stage_seconds_total", "counter", "Time spent per stage, summed over threads",
+                    "stage", stage.label, seconds(STAGE_NANOS[stage.ordinal()].sum())));
+        }
+        for (Stage stage : Stage.values()) {
+            samples.add(new Sample("stage_calls_total", "counter", "Calls per stage",
+                    "stage", stage.label, STAGE_CALLS[stage.ordinal()].sum()));
+        }
+        for (Phase phase : Phase.values()) {
+            samples.add(new Sample("phase_seconds_total", "counter", "Elapsed time per phase",
+                    "phase", phase.label, seconds(PHASE_NANOS[phase.ordinal()].sum())));
+        }
+        samples.add(new Sample("scan_entries_per_second", "gauge", "Directory entries planned per second",
+                null, null, rate(entries, PHASE_NANOS[Phase.PLAN.ordinal()].sum())));
+        samples.add(new Sample("rename_files_per_second", "gauge", "Renames executed per second",
+                null, null, rate(STAGE_CALLS[Stage.RENAME.ordinal()].sum(),
+                PHASE_NANOS[Phase.EXECUTE.ordinal()].sum())));
+
+        long cumulative = 0;
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            cumulative += LATENCY_BUCKETS[i].sum();
+            String bound = i < LATENCY_BOUNDS.length
+                    ? BigDecimal.valueOf(seconds(LATENCY_BOUNDS[i])).stripTrailingZeros().toPlainString() : "+Inf";
+            samples.add(new Sample("rename_latency_seconds_bucket", "histogram", "Per-file rename latency",
+                    "le", bound, cumulative));
+        }
+        samples.add(new Sample("rename_latency_seconds_sum", "histogram", null,
+                null, null, seconds(STAGE_NANOS[Stage.RENAME.ordinal()].sum())));
+        samples.add(new Sample("rename_latency_seconds_count", "histogram", null, null, null, cumulative));
+        return samples;
+    }
+
+    /**
+     * 按 Prometheus 文本格式输出
+     *
+     * @param samples 指标值
+     * @return 文本
+     */
+    private static String toPrometheus(List<Sample> samples) {
+        StringBuilder builder = new StringBuilder(4096);
+        String previous = null;
+        for (Sample sample : samples) {
+            if (sample.help != null && !sample.name.equals(previous)) {
+                String family = sample.type.equals("histogram") ? "rename_latency_seconds" : sample.name;
+                builder.append("# HELP ").append(PREFIX).append(family).append(' ').append(sample.help).append('\n');
+                builder.append("# TYPE ").append(PREFIX).append(family).append(' ').append(sample.type).append('\n');
+            }
+            previous = sample.name;
+            builder.append(PREFIX).append(sample.name);
+            if (sample.label != null) {
+                builder.append('{').append(sample.label).append("=\"").append(sample.labelValue).append("\"}");
+            }
+            builder.append(' ').append(format(sample.value)).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 按 JSON 输出，带标签的指标输出为以标签值为键的对象
+     *
+     * @param samples 指标值
+     * @return JSON 文本
+     */
+    private static String toJson(List<Sample> samples) {
+        Map<String, Object> root = new LinkedHashMap<>();
+        for (Sample sample : samples) {
+            if (sample.label == null) {
+                root.put(sample.name, sample.value);
+            } else {
+                @SuppressWarnings("unchecked")
+                Map<String, Double> group = (Map<String, Double>) root.computeIfAbsent(sample.name,
+                        k -> new LinkedHashMap<String, Double>());
+                group.put(sample.labelValue, sample.value);
+            }
+        }
+        StringBuilder builder = new StringBuilder(4096).append('{');
+        for (Map.Entry<String, Object> entry : root.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append('\n').append("  ").append(BatchMode.json(entry.getKey())).append(": ");
+            if (entry.getValue() instanceof Map) {
+                builder.append('{');
+                boolean first = true;
+                for (Map.Entry<?, ?> item : ((Map<?, ?>) entry.getValue()).entrySet()) {
+                    builder.append(first ? "" : ", ").append(BatchMode.json(item.getKey().toString()))
+                            .append(": ").append(format((Double) item.getValue()));
+                    first = false;
+                }
+                builder.append('}');
+            } else {
+                builder.append(format((Double) entry.getValue()));
+            }
+        }
+        return builder.append("\n}\n").toString();
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static double rate(long count, long nanos) {
+        return nanos == 0 ? 0 : count / seconds(nanos);
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * 以 JMX 只读属性暴露全部指标，属性名为指标名加标签值，如 {@code stage_seconds_total.rename}
+     */
+    private static final class MetricsMBean implements DynamicMBean {
+
+        private static Map<String, Double> attributes() {
+            Map<String, Double> attributes = new LinkedHashMap<>();
+            for (Sample sample : snapshot()) {
+                attributes.put(sample.label == null ? sample.name : sample.name + "." + sample.labelValue,
+                        sample.value);
+            }
+            return attributes;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Double value = attributes().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("指标为只读属性: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            Map<String, Double> attributes = attributes();
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                Double value = attributes.get(name);
+                if (value != null) {
+                    list.add(new Attribute(name, value));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for (Sample sample : snapshot()) {
+                String name = sample.label == null ? sample.name : sample.name + "." + sample.labelValue;
+                infos.add(new MBeanAttributeInfo(name, Double.class.getName(), sample.help == null ? name : sample.help,
+                        true, false, false));
+            }
+            return new MBeanInfo(getClass().getName(), "批量重命名运行指标",
+                    infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
@@ -0,0 +1,864 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 重命名规则
+ * 每种模式对应一个规则对象，参数在创建时一次性准备好，之后对每个文件名只做定位和改写。
+ * 定位阶段只计算匹配区间 [start, end)，不产生中间子串，也不依赖异常处理越界等情况；
+ * 改写阶段直接按区间在复用的 {@link StringBuilder} 中拼接新文件名，替换内容按字面处理。
+ *
+ * <p>规则对象内部复用 {@link StringBuilder}、词典匹配器等状态，不是线程安全的，多线程使用时每个线程需通过 {@link #copy()} 创建独立的实例。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+abstract class RenameRule {
+
+    final int mode;          // 模式编号（1-12）
+    final String replaceTo;  // 替换内容（模式2-9）
+
+    // 最近一次定位到的匹配区间
+    int start;
+    int end;
+
+    // 拼接新文件名的缓冲区，在多个文件之间复用
+    final StringBuilder builder = new StringBuilder(64);
+
+    // 模式和参数的文本表示，用于识别相同的规则链（如增量快照）
+    String signature = "";
+
+    RenameRule(int mode, String replaceTo) {
+        this.mode = mode;
+        this.replaceTo = replaceTo;
+    }
+
+    /**
+     * 根据模式和参数创建规则
+     *
+     * @param mode      模式编号（1-12）
+     * @param x         参数 X（定位字符，用于模式5-8；词典文件，用于模式9；校验算法，用于模式10；排序方式，用于模式12）
+     * @param n         参数 N（位数/长度，用于模式2-4, 7-8；动作，用于模式9；校验值位数，用于模式10；编号位数，用于模式12）
+     * @param pos       参数 Pos（起始位置，用于模式4；起始编号，用于模式12）
+     * @param replaceTo 替换内容（用于模式2-9）
+     * @return 规则对象
+     * @throws IllegalArgumentException 模式未知、动作、校验算法或排序方式无效、词典文件无法读取时抛出
+     */
+    static RenameRule create(int mode, String x, int n, int pos, String replaceTo) {
+        RenameRule rule;
+        switch (mode) {
+            case 1:
+                rule = new YearPrefixRule();
+                break;
+            case 2:
+                rule = new FirstCharsRule(n, replaceTo);
+                break;
+            case 3:
+                rule = new LastCharsRule(n, replaceTo);
+                break;
+            case 4:
+                rule = new RangeRule(pos, n, replaceTo);
+                break;
+            case 5:
+                rule = new AfterMarkerRule(x, replaceTo);
+                break;
+            case 6:
+                rule = new BeforeMarkerRule(x, replaceTo);
+                break;
+            case 7:
+                rule = new AfterMarkerCharsRule(x, n, replaceTo);
+                break;
+            case 8:
+                rule = new BeforeMarkerCharsRule(x, n, replaceTo);
+                break;
+            case 9:
+                rule = new DictionaryRule(loadDictionary(x), n, replaceTo);
+                break;
+            case 10:
+                rule = new ContentHashRule(x, n);
+                break;
+            case 11:
+                rule = new MetadataYearRule();
+                break;
+            case 12:
+                rule = new SequenceRule(x, n, pos);
+                break;
+            default:
+                throw new IllegalArgumentException("未知模式: " + mode);
+        }
+        rule.signature = mode + "\u0000" + x + "\u0000" + n + "\u0000" + pos + "\u0000" + replaceTo;
+        if (rule instanceof DictionaryRule) {
+            // 词典文件内容变化后视为不同的规则
+            rule.signature += "\u0000" + Long.toHexString(((DictionaryRule) rule).automaton.fingerprint);
+        }
+        return rule;
+    }
+
+    /**
+     * 读取词典文件并编译为自动机
+     *
+     * @param file 词典文件路径
+     * @return 自动机
+     */
+    private static TokenAutomaton loadDictionary(String file) {
+        try {
+            return TokenAutomaton.load(Paths.get(file));
+        } catch (IOException | InvalidPathException e) {
+            throw new IllegalArgumentException("无法读取词典文件 " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 生成规则链的文本表示，模式和参数都相同的规则链得到相同的结果
+     *
+     * @param rules 规则链
+     * @return 规则链的文本表示
+     */
+    static String signature(List<RenameRule> rules) {
+        StringBuilder builder = new StringBuilder();
+        for (RenameRule rule : rules) {
+            builder.append(rule.signature).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 依次应用多条规则，前一条规则的结果作为后一条规则的输入
+     * 不读取文件内容，规则链中读取文件内容的规则（模式10-11）不生效
+     *
+     * @param rules 规则链
+     * @param name  原始文件名
+     * @return 新文件名，如果没有任何规则生效或结果与原名相同则返回 null
+     */
+    static String applyAll(List<RenameRule> rules, String name) {
+        return applyAll(rules, name, null);
+    }
+
+    /**
+     * 依次应用多条规则，读取文件内容的规则从 file 读取
+     *
+     * @param rules 规则链
+     * @param name  原始文件名
+     * @param file  文件，为 null 时读取文件内容的规则不生效
+     * @return 新文件名，如果没有任何规则生效或结果与原名相同则返回 null
+     */
+    static String applyAll(List<RenameRule> rules, String name, Path file) {
+        return applyAll(rules, name, file, -1, 0);
+    }
+
+    /**
+     * 依次应用多条规则，读取文件内容的规则从 file 读取，编号规则（模式12）使用 index 和 count
+     *
+     * @param rules 规则链
+     * @param name  原始文件名
+     * @param file  文件，为 null 时读取文件内容的规则不生效
+     * @param index 文件在排序结果中的位置，为负数时编号规则不生效
+     * @param count 参与编号的文件数
+     * @return 新文件名，如果没有任何规则生效或结果与原名相同则返回 null
+     */
+    static String applyAll(List<RenameRule> rules, String name, Path file, int index, int count) {
+        String current = name;
+        for (RenameRule rule : rules) {
+            if (rule instanceof ContentRule) {
+                ((ContentRule) rule).file = file;
+            } else if (rule instanceof SequenceRule) {
+                ((SequenceRule) rule).index = index;
+                ((SequenceRule) rule).count = count;
+            }
+            String renamed = rule.apply(current);
+            if (renamed != null) {
+                current = renamed;
+            }
+        }
+        return current.equals(name) ? null : current;
+    }
+
+    /**
+     * 判断规则链中是否有读取文件内容的规则
+     * 有时需要先确认是普通文件，再通过 {@link FileContent#applyAll} 并行读取内容和应用规则
+     *
+     * @param rules 规则链
+     * @return true 如果有读取文件内容的规则
+     */
+    static boolean readsContent(List<RenameRule> rules) {
+        for (RenameRule rule : rules) {
+            if (rule instanceof ContentRule) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 创建参数相同的新规则实例，供其它线程使用
+     *
+     * @return 新的规则实例
+     */
+    abstract RenameRule copy();
+
+    /**
+     * 依次复制规则链中的每条规则
+     *
+     * @param rules 规则链
+     * @return 新的规则链
+     */
+    static List<RenameRule> copyAll(List<RenameRule> rules) {
+        List<RenameRule> copies = new ArrayList<>(rules.size());
+        for (RenameRule rule : rules) {
+            RenameRule copy = rule.copy();
+            copy.signature = rule.signature;
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * 在文件名中定位匹配区间，结果写入 start/end
+     *
+     * @param name 文件名
+     * @return true 如果定位成功
+     */
+    abstract boolean locate(String name);
+
+    /**
+     * 对文件名应用规则
+     *
+     * @param name 文件名
+     * @return 新文件名，如果未匹配到内容或无需重命名则返回 null
+     */
+    String apply(String name) {
+        if (!locate(name) || start >= end) {
+            return null;
+        }
+        builder.setLength(0);
+        return rewrite(name);
+    }
+
+    /**
+     * 根据匹配区间生成新文件名，调用前 builder 已清空
+     *
+     * @param name 文件名
+     * @return 新文件名，如果不需要重命名则返回 null
+     */
+    String rewrite(String name) {
+        // 模式2-8：将匹配区间替换为替换内容
+        return builder.append(name, 0, start)
+                .append(replaceTo)
+                .append(name, end, name.length())
+                .toString();
+    }
+
+    /**
+     * 计算 from + length 并截断到 limit，避免整数溢出
+     *
+     * @param from   起始位置
+     * @param length 长度
+     * @param limit  上限
+     * @return 结束位置
+     */
+    static int clampedEnd(int from, int length, int limit) {
+        return length > limit - from ? limit : from + length;
+    }
+
+    /**
+     * 查找文件名中第一个年份（1900-2099），结果与正则 {@code 19\\d{2}|20\\d{2}} 相同
+     * 逐字符比较，不编译正则，首次使用模式1时也不会引导正则内部用到的 lambda
+     *
+     * @param name 文件名
+     * @return 年份的起始位置，没有年份时返回 -1
+     */
+    static int indexOfYear(String name) {
+        for (int i = 0, last = name.length() - 4; i <= last; i++) {
+            char c = name.charAt(i);
+            char d = name.charAt(i + 1);
+            if ((c == '1' && d == '9' || c == '2' && d == '0')
+                    && isDigit(name.charAt(i + 2)) && isDigit(name.charAt(i + 3))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * 模式1：匹配年份 (19xx/20xx) -> 前置 [年份]
+     */
+    static final class YearPrefixRule extends RenameRule {
+        YearPrefixRule() {
+            super(1, "");
+        }
+
+        @Override
+        RenameRule copy() {
+            return new YearPrefixRule();
+        }
+
+        @Override
+        boolean locate(String name) {
+            int index = indexOfYear(name);
+            if (index < 0) {
+                return false;
+            }
+            start = index;
+            end = index + 4;
+            return true;
+        }
+
+        @Override
+        String rewrite(String name) {
+            int length = end - start;
+            // 已经包含 [年份] 前缀，跳过
+            if (name.length() > length + 1 && name.charAt(0) == '['
+                    && name.regionMatches(1, name, start, length) && name.charAt(length + 1) == ']') {
+                return null;
+            }
+            return builder.append('[')
+                    .append(name, start, end)
+                    .append(']')
+                    .append(name)
+                    .toString();
+        }
+    }
+
+    /**
+     * 模式2：匹配前 N 位字符（文件名长度不足 N 时匹配全部）
+     */
+    static final class FirstCharsRule extends RenameRule {
+        private final int n;
+
+        FirstCharsRule(int n, String replaceTo) {
+            super(2, replaceTo);
+            this.n = n;
+        }
+
+        @Override
+        RenameRule copy() {
+            return new FirstCharsRule(n, replaceTo);
+        }
+
+        @Override
+        boolean locate(String name) {
+            if (n < 0) {
+                return false;
+            }
+            start = 0;
+            end = Math.min(name.length(), n);
+            return true;
+        }
+    }
+
+    /**
+     * 模式3：匹配后 N 位字符（不含扩展名）
+     */
+    static final class LastCharsRule extends RenameRule {
+        private final int n;
+
+        LastCharsRule(int n, String replaceTo) {
+            super(3, replaceTo);
+            this.n = n;
+        }
+
+        @Override
+        RenameRule copy() {
+            return new LastCharsRule(n, replaceTo);
+        }
+
+        @Override
+        boolean locate(String name) {
+            if (n < 0) {
+                return false;
+            }
+            int dot = name.lastIndexOf('.');
+            end = dot >= 0 ? dot : name.length();
+            start = Math.max(0, end - n);
+            return true;
+        }
+    }
+
+    /**
+     * 模式4：匹配从位置 X 开始的 N 位字符
+     */
+    static final class RangeRule extends RenameRule {
+        private final int pos;
+        private final int n;
+
+        RangeRule(int pos, int n, String replaceTo) {
+            super(4, replaceTo);
+            this.pos = pos;
+            this.n = n;
+        }
+
+        @Override
+        RenameRule copy() {
+            return new RangeRule(pos, n, replaceTo);
+        }
+
+        @Override
+        boolean locate(String name) {
+            if (pos < 0 || n < 0 || pos > name.length()) {
+                return false;
+            }
+            start = pos;
+            end = clampedEnd(pos, n, name.length());
+            return true;
+        }
+    }
+
+    /**
+     * 模式5：匹配指定字符 X 之后的全部内容
+     */
+    static final class AfterMarkerRule extends RenameRule {
+        private final String x;
+
+        AfterMarkerRule(String x, String replaceTo) {
+            super(5, replaceTo);
+            this.x = x;
+        }
+
+        @Override
+        RenameRule copy() {
+            return new AfterMarkerRule(x, replaceTo);
+        }
+
+        @Override
+        boolean locate(String name) {
+            int index = name.indexOf(x);
+            if (index < 0) {
+                return false;
+            }
+            start = index + x.length();
+            end = name.length();
+            return true;
+        }
+    }
+
+    /**
+     * 模式6：匹配指定字符 X 之前的全部内容
+     */
+    static final class BeforeMarkerRule extends RenameRule {
+        private final String x;
+
+        BeforeMarkerRule(String x, String replaceTo) {
+            super(6, replaceTo);
+            this.x = x;
+        }
+
+        @Override
+        RenameRule copy() {
+            return new BeforeMarkerRule(x, replaceTo);
+        }
+
+        @Override
+        boolean locate(String name) {
+            int index = name.indexOf(x);
+            if (index < 0) {
+                return false;
+            }
+            start = 0;
+            end = index;
+            return true;
+        }
+    }
+
+    /**
+     * 模式7：匹配指定字符 X 之后 N 位字符
+     */
+    static final class AfterMarkerCharsRule extends RenameRule {
+        private final String x;
+        private final int n;
+
+        AfterMarkerCharsRule(String x, int n, String replaceTo) {
+            super(7, replaceTo);
+            this.x = x;
+            this.n = n;
+        }
+
+        @Override
+        RenameRule copy() {
+            return new AfterMarkerCharsRule(x, n, replaceTo);
+        }
+
+        @Override
+        boolean locate(String name) {
+            int index = n < 0 ? -1 : name.indexOf(x);
+            if (index < 0) {
+                return false;
+            }
+            start = index + x.length();
+            end = clampedEnd(start, n, name.length());
+            return true;
+        }
+    }
+
+    /**
+     * 模式8：匹配指定字符 X 之前 N 位字符
+     */
+    static final class BeforeMarkerCharsRule extends RenameRule {
+        private final String x;
+        private final int n;
+
+        BeforeMarkerCharsRule(String x, int n, String replaceTo) {
+            super(8, replaceTo);
+            this.x = x;
+            this.n = n;
+        }
+
+        @Override
+        RenameRule copy() {
+            return new BeforeMarkerCharsRule(x, n, replaceTo);
+        }
+
+        @Override
+        boolean locate(String name) {
+            int index = n < 0 ? -1 : name.indexOf(x);
+            if (index < 0) {
+                return false;
+            }
+            start = Math.max(0, index - n);
+            end = index;
+            return true;
+        }
+    }
+
+    /**
+     * 模式9：按词典匹配，一次遍历找出文件名（含扩展名）中出现的全部词条
+     * 动作 1 为前置 [词条]，2 为将每个词条替换为替换内容，3 为删除每个词条。
+     * 前置时，开头已有的 [..] 标签中的内容不参与匹配，已作为标签出现的词条不会重复前置。
+     */
+    static final class DictionaryRule extends RenameRule {
+        static final int PREFIX = 1;
+        static final int REPLACE = 2;
+        static final int STRIP = 3;
+
+        // 自动机不可变，复制规则时共享
+        final TokenAutomaton automaton;
+        private final int action;
+        private final TokenAutomaton.Matcher matcher;
+        private int count;
+
+        DictionaryRule(TokenAutomaton automaton, int action, String replaceTo) {
+            super(9, replaceTo);
+            if (action < PREFIX || action > STRIP) {
+                throw new IllegalArgumentException("词典动作必须是 1（前置）、2（替换）或 3（删除）: " + action);
+            }
+            this.automaton = automaton;
+            this.action = action;
+            this.matcher = automaton.matcher();
+        }
+
+        @Override
+        RenameRule copy() {
+            return new DictionaryRule(automaton, action, replaceTo);
+        }
+
+        @Override
+        boolean locate(String name) {
+            count = matcher.find(name);
+            if (count == 0) {
+                return false;
+            }
+            start = matcher.start(0);
+            end = matcher.end(0);
+            return true;
+        }
+
+        @Override
+        String rewrite(String name) {
+            if (action == PREFIX) {
+                return prefix(name);
+            }
+            String replacement = action == STRIP ? "" : replaceTo;
+            int last = 0;
+            for (int i = 0; i < count; i++) {
+                builder.append(name, last, matcher.start(i)).append(replacement);
+                last = matcher.end(i);
+            }
+            return builder.append(name, last, name.length()).toString();
+        }
+
+        private String prefix(String name) {
+            int tagsEnd = leadingTagsEnd(name);
+            for (int i = 0; i < count; i++) {
+                if (matcher.start(i) < tagsEnd) {
+                    continue;
+                }
+                String token = automaton.token(matcher.token(i));
+                if (!hasTag(name, tagsEnd, token) && !hasTag(builder, builder.length(), token)) {
+                    builder.append('[').append(token).append(']');
+                }
+            }
+            if (builder.length() == 0) {
+                return null;
+            }
+            return builder.append(name).toString();
+        }
+
+        /**
+         * 文件名开头连续的 [..] 标签的结束位置
+         *
+         * @param name 文件名
+         * @return 标签结束位置，没有标签时为 0
+         */
+        private static int leadingTagsEnd(String name) {
+            int index = 0;
+            while (index < name.length() && name.charAt(index) == '[') {
+                int close = name.indexOf(']', index + 1);
+                if (close < 0) {
+                    break;
+                }
+                index = close + 1;
+            }
+            return index;
+        }
+
+        /**
+         * 判断 [0, limit) 范围内是否已有 [词条] 标签
+         *
+         * @param text  文本
+         * @param limit 范围结束位置
+         * @param token 词条
+         * @return true 如果已有该标签
+         */
+        private static boolean hasTag(CharSequence text, int limit, String token) {
+            int length = token.length();
+            for (int i = 0; i + length + 1 < limit; i++) {
+                if (text.charAt(i) == '[' && text.charAt(i + length + 1) == ']' && regionEquals(text, i + 1, token)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean regionEquals(CharSequence text, int offset, String token) {
+            for (int i = 0; i < token.length(); i++) {
+                if (text.charAt(offset + i) != token.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 读取文件内容的规则：根据文件内容前置 [标签]
+     * 当前文件由 {@link #applyAll(List, String, Path)} 设置，为 null 时不生效；文件名已带有同类标签时不读取文件
+     */
+    abstract static class ContentRule extends RenameRule {
+        // 当前文件
+        Path file;
+        // 本次要前置的标签
+        String tag;
+
+        ContentRule(int mode) {
+            super(mode, "");
+        }
+
+        @Override
+        String rewrite(String name) {
+            return builder.append('[').append(tag).append(']').append(name).toString();
+        }
+    }
+
+    /**
+     * 模式10：计算文件内容的校验值 -> 前置 [校验值的前 N 位]
+     * 文件名开头已有 N 位十六进制标签时跳过
+     */
+    static final class ContentHashRule extends ContentRule {
+        final String algorithm;
+        private final int digits;
+
+        ContentHashRule(String algorithm, int digits) {
+            super(10);
+            this.algorithm = FileContent.algorithm(algorithm);
+            int maxDigits = FileContent.hexLength(this.algorithm);
+            this.digits = digits <= 0 ? Math.min(8, maxDigits) : Math.min(digits, maxDigits);
+        }
+
+        @Override
+        RenameRule copy() {
+            return new ContentHashRule(algorithm, digits);
+        }
+
+        @Override
+        boolean locate(String name) {
+            if (file == null || hasHexTag(name)) {
+                return false;
+            }
+            String value = FileContent.digest(file, algorithm);
+            if (value == null) {
+                return false;
+            }
+            tag = value.substring(0, digits);
+            start = 0;
+            end = name.length();
+            return true;
+        }
+
+        private boolean hasHexTag(String name) {
+            if (name.length() <= digits + 1 || name.charAt(0) != '[' || name.charAt(digits + 1) != ']') {
+                return false;
+            }
+            for (int i = 1; i <= digits; i++) {
+                if (Character.digit(name.charAt(i), 16) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 模式11：文件名中没有年份时，从文件元数据（EXIF、ID3、PDF、MP4）中读取日期 -> 前置 [年份]
+     * 文件名中已有年份时不读取文件，可与模式1组合为 1+11
+     */
+    static final class MetadataYearRule extends ContentRule {
+        MetadataYearRule() {
+            super(11);
+        }
+
+        @Override
+        RenameRule copy() {
+            return new MetadataYearRule();
+        }
+
+        @Override
+        boolean locate(String name) {
+            if (file == null || indexOfYear(name) >= 0) {
+                return false;
+            }
+            int year = FileContent.metadataYear(file);
+            if (year == 0) {
+                return false;
+            }
+            tag = Integer.toString(year);
+            start = 0;
+            end = name.length();
+            return true;
+        }
+    }
+
+    /**
+     * 模式12：按文件名自然顺序、修改时间或文件大小排序后编号 -> 前置 001_
+     * 编号由规划阶段按 {@link FileSequence} 的排序结果通过 {@link #applyAll(List, String, Path, int, int)} 传入，
+     * 单独对一个文件名应用时不生效；文件名开头已有同样位数的编号时替换为新编号，重复执行不会叠加
+     */
+    static final class SequenceRule extends RenameRule {
+        static final int BY_NAME = 1;
+        static final int BY_MTIME = 2;
+        static final int BY_SIZE = 3;
+
+        final int order;            // 排序方式
+        final boolean descending;   // 是否倒序
+        private final String x;
+        private final int width;    // 编号位数，0 表示按文件数自动确定
+        private final int first;    // 起始编号
+
+        // 当前文件在排序结果中的位置和参与编号的文件数
+        int index = -1;
+        int count;
+
+        // 本次的编号位数和原有编号的结束位置
+        private int digits;
+        private int from;
+
+        SequenceRule(String x, int width, int first) {
+            super(12, "");
+            String value = x == null ? "" : x.trim();
+            this.descending = value.startsWith("-");
+            this.order = order(descending ? value.substring(1) : value);
+            if (width < 0) {
+                throw new IllegalArgumentException("编号位数不能为负数: " + width);
+            }
+            if (first < 0) {
+                throw new IllegalArgumentException("起始编号不能为负数: " + first);
+            }
+            this.x = x;
+            this.width = width;
+            this.first = first;
+        }
+
+        private static int order(String value) {
+            switch (value.toLowerCase()) {
+                case "":
+                case "1":
+                case "name":
+                    return BY_NAME;
+                case "2":
+                case "mtime":
+                    return BY_MTIME;
+                case "3":
+                case "size":
+                    return BY_SIZE;
+                default:
+                    throw new IllegalArgumentException("排序方式必须是 name、mtime 或 size（或 1-3），前加 - 为倒序: " + value);
+            }
+        }
+
+        @Override
+        RenameRule copy() {
+            return new SequenceRule(x, width, first);
+        }
+
+        /**
+         * 计算编号位数：指定了位数时使用指定值，否则取最大编号的位数，至少 3 位
+         *
+         * @param count 参与编号的文件数
+         * @return 编号位数
+         */
+        int digits(int count) {
+            if (width > 0) {
+                return width;
+            }
+            long last = (long) first + Math.max(count, 1) - 1;
+            return Math.max(3, Long.toString(last).length());
+        }
+
+        /**
+         * 文件名开头已有编号（digits 位数字加下划线）时返回编号之后的位置，否则返回 0
+         *
+         * @param name   文件名
+         * @param digits 编号位数
+         * @return 去掉原有编号后文件名的起始位置
+         */
+        static int numberedPrefix(String name, int digits) {
+            if (name.length() <= digits + 1 || name.charAt(digits) != '_') {
+                return 0;
+            }
+            for (int i = 0; i < digits; i++) {
+                if (!isDigit(name.charAt(i))) {
+                    return 0;
+                }
+            }
+            return digits + 1;
+        }
+
+        @Override
+        boolean locate(String name) {
+            if (index < 0) {
+                return false;
+            }
+            digits = digits(count);
+            from = numberedPrefix(name, digits);
+            start = 0;
+            end = name.length();
+            return true;
+        }
+
+        @Override
+        String rewrite(String name) {
+            String number = Long.toString((long) first + index);
+            for (int i = number.length(); i < digits; i++) {
+                builder.append('0');
+            }
+            return builder.append(number).append('_').append(name, from, name.length()).toString();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * 词典匹配自动机（Aho-Corasick）
+ * 所有词条在创建时编译为一个自动机，之后对每个文件名只需从左到右扫描一遍，即可找出其中出现的全部词条，
+ * 耗时只与文件名长度和命中次数有关，与词条数量无关，几万个词条与几个词条的单个文件耗时基本相同。
+ *
+ * <p>状态转移以紧凑数组保存：根状态使用按字符直接索引的表，其它状态的转移按字符排序后二分查找，
+ * 不为每个状态创建对象。自动机创建后不再修改，可以被多个线程共享；扫描时的临时状态保存在 {@link Matcher} 中。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class TokenAutomaton {
+
+    private static final int ROOT = 0;
+
+    // 词条，按字符顺序排列，下标即词条编号
+    private final String[] tokens;
+    // 根状态按字符直接索引的转移表，0 表示没有转移（停留在根状态）
+    private final int[] rootNext;
+    // 状态 s 的转移位于 [edgeStart[s], edgeStart[s + 1])，按字符升序排列
+    private final int[] edgeStart;
+    private final char[] edgeLabel;
+    private final int[] edgeTarget;
+    // 失配时回退到的状态（最长的真后缀对应的状态）
+    private final int[] fail;
+    // 在该状态结束的词条长度和编号，长度为 0 表示没有词条在此结束
+    private final int[] tokenLength;
+    private final int[] tokenId;
+    // 沿失配链最近的、有词条结束的状态，0 表示没有
+    private final int[] output;
+    // 词条内容的指纹，词典内容相同时相同
+    final long fingerprint;
+
+    /**
+     * 从词典文件创建自动机
+     * 文件为 UTF-8 编码，每行一个词条，首尾空白被忽略，空行和 # 开头的行被跳过
+     *
+     * @param file 词典文件
+     * @return 自动机
+     * @throws IOException 读取失败时抛出
+     */
+    static TokenAutomaton load(Path file) throws IOException {
+        TreeSet<String> tokens = new TreeSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // 去掉 Windows 记事本写入的 BOM
+                if (tokens.isEmpty() && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                    line = line.substring(1);
+                }
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    tokens.add(line);
+                }
+            }
+        }
+        return of(tokens);
+    }
+
+    /**
+     * 由词条集合创建自动机，重复的词条只保留一个
+     *
+     * @param tokens 词条，不能为空字符串
+     * @return 自动机
+     */
+    static TokenAutomaton of(Collection<String> tokens) {
+        TreeSet<String> sorted = new TreeSet<>(tokens);
+        if (sorted.isEmpty()) {
+            throw new IllegalArgumentException("词典中没有词条");
+        }
+        if (sorted.first().isEmpty()) {
+            throw new IllegalArgumentException("词条不能为空");
+        }
+        return new TokenAutomaton(sorted.toArray(new String[0]));
+    }
+
+    private TokenAutomaton(String[] tokens) {
+        this.tokens = tokens;
+
+        // 构建字典树：词条已排序，同一状态下新出现的字符总是不小于已有的字符，
+        // 因此要找的子状态只可能是最后创建的那个，兄弟链表也天然按字符升序排列
+        int capacity = 1;
+        for (String token : tokens) {
+            capacity += token.length();
+        }
+        char[] label = new char[capacity];
+        int[] firstChild = new int[capacity];
+        int[] lastChild = new int[capacity];
+        int[] nextSibling = new int[capacity];
+        int[] length = new int[capacity];
+        int[] id = new int[capacity];
+        int states = 1;
+        long hash = 0xcbf29ce484222325L;
+        for (int t = 0; t < tokens.length; t++) {
+            String token = tokens[t];
+            int state = ROOT;
+            for (int i = 0; i < token.length(); i++) {
+                char c = token.charAt(i);
+                int child = lastChild[state];
+                if (child == 0 || label[child] != c) {
+                    child = states++;
+                    label[child] = c;
+                    if (lastChild[state] == 0) {
+                        firstChild[state] = child;
+                    } else {
+                        nextSibling[lastChild[state]] = child;
+                    }
+                    lastChild[state] = child;
+                }
+                state = child;
+                hash = (hash ^ c) * 0x100000001b3L;
+            }
+            length[state] = token.length();
+            id[state] = t;
+            hash = (hash ^ 0xFFFF) * 0x100000001b3L;
+        }
+        this.fingerprint = hash;
+
+        // 转换为按状态连续存放的转移数组
+        edgeStart = new int[states + 1];
+        edgeLabel = new char[states - 1];
+        edgeTarget = new int[states - 1];
+        int edges = 0;
+        for (int s = 0; s < states; s++) {
+            edgeStart[s] = edges;
+            for (int child = firstChild[s]; child != 0; child = nextSibling[child]) {
+                edgeLabel[edges] = label[child];
+                edgeTarget[edges] = child;
+                edges++;
+            }
+        }
+        edgeStart[states] = edges;
+        tokenLength = Arrays.copyOf(length, states);
+        tokenId = Arrays.copyOf(id, states);
+
+        // 按层次遍历计算失配链，较浅状态的失配链总是先于较深的状态算好
+        rootNext = new int[Character.MAX_VALUE + 1];
+        fail = new int[states];
+        output = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int e = edgeStart[ROOT]; e < edgeStart[ROOT + 1]; e++) {
+            rootNext[edgeLabel[e]] = edgeTarget[e];
+            queue[tail++] = edgeTarget[e];
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int e = edgeStart[state]; e < edgeStart[state + 1]; e++) {
+                int child = edgeTarget[e];
+                int target = next(fail[state], edgeLabel[e]);
+                fail[child] = target;
+                output[child] = tokenLength[target] > 0 ? target : output[target];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * 词条数量
+     *
+     * @return 词条数量
+     */
+    int size() {
+        return tokens.length;
+    }
+
+    /**
+     * 按编号取词条
+     *
+     * @param id 词条编号
+     * @return 词条
+     */
+    String token(int id) {
+        return tokens[id];
+    }
+
+    /**
+     * 读入一个字符后的状态，沿失配链回退直到存在该字符的转移或回到根状态
+     *
+     * @param state 当前状态
+     * @param c     字符
+     * @return 新状态
+     */
+    private int next(int state, char c) {
+        while (state != ROOT) {
+            int low = edgeStart[state];
+            int high = edgeStart[state + 1] - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char label = edgeLabel[mid];
+                if (label < c) {
+                    low = mid + 1;
+                } else if (label > c) {
+                    high = mid - 1;
+                } else {
+                    return edgeTarget[mid];
+                }
+            }
+            state = fail[state];
+        }
+        return rootNext[c];
+    }
+
+    /**
+     * 创建匹配器，匹配器复用内部缓冲区，不是线程安全的，每个线程需要各自创建
+     *
+     * @return 匹配器
+     */
+    Matcher matcher() {
+        return new Matcher();
+    }
+
+    /**
+     * 在文本中查找词条的匹配器
+     * 结果为互不重叠的匹配：从左到右取最靠左的匹配，同一位置开始的多个词条取最长的一个
+     */
+    final class Matcher {
+        // 以每个位置开始的最长词条的长度和编号
+        private int[] longest = new int[64];
+        private int[] longestId = new int[64];
+        // 选出的匹配
+        private int[] starts = new int[16];
+        private int[] ids = new int[16];
+        private int count;
+
+        private Matcher() {
+        }
+
+        /**
+         * 扫描文本，找出全部互不重叠的匹配
+         *
+         * @param text 文本
+         * @return 匹配数量
+         */
+        int find(String text) {
+            int n = text.length();
+            if (longest.length < n) {
+                longest = new int[Math.max(n, longest.length * 2)];
+                longestId = new int[longest.length];
+            }
+            Arrays.fill(longest, 0, n, 0);
+
+            // 一遍扫描记录每个位置开始的最长词条
+            int state = ROOT;
+            for (int i = 0; i < n; i++) {
+                state = next(state, text.charAt(i));
+                for (int hit = tokenLength[state] > 0 ? state : output[state]; hit != 0; hit = output[hit]) {
+                    int from = i + 1 - tokenLength[hit];
+                    if (tokenLength[hit] > longest[from]) {
+                        longest[from] = tokenLength[hit];
+                        longestId[from] = tokenId[hit];
+                    }
+                }
+            }
+
+            // 从左到右选出互不重叠的匹配
+            count = 0;
+            for (int i = 0; i < n; ) {
+                if (longest[i] == 0) {
+                    i++;
+                    continue;
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                starts[count] = i;
+                ids[count] = longestId[i];
+                count++;
+                i += longest[i];
+            }
+            return count;
+        }
+
+        int start(int index) {
+            return starts[index];
+        }
+
+        int end(int index) {
+            return starts[index] + tokens[ids[index]].length();
+        }
+
+        int token(int index) {
+            return ids[index];
+        }
+    }
+}
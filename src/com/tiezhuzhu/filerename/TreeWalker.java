@@ -0,0 +1,322 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 目录树遍历器
+ * 基于 ForkJoin 工作窃取线程池递归遍历目录树，每个子目录作为一个独立任务并行扫描和匹配，
+ * 最后按目录遍历顺序合并为一个预览列表，可与普通模式一样整体执行和撤销。
+ *
+ * <p>符号链接指向的目录不会被进入，避免目录环导致无限递归。
+ * 被 {@link EntryFilter} 按名称排除的目录项不读取属性，被排除的目录也不再递归。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class TreeWalker {
+
+    // 不限制递归深度
+    static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+    private final int maxDepth;
+    private final int parallelism;
+    // 每个工作线程持有独立的规则副本
+    private final ThreadLocal<List<RenameRule>> threadRules;
+    // 无法读取的子目录数量
+    private final AtomicInteger failedDirectories = new AtomicInteger();
+    // 扫描过的目录数量
+    private final AtomicInteger scannedDirectories = new AtomicInteger();
+    // 增量模式下自上次快照以来没有变化、直接跳过的目录数量
+    private final AtomicInteger unchangedDirectories = new AtomicInteger();
+    // 增量快照，为 null 时全量扫描
+    private final DirectorySnapshot snapshot;
+    // 各目录检测到的重命名冲突
+    private final Queue<ConflictIndex.Conflict> conflicts = new ConcurrentLinkedQueue<>();
+    // 目录项过滤条件
+    private final EntryFilter filter = EntryFilter.defaults();
+
+    /**
+     * 创建目录树遍历器
+     *
+     * @param rules       规则链
+     * @param maxDepth    最大递归深度，0 表示只处理根目录，{@link #UNLIMITED_DEPTH} 表示不限
+     * @param parallelism 并行线程数
+     * @param snapshot    增量快照，为 null 时全量扫描
+     */
+    TreeWalker(List<RenameRule> rules, int maxDepth, int parallelism, DirectorySnapshot snapshot) {
+        if (maxDepth < 0 || parallelism < 1) {
+            throw new IllegalArgumentException("递归深度不能为负数，并行线程数必须大于 0");
+        }
+        this.maxDepth = maxDepth;
+        this.parallelism = parallelism;
+        this.snapshot = snapshot;
+        this.threadRules = ThreadLocal.withInitial(() -> RenameRule.copyAll(rules));
+    }
+
+    /**
+     * 根据系统属性 {@code rename.scanThreads} 创建遍历器，默认并行数为 CPU 核数的 2 倍
+     *
+     * @param rules    规则链
+     * @param maxDepth 最大递归深度
+     * @param snapshot 增量快照，为 null 时全量扫描
+     * @return 目录树遍历器
+     */
+    static TreeWalker fromSystemProperties(List<RenameRule> rules, int maxDepth, DirectorySnapshot snapshot) {
+        int parallelism = Integer.getInteger("rename.scanThreads", Runtime.getRuntime().availableProcessors() * 2);
+        return new TreeWalker(rules, maxDepth, parallelism, snapshot);
+    }
+
+    /**
+     * 遍历目录树并生成预览列表
+     *
+     * @param root 根目录
+     * @return 预览列表，按目录遍历顺序排列
+     * @throws IOException 根目录无法打开时抛出
+     */
+    List<FileRenameTool.RenamePair> walk(Path root) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new DirectoryTask(root, 0));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 获取无法读取的子目录数量
+     *
+     * @return 遍历过程中无法读取的子目录数量
+     */
+    int failedDirectories() {
+        return failedDirectories.get();
+    }
+
+    /**
+     * 获取扫描过的目录数量
+     *
+     * @return 遍历过程中扫描过的目录数量
+     */
+    int scannedDirectories() {
+        return scannedDirectories.get();
+    }
+
+    /**
+     * 获取增量模式下直接跳过的目录数量
+     *
+     * @return 自上次快照以来没有变化的目录数量
+     */
+    int unchangedDirectories() {
+        return unchangedDirectories.get();
+    }
+
+    /**
+     * 获取遍历过程中检测到的重命名冲突
+     *
+     * @return 冲突列表
+     */
+    List<ConflictIndex.Conflict> conflicts() {
+        return new ArrayList<>(conflicts);
+    }
+
+    /**
+     * 单个目录的扫描任务
+     * 先为子目录派生任务，再在当前线程匹配本目录的文件，最后按顺序合并子任务结果；任务不会被序列化
+     */
+    @SuppressWarnings("serial")
+    private final class DirectoryTask extends RecursiveTask<List<FileRenameTool.RenamePair>> {
+        private final Path dir;
+        private final int depth;
+
+        DirectoryTask(Path dir, int depth) {
+            this.dir = dir;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<FileRenameTool.RenamePair> compute() {
+            List<FileRenameTool.RenamePair> result = new ArrayList<>();
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            try {
+                scan(result, subtasks);
+            } catch (IOException | DirectoryIteratorException e) {
+                if (depth == 0) {
+                    throw e instanceof IOException
+                            ? new UncheckedIOException((IOException) e)
+                            : (DirectoryIteratorException) e;
+                }
+                // 子目录读取失败（如权限不足）时跳过该目录，不影响其它目录
+                failedDirectories.incrementAndGet();
+            }
+            for (DirectoryTask subtask : subtasks) {
+                result.addAll(subtask.join());
+            }
+            return result;
+        }
+
+        /**
+         * 扫描当前目录：匹配文件并检查冲突，同时为子目录派生任务
+         *
+         * @param result   当前目录的预览结果
+         * @param subtasks 已派生的子目录任务
+         * @throws IOException 目录无法打开时抛出
+         */
+        private void scan(List<FileRenameTool.RenamePair> result, List<DirectoryTask> subtasks) throws IOException {
+            scannedDirectories.incrementAndGet();
+            DirectorySnapshot.Scan scan = snapshot == null ? null : snapshot.begin(dir);
+            if (scan != null && scan.unchanged()) {
+                // 目录没有变化，不再列目录，只按快照中的子目录继续递归
+                unchangedDirectories.incrementAndGet();
+                for (String name : scan.knownSubdirectories()) {
+                    forkSubdirectory(dir.resolve(name), subtasks);
+                }
+                scan.finish();
+                return;
+            }
+
+            List<RenameRule> localRules = threadRules.get();
+            Set<String> existingNames = new HashSet<>();
+            // 规则需要读取文件内容时，先收集普通文件，列完目录后再并行读取和匹配；
+            // 按顺序编号时先收集全部普通文件，列完目录后排序再编号
+            FileSequence sequence = FileSequence.forRules(localRules);
+            boolean readsContent = RenameRule.readsContent(localRules);
+            List<String> deferredNames = sequence == null && readsContent ? new ArrayList<>() : null;
+            RenameMetrics.Clock clock = RenameMetrics.startDirectory();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    String originalName = path.getFileName().toString();
+                    existingNames.add(ConflictIndex.key(originalName));
+                    clock.lap(RenameMetrics.Stage.LIST);
+                    // 上次已处理过的目录项不再读取属性和匹配，子目录仍需递归
+                    if (scan != null && scan.isKnown(originalName)) {
+                        if (scan.isKnownDirectory(originalName)) {
+                            scan.directory(originalName);
+                            forkSubdirectory(path, subtasks);
+                        } else {
+                            scan.settle(originalName);
+                        }
+                        clock.lap(RenameMetrics.Stage.FILTER);
+                        continue;
+                    }
+
+                    // 被排除的目录项（文件和目录）不读取属性，被排除的目录也不再递归
+                    if (filter.excludes(originalName)) {
+                        if (scan != null) {
+                            scan.settle(originalName);
+                        }
+                        clock.lap(RenameMetrics.Stage.FILTER);
+                        continue;
+                    }
+
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(path, filter.attributeType(), LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    } finally {
+                        clock.lap(RenameMetrics.Stage.STAT);
+                    }
+
+                    if (attributes.isDirectory()) {
+                        if (filter.excludesDirectory(originalName, attributes)) {
+                            // 只因隐藏属性被排除的目录不记入快照，属性变化后需要重新检查
+                            if (scan != null && filter.excludesDirectory(originalName, null)) {
+                                scan.settle(originalName);
+                            } else if (scan != null) {
+                                scan.revisit();
+                            }
+                        } else {
+                            if (scan != null) {
+                                scan.directory(originalName);
+                            }
+                            forkSubdirectory(path, subtasks);
+                        }
+                        continue;
+                    }
+
+                    String newName = null;
+                    // 符号链接按其指向的目标判断是否为普通文件
+                    if (attributes.isSymbolicLink() && filter.includes(originalName)) {
+                        attributes = FileRenameTool.candidateAttributes(path);
+                    }
+                    boolean skip = attributes == null || !filter.includes(originalName)
+                            || !(attributes.isRegularFile() && filter.accepts(attributes));
+                    clock.lap(RenameMetrics.Stage.FILTER);
+                    // 只因大小、修改时间等属性被过滤掉的文件不记入快照，属性变化后需要重新检查
+                    if (skip && scan != null && attributes != null && attributes.isRegularFile()
+                            && filter.includes(originalName)) {
+                        scan.revisit();
+                        continue;
+                    }
+                    if (!skip && sequence != null) {
+                        sequence.add(originalName, attributes);
+                        continue;
+                    }
+                    if (!skip && deferredNames != null) {
+                        deferredNames.add(originalName);
+                        continue;
+                    }
+                    if (!skip) {
+                        newName = RenameRule.applyAll(localRules, originalName);
+                        clock.lap(RenameMetrics.Stage.MATCH);
+                    }
+                    if (newName != null) {
+                        result.add(new FileRenameTool.RenamePair(dir, originalName, newName));
+                    } else if (scan != null) {
+                        scan.settle(originalName);
+                    }
+                }
+            }
+            if (sequence != null && !sequence.isEmpty()) {
+                deferredNames = sequence.sorted();
+                clock.lap(RenameMetrics.Stage.SORT);
+            }
+            if (deferredNames != null && !deferredNames.isEmpty()) {
+                String[] newNames = FileSequence.applyAll(localRules, dir, deferredNames);
+                clock.lap(readsContent ? RenameMetrics.Stage.CONTENT : RenameMetrics.Stage.MATCH);
+                for (int i = 0; i < newNames.length; i++) {
+                    if (newNames[i] != null) {
+                        result.add(new FileRenameTool.RenamePair(dir, deferredNames.get(i), newNames[i]));
+                    } else if (scan != null) {
+                        scan.settle(deferredNames.get(i));
+                    }
+                }
+            }
+            clock.finish();
+            if (scan != null) {
+                scan.finish();
+            }
+
+            // 冲突只可能发生在同一目录内，扫描完当前目录即可检查
+            // （待重命名的文件未记入快照，存在冲突的文件下次运行时会重新处理）
+            List<ConflictIndex.Conflict> found = new ArrayList<>();
+            ConflictIndex.resolve(result, existingNames, found);
+            conflicts.addAll(found);
+        }
+
+        private void forkSubdirectory(Path path, List<DirectoryTask> subtasks) {
+            if (depth < maxDepth) {
+                DirectoryTask subtask = new DirectoryTask(path, depth + 1);
+                subtask.fork();
+                subtasks.add(subtask);
+            }
+        }
+    }
+}
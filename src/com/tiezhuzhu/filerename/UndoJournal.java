@@ -0,0 +1,1466 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 持久化撤销日志
+ * 以追加写入的二进制文件记录每一批重命名操作，取代原有的内存历史栈。
+ * 每批重命名执行前先写入 BEGIN 和分块的 ENTRIES 记录并刷盘，执行后写入 COMMIT 记录（成功位图），
+ * 撤销后写入 UNDO 记录（整批或部分文件的位图）。程序异常退出时只有 BEGIN 没有 COMMIT 的批次会在下次启动时
+ * 被识别为未完成批次，可选择继续完成或回滚。
+ * 计划中有重命名环时，BEGIN 之后紧跟 PARKS 记录，列出环中先移到临时名称的文件及其临时名称；
+ * 这些文件移到临时名称后、开始逐轮重命名之前再写入 PARKED 记录，恢复时据此区分环尚未开始和已经完成。
+ *
+ * <p>记录格式：类型(1 字节) + 长度(4 字节) + 内容 + CRC32(4 字节)，文件末尾不完整或校验失败的记录会被截断。
+ * 文件名按差量写入 NAMES 记录：原名称只写与上一个原名称不同的后缀，新名称只写与原名称首尾相同部分之间的内容，
+ * 同一目录下连续的文件只写一次目录。每个批次在文件对之后写入 INDEX 记录，列出各分块的位置以及每个目录所在的分块，
+ * 回退某个目录或文件时只读取相关的分块。旧版本写入的 ENTRIES 记录仍可读取。
+ *
+ * <p>堆上只保留每个批次的概要信息，以及最近若干批次（总文件数不超过 {@link #HEAP_WINDOW_PAIRS}）的文件对，
+ * 更早的批次在撤销时再从磁盘读取。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class UndoJournal implements Closeable {
+
+    // 文件头魔数 "FRJ1"
+    private static final int MAGIC = 0x46524A31;
+    private static final int HEADER_SIZE = 4;
+
+    // 记录类型
+    private static final byte BEGIN = 1;
+    private static final byte ENTRIES = 2;
+    private static final byte COMMIT = 3;
+    private static final byte UNDO = 4;
+    private static final byte NAMES = 5;
+    private static final byte INDEX = 6;
+    private static final byte PARKS = 7;
+    private static final byte PARKED = 8;
+
+    // 每条 NAMES 记录最多包含的文件对数量和字节数
+    private static final int ENTRY_CHUNK = 4096;
+    private static final int ENTRY_CHUNK_BYTES = 1 << 20;
+    // 单条记录的最大长度，超出视为损坏
+    private static final int MAX_RECORD_SIZE = 64 << 20;
+    // 日志中保留的最大批次数，超过后在打开时压缩
+    private static final int MAX_BATCHES = 100;
+    // 堆上缓存的最近批次的文件对总数上限
+    private static final int HEAP_WINDOW_PAIRS = 100_000;
+    // 日志被其它实例占用时依次尝试的备用日志数量
+    private static final int MAX_SLOTS = 16;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FileLock lock;
+    // 批次索引，按写入顺序排列
+    private final List<Batch> batches = new ArrayList<>();
+    // 最近批次的文件对缓存
+    private final ArrayDeque<Batch> window = new ArrayDeque<>();
+    private int windowPairs;
+    private long nextId = 1;
+
+    /**
+     * 批次索引信息
+     */
+    static final class Batch {
+        final long id;             // 批次编号
+        final long offset;         // BEGIN 记录在日志中的位置
+        final int size;            // 文件对数量
+        long time;                 // 开始时间，0 表示未知（旧版本日志）
+        String root = "";          // 所有文件共同的上级目录
+        long commitOffset = -1;    // COMMIT 记录位置，-1 表示未完成
+        long indexOffset = -1;     // INDEX 记录位置，-1 表示没有（旧版本日志）
+        int succeeded;             // 执行成功的文件对数量
+        boolean undone;            // 是否已整批撤销
+        final BitSet undoneBits = new BitSet();  // 已单独撤销的文件对
+        int undoneCount;
+        List<FileRenameTool.RenamePair> cachedPairs;  // 已提交成功的文件对缓存，部分撤销后不再缓存
+        BitSet parked;             // 已移到临时名称的重命名环文件，null 表示尚未开始逐轮重命名
+        Index index;               // 分块与目录索引，按需读取
+
+        Batch(long id, long offset, int size) {
+            this.id = id;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        boolean isPending() {
+            return commitOffset < 0;
+        }
+
+        /**
+         * 仍处于已重命名状态、可以撤销的文件对数量
+         *
+         * @return 文件对数量
+         */
+        int remaining() {
+            return undone ? 0 : succeeded - undoneCount;
+        }
+
+        private void markUndone(BitSet bits) {
+            undoneBits.or(bits);
+            undoneCount = undoneBits.cardinality();
+        }
+    }
+
+    /**
+     * 批次的分块与目录索引
+     */
+    private static final class Index {
+        final long[] chunkOffsets;   // 各分块记录在日志中的位置
+        final int[] chunkStarts;     // 各分块第一个文件对的下标
+        final Map<Path, int[]> directories;  // 目录 -> 包含该目录文件的分块（升序）
+
+        Index(long[] chunkOffsets, int[] chunkStarts, Map<Path, int[]> directories) {
+            this.chunkOffsets = chunkOffsets;
+            this.chunkStarts = chunkStarts;
+            this.directories = directories;
+        }
+    }
+
+    /**
+     * 从批次中选出的、仍处于已重命名状态的文件对
+     */
+    static final class Selection {
+        final Batch batch;
+        final List<FileRenameTool.RenamePair> pairs;  // 文件对，文件对象指向重命名后的文件
+        final BitSet indices;  // 文件对在批次中的下标，与 pairs 按顺序一一对应
+
+        Selection(Batch batch, List<FileRenameTool.RenamePair> pairs, BitSet indices) {
+            this.batch = batch;
+            this.pairs = pairs;
+            this.indices = indices;
+        }
+    }
+
+    private UndoJournal(Path path, FileChannel channel, FileLock lock) {
+        this.path = path;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * 默认日志路径：系统属性 {@code rename.journal}，否则为用户目录下的 .file-rename-tool/undo.journal
+     *
+     * @return 日志路径
+     */
+    static Path defaultPath() {
+        String configured = System.getProperty("rename.journal");
+        if (configured != null && !configured.trim().isEmpty()) {
+            return Paths.get(configured.trim());
+        }
+        return Paths.get(System.getProperty("user.home"), ".file-rename-tool", "undo.journal");
+    }
+
+    /**
+     * 打开（或创建）撤销日志
+     * 如果日志已被其它实例占用，则改用同目录下第一个未被占用的备用日志（如 undo.journal.1），本次运行的撤销记录
+     * 不会与其它实例混在一起，也不会在退出时删除：备用日志中未完成的批次由下一个打开它的实例恢复，
+     * 之后某次独占打开主日志时，未被占用的备用日志会并入主日志，其中的记录随后即可查看和撤销
+     *
+     * @param path 日志路径
+     * @return 撤销日志
+     * @throws IOException 日志及全部备用日志都无法打开时抛出
+     */
+    static UndoJournal open(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        UndoJournal journal = tryOpen(path);
+        if (journal != null) {
+            try {
+                journal.absorbSlots();
+                if (journal.batches.size() > MAX_BATCHES) {
+                    return journal.compact();
+                }
+                return journal;
+            } catch (IOException | RuntimeException e) {
+                journal.close();
+                throw e;
+            }
+        }
+        for (int slot = 1; slot <= MAX_SLOTS; slot++) {
+            journal = tryOpen(slotPath(path, slot));
+            if (journal != null) {
+                System.out.println("警告: 撤销日志正被其它实例使用，本次改用 " + journal.path
+                        + "，之后单独运行时会并入主日志。");
+                return journal;
+            }
+        }
+        throw new IOException("撤销日志及全部 " + MAX_SLOTS + " 个备用日志都正被其它实例使用");
+    }
+
+    private static Path slotPath(Path path, int slot) {
+        return path.resolveSibling(path.getFileName() + "." + slot);
+    }
+
+    /**
+     * 打开并加载日志
+     *
+     * @param path 日志路径
+     * @return 撤销日志，已被其它实例占用时返回 null
+     * @throws IOException 日志无法打开或无法识别时抛出
+     */
+    private static UndoJournal tryOpen(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            return null;
+        }
+
+        UndoJournal journal = new UndoJournal(path, channel, lock);
+        try {
+            journal.load();
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 将未被占用的备用日志并入本日志：批次按原顺序追加、重新编号，之后删除备用日志
+     * 追加后、删除前异常退出时，下次打开会再并入一次，批次重复但不会丢失
+     *
+     * @throws IOException 读取或写入失败时抛出
+     */
+    private void absorbSlots() throws IOException {
+        boolean absorbed = false;
+        for (int slot = 1; slot <= MAX_SLOTS; slot++) {
+            Path slotPath = slotPath(path, slot);
+            if (!Files.exists(slotPath)) {
+                continue;
+            }
+            UndoJournal other = tryOpen(slotPath);
+            if (other == null) {
+                continue;
+            }
+            try {
+                long position = channel.size();
+                for (Batch batch : other.batches) {
+                    if (batch.isPending() || batch.remaining() > 0) {
+                        for (ByteBuffer record : other.encodeBatch(batch, nextId++)) {
+                            position += writeFully(record, position);
+                        }
+                    }
+                }
+                channel.force(true);
+            } finally {
+                other.close();
+            }
+            Files.delete(slotPath);
+            absorbed = true;
+        }
+        if (absorbed) {
+            batches.clear();
+            window.clear();
+            windowPairs = 0;
+            load();
+        }
+    }
+
+    /**
+     * 扫描日志文件，建立批次索引；末尾不完整的记录会被截断
+     *
+     * @throws IOException 读取失败时抛出
+     */
+    private void load() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC);
+            header.flip();
+            writeFully(header, 0);
+            channel.force(true);
+            return;
+        }
+
+        long position = HEADER_SIZE;
+        try (DataInputStream in = openReader(0)) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("无法识别的撤销日志文件: " + path);
+            }
+            while (true) {
+                Record record = Record.read(in);
+                if (record == null) {
+                    break;
+                }
+                apply(record, position);
+                position += record.encodedSize();
+            }
+        }
+        // 丢弃末尾不完整的记录（如写入过程中断电）
+        if (position < channel.size()) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 根据读取到的记录更新批次索引
+     *
+     * @param record   记录
+     * @param position 记录在日志中的位置
+     * @throws IOException 记录内容无法解析时抛出
+     */
+    private void apply(Record record, long position) throws IOException {
+        DataInputStream payload = record.payload();
+        long id = payload.readLong();
+        nextId = Math.max(nextId, id + 1);
+        switch (record.type) {
+            case BEGIN:
+                Batch batch = new Batch(id, position, payload.readInt());
+                // 旧版本的 BEGIN 记录没有时间和目录
+                if (payload.available() > 0) {
+                    batch.time = payload.readLong();
+                    batch.root = payload.readUTF();
+                }
+                batches.add(batch);
+                break;
+            case COMMIT:
+                Batch committed = find(id);
+                if (committed != null) {
+                    committed.commitOffset = position;
+                    committed.succeeded = payload.readInt();
+                }
+                break;
+            case INDEX:
+                Batch indexed = find(id);
+                if (indexed != null) {
+                    indexed.indexOffset = position;
+                }
+                break;
+            case PARKED:
+                Batch parked = find(id);
+                if (parked != null) {
+                    parked.parked = readBits(payload);
+                }
+                break;
+            case UNDO:
+                Batch undone = find(id);
+                if (undone == null) {
+                    break;
+                }
+                if (payload.available() > 0) {
+                    undone.markUndone(readBits(payload));
+                } else {
+                    undone.undone = true;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 压缩日志：只保留最近的 {@link #MAX_BATCHES} 个仍可撤销或未完成的批次，写入新文件后原子替换。
+     * 已单独撤销的文件对并入成功位图，旧格式的记录同时转换为差量格式
+     *
+     * @return 压缩后的新日志
+     * @throws IOException 压缩失败时抛出
+     */
+    private UndoJournal compact() throws IOException {
+        List<Batch> kept = new ArrayList<>();
+        for (Batch batch : batches) {
+            if (batch.isPending() || batch.remaining() > 0) {
+                kept.add(batch);
+            }
+        }
+        if (kept.size() > MAX_BATCHES) {
+            kept = new ArrayList<>(kept.subList(kept.size() - MAX_BATCHES, kept.size()));
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC);
+            header.flip();
+            out.write(header);
+            for (Batch batch : kept) {
+                for (ByteBuffer record : encodeBatch(batch, batch.id)) {
+                    out.write(record);
+                }
+            }
+            out.force(true);
+        }
+
+        close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    /**
+     * 重新编码一个批次：BEGIN、NAMES、INDEX，未完成时附带 PARKED，已完成时附带去掉已撤销文件的 COMMIT
+     *
+     * @param batch 批次
+     * @param id    新的批次编号
+     * @return 编码后的记录
+     * @throws IOException 读取失败时抛出
+     */
+    private List<ByteBuffer> encodeBatch(Batch batch, long id) throws IOException {
+        List<ByteBuffer> records = encodeBegin(id, batch.time, batch.root, readEntries(batch));
+        if (batch.isPending() && batch.parked != null) {
+            records.add(encodeRecord(PARKED, id, encodeBits(batch.parked)));
+        }
+        if (!batch.isPending()) {
+            BitSet successes = readSuccesses(batch);
+            successes.andNot(batch.undoneBits);
+            records.add(encodeCommit(id, successes));
+        }
+        return records;
+    }
+
+    /**
+     * 写入一个批次的 BEGIN 和 ENTRIES 记录并刷盘，应在执行重命名之前调用
+     *
+     * @param pairs 即将执行的文件对
+     * @return 批次编号
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized long begin(List<FileRenameTool.RenamePair> pairs) throws IOException {
+        long id = nextId++;
+        long time = System.currentTimeMillis();
+        String root = commonRoot(pairs);
+        long offset = channel.size();
+        long position = offset;
+        // 最后一条记录是 INDEX
+        long indexOffset = -1;
+        for (ByteBuffer record : encodeBegin(id, time, root, pairs)) {
+            indexOffset = position;
+            position += writeFully(record, position);
+        }
+        channel.force(false);
+        Batch batch = new Batch(id, offset, pairs.size());
+        batch.time = time;
+        batch.root = root;
+        batch.indexOffset = indexOffset;
+        batches.add(batch);
+        return id;
+    }
+
+    /**
+     * 写入 PARKED 记录并刷盘：重命名环中的文件已移到临时名称，即将开始逐轮重命名
+     *
+     * @param id     批次编号
+     * @param parked 已移到临时名称的文件对下标
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void parked(long id, BitSet parked) throws IOException {
+        Batch batch = find(id);
+        if (batch == null) {
+            throw new IllegalArgumentException("未知批次: " + id);
+        }
+        writeFully(encodeRecord(PARKED, id, encodeBits(parked)), channel.size());
+        channel.force(false);
+        batch.parked = (BitSet) parked.clone();
+    }
+
+    /**
+     * 写入批次的 COMMIT 记录并刷盘
+     *
+     * @param id          批次编号
+     * @param pairs       批次中的全部文件对（与 begin 时的顺序一致）
+     * @param successList 执行成功的文件对，顺序与 pairs 一致
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void commit(long id, List<FileRenameTool.RenamePair> pairs,
+                             List<FileRenameTool.RenamePair> successList) throws IOException {
+        // successList 是 pairs 的有序子序列，双指针即可得到成功位图
+        BitSet successes = new BitSet(pairs.size());
+        for (int i = 0, j = 0; i < pairs.size() && j < successList.size(); i++) {
+            if (pairs.get(i) == successList.get(j)) {
+                successes.set(i);
+                j++;
+            }
+        }
+        commit(id, successes);
+        Batch batch = find(id);
+        if (batch != null) {
+            remember(batch, successList);
+        }
+    }
+
+    /**
+     * 写入批次的 COMMIT 记录并刷盘
+     *
+     * @param id        批次编号
+     * @param successes 成功位图，下标对应 begin 时的文件对顺序
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void commit(long id, BitSet successes) throws IOException {
+        Batch batch = find(id);
+        if (batch == null) {
+            throw new IllegalArgumentException("未知批次: " + id);
+        }
+        long offset = channel.size();
+        writeFully(encodeCommit(id, successes), offset);
+        channel.force(false);
+        batch.commitOffset = offset;
+        batch.succeeded = successes.cardinality();
+    }
+
+    /**
+     * 标记批次中的部分文件对已撤销，全部撤销后该批次不再出现在可撤销列表中
+     *
+     * @param batch   批次
+     * @param indices 已撤销的文件对下标
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void markUndone(Batch batch, BitSet indices) throws IOException {
+        if (indices.isEmpty()) {
+            return;
+        }
+        writeFully(encodeRecord(UNDO, batch.id, encodeBits(indices)), channel.size());
+        channel.force(false);
+        batch.markUndone(indices);
+        forget(batch);
+    }
+
+    /**
+     * 获取最近一个可撤销的批次
+     *
+     * @return 批次，没有可撤销的批次时返回 null
+     */
+    synchronized Batch lastUndoable() {
+        for (int i = batches.size() - 1; i >= 0; i--) {
+            Batch batch = batches.get(i);
+            if (!batch.isPending() && batch.remaining() > 0) {
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按编号获取批次
+     *
+     * @param id 批次编号
+     * @return 批次，不存在时返回 null
+     */
+    synchronized Batch batch(long id) {
+        return find(id);
+    }
+
+    /**
+     * 按编号、开始时间和共同的上级目录获取批次
+     * 备用日志并入主日志时批次会重新编号，编号对应的批次与开始时间或目录不符时，按开始时间和目录查找
+     *
+     * @param id   批次编号
+     * @param time 开始时间
+     * @param root 所有文件共同的上级目录
+     * @return 批次，不存在时返回 null
+     */
+    synchronized Batch batch(long id, long time, String root) {
+        Batch batch = find(id);
+        if (batch != null && batch.time == time && batch.root.equals(root)) {
+            return batch;
+        }
+        for (int i = batches.size() - 1; i >= 0; i--) {
+            batch = batches.get(i);
+            if (batch.time == time && batch.root.equals(root)) {
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 选出批次中仍处于已重命名状态的文件对
+     * 指定路径时只选出该目录（含子目录）下的文件，或者重命名前后为该路径的单个文件；
+     * 通过目录索引只读取包含这些文件的分块，耗时与选中的文件数成正比
+     *
+     * @param batch  已提交的批次
+     * @param target 绝对路径，为 null 时选出整批
+     * @return 选中的文件对
+     * @throws IOException 读取失败时抛出
+     */
+    synchronized Selection select(Batch batch, Path target) throws IOException {
+        if (target == null) {
+            BitSet live = readSuccesses(batch);
+            live.andNot(batch.undoneBits);
+            return new Selection(batch, loadSucceeded(batch), live);
+        }
+        List<FileRenameTool.RenamePair> pairs = new ArrayList<>();
+        BitSet indices = new BitSet();
+        if (batch.remaining() == 0) {
+            return new Selection(batch, pairs, indices);
+        }
+        Index index = index(batch);
+        BitSet chunks = new BitSet(index.chunkOffsets.length);
+        Path parent = target.getParent();
+        for (Map.Entry<Path, int[]> entry : index.directories.entrySet()) {
+            if (entry.getKey().startsWith(target) || entry.getKey().equals(parent)) {
+                for (int chunk : entry.getValue()) {
+                    chunks.set(chunk);
+                }
+            }
+        }
+        if (chunks.isEmpty()) {
+            return new Selection(batch, pairs, indices);
+        }
+
+        BitSet live = readSuccesses(batch);
+        live.andNot(batch.undoneBits);
+        List<FileRenameTool.RenamePair> chunkPairs = new ArrayList<>(ENTRY_CHUNK);
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int chunk = chunks.nextSetBit(0); chunk >= 0; chunk = chunks.nextSetBit(chunk + 1)) {
+                reader.position(index.chunkOffsets[chunk]);
+                Record record = Record.read(new DataInputStream(
+                        new BufferedInputStream(Channels.newInputStream(reader), 1 << 16)));
+                if (record == null || (record.type != NAMES && record.type != ENTRIES)) {
+                    throw new IOException("撤销日志已损坏: 批次 " + batch.id);
+                }
+                chunkPairs.clear();
+                decodeEntries(record, chunkPairs);
+                int first = index.chunkStarts[chunk];
+                for (int i = 0; i < chunkPairs.size(); i++) {
+                    FileRenameTool.RenamePair pair = chunkPairs.get(i);
+                    if (live.get(first + i) && (pair.dir.startsWith(target)
+                            || pair.dir.resolve(pair.newName).equals(target)
+                            || pair.dir.resolve(pair.oldName).equals(target))) {
+                        pair.currentName = pair.newName;
+                        pairs.add(pair);
+                        indices.set(first + i);
+                    }
+                }
+            }
+        }
+        return new Selection(batch, pairs, indices);
+    }
+
+    /**
+     * 从最近的批次开始，找到第一个涉及指定目录或文件、且其中仍有可撤销文件的批次
+     *
+     * @param target 绝对路径
+     * @return 该批次中涉及此路径的文件对，没有时返回 null
+     * @throws IOException 读取失败时抛出
+     */
+    synchronized Selection lastTouching(Path target) throws IOException {
+        for (int i = batches.size() - 1; i >= 0; i--) {
+            Batch batch = batches.get(i);
+            if (batch.isPending() || batch.remaining() == 0) {
+                continue;
+            }
+            Selection selection = select(batch, target);
+            if (!selection.pairs.isEmpty()) {
+                return selection;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取所有未完成的批次（只有 BEGIN 没有 COMMIT）
+     *
+     * @return 未完成的批次
+     */
+    synchronized List<Batch> pendingBatches() {
+        List<Batch> pending = new ArrayList<>();
+        for (Batch batch : batches) {
+            if (batch.isPending()) {
+                pending.add(batch);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * 读取已提交批次中执行成功、且尚未撤销的文件对，文件对象指向重命名后的文件
+     *
+     * @param batch 批次
+     * @return 执行成功的文件对
+     * @throws IOException 读取失败时抛出
+     */
+    synchronized List<FileRenameTool.RenamePair> loadSucceeded(Batch batch) throws IOException {
+        if (batch.cachedPairs != null) {
+            return batch.cachedPairs;
+        }
+        List<FileRenameTool.RenamePair> pairs = readEntries(batch);
+        BitSet successes = readSuccesses(batch);
+        successes.andNot(batch.undoneBits);
+        List<FileRenameTool.RenamePair> succeeded = new ArrayList<>(successes.cardinality());
+        for (int i = successes.nextSetBit(0); i >= 0 && i < pairs.size(); i = successes.nextSetBit(i + 1)) {
+            FileRenameTool.RenamePair pair = pairs.get(i);
+            pair.currentName = pair.newName;
+            succeeded.add(pair);
+        }
+        return succeeded;
+    }
+
+    /**
+     * 读取批次中的全部文件对，文件对象指向重命名前的文件；重命名环中的文件同时带有临时名称
+     *
+     * @param batch 批次
+     * @return 文件对，顺序与 begin 时一致
+     * @throws IOException 读取失败时抛出
+     */
+    synchronized List<FileRenameTool.RenamePair> loadAll(Batch batch) throws IOException {
+        return readEntries(batch);
+    }
+
+    /**
+     * 将最近提交的批次放入堆上缓存，超出上限时淘汰最早的批次
+     *
+     * @param batch       批次
+     * @param successList 执行成功的文件对
+     */
+    private void remember(Batch batch, List<FileRenameTool.RenamePair> successList) {
+        if (successList.size() > HEAP_WINDOW_PAIRS) {
+            return;
+        }
+        batch.cachedPairs = successList;
+        window.addLast(batch);
+        windowPairs += successList.size();
+        Iterator<Batch> iterator = window.iterator();
+        while (windowPairs > HEAP_WINDOW_PAIRS && iterator.hasNext()) {
+            Batch oldest = iterator.next();
+            iterator.remove();
+            windowPairs -= oldest.cachedPairs.size();
+            oldest.cachedPairs = null;
+        }
+    }
+
+    /**
+     * 从堆上缓存中移除批次
+     *
+     * @param batch 批次
+     */
+    private void forget(Batch batch) {
+        if (batch.cachedPairs != null && window.remove(batch)) {
+            windowPairs -= batch.cachedPairs.size();
+        }
+        batch.cachedPairs = null;
+    }
+
+    private Batch find(long id) {
+        for (int i = batches.size() - 1; i >= 0; i--) {
+            if (batches.get(i).id == id) {
+                return batches.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从 BEGIN 记录开始读取批次的全部文件对记录
+     *
+     * @param batch 批次
+     * @return 文件对
+     * @throws IOException 读取失败时抛出
+     */
+    private List<FileRenameTool.RenamePair> readEntries(Batch batch) throws IOException {
+        List<FileRenameTool.RenamePair> pairs = new ArrayList<>(batch.size);
+        Record parks = null;
+        try (DataInputStream in = openReader(batch.offset)) {
+            Record begin = Record.read(in);
+            if (begin == null || begin.type != BEGIN) {
+                throw new IOException("撤销日志已损坏: 批次 " + batch.id);
+            }
+            while (pairs.size() < batch.size) {
+                Record record = Record.read(in);
+                if (record == null) {
+                    throw new IOException("撤销日志已损坏: 批次 " + batch.id + " 记录不完整");
+                }
+                if (record.id() != batch.id) {
+                    continue;
+                }
+                if (record.type == NAMES || record.type == ENTRIES) {
+                    decodeEntries(record, pairs);
+                } else if (record.type == PARKS) {
+                    parks = record;
+                }
+            }
+        }
+        if (parks != null) {
+            decodeParks(parks, pairs);
+        }
+        return pairs;
+    }
+
+    /**
+     * 获取批次的分块与目录索引：读取 INDEX 记录，旧版本日志没有该记录时扫描一遍文件对记录建立
+     *
+     * @param batch 已提交的批次
+     * @return 索引
+     * @throws IOException 读取失败时抛出
+     */
+    private Index index(Batch batch) throws IOException {
+        if (batch.index != null) {
+            return batch.index;
+        }
+        if (batch.indexOffset >= 0) {
+            try (DataInputStream in = openReader(batch.indexOffset)) {
+                Record record = Record.read(in);
+                if (record == null || record.type != INDEX) {
+                    throw new IOException("撤销日志已损坏: 批次 " + batch.id);
+                }
+                batch.index = decodeIndex(batch.offset, record.payload());
+            }
+            return batch.index;
+        }
+
+        List<Long> offsets = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        Map<Path, List<Integer>> directories = new LinkedHashMap<>();
+        List<FileRenameTool.RenamePair> chunk = new ArrayList<>(ENTRY_CHUNK);
+        int count = 0;
+        try (DataInputStream in = openReader(batch.offset)) {
+            long position = batch.offset;
+            Record begin = Record.read(in);
+            if (begin == null || begin.type != BEGIN) {
+                throw new IOException("撤销日志已损坏: 批次 " + batch.id);
+            }
+            position += begin.encodedSize();
+            while (count < batch.size) {
+                Record record = Record.read(in);
+                if (record == null) {
+                    throw new IOException("撤销日志已损坏: 批次 " + batch.id + " 记录不完整");
+                }
+                if (record.type == ENTRIES && record.id() == batch.id) {
+                    chunk.clear();
+                    decodeEntries(record, chunk);
+                    addChunk(directories, chunk, offsets.size());
+                    offsets.add(position);
+                    starts.add(count);
+                    count += chunk.size();
+                }
+                position += record.encodedSize();
+            }
+        }
+        long[] chunkOffsets = new long[offsets.size()];
+        int[] chunkStarts = new int[starts.size()];
+        for (int i = 0; i < chunkOffsets.length; i++) {
+            chunkOffsets[i] = offsets.get(i);
+            chunkStarts[i] = starts.get(i);
+        }
+        batch.index = new Index(chunkOffsets, chunkStarts, toArrays(directories));
+        return batch.index;
+    }
+
+    /**
+     * 记录分块中出现的目录
+     *
+     * @param directories 目录 -> 分块列表
+     * @param chunk       分块中的文件对
+     * @param chunkIndex  分块序号
+     */
+    private static void addChunk(Map<Path, List<Integer>> directories, List<FileRenameTool.RenamePair> chunk,
+                                 int chunkIndex) {
+        Path lastDir = null;
+        for (FileRenameTool.RenamePair pair : chunk) {
+            if (pair.dir == lastDir) {
+                continue;
+            }
+            lastDir = pair.dir;
+            List<Integer> chunks = directories.computeIfAbsent(pair.dir, dir -> new ArrayList<>());
+            if (chunks.isEmpty() || chunks.get(chunks.size() - 1) != chunkIndex) {
+                chunks.add(chunkIndex);
+            }
+        }
+    }
+
+    private static Map<Path, int[]> toArrays(Map<Path, List<Integer>> directories) {
+        Map<Path, int[]> result = new LinkedHashMap<>(directories.size() * 2);
+        for (Map.Entry<Path, List<Integer>> entry : directories.entrySet()) {
+            int[] chunks = new int[entry.getValue().size()];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = entry.getValue().get(i);
+            }
+            result.put(entry.getKey(), chunks);
+        }
+        return result;
+    }
+
+    /**
+     * 读取批次 COMMIT 记录中的成功位图
+     *
+     * @param batch 批次
+     * @return 成功位图，未完成的批次返回空位图
+     * @throws IOException 读取失败时抛出
+     */
+    private BitSet readSuccesses(Batch batch) throws IOException {
+        if (batch.isPending()) {
+            return new BitSet();
+        }
+        try (DataInputStream in = openReader(batch.commitOffset)) {
+            Record record = Record.read(in);
+            if (record == null || record.type != COMMIT) {
+                throw new IOException("撤销日志已损坏: 批次 " + batch.id);
+            }
+            DataInputStream payload = record.payload();
+            payload.readLong();
+            payload.readInt();
+            return readBits(payload);
+        }
+    }
+
+    private static BitSet readBits(DataInputStream in) throws IOException {
+        byte[] bits = new byte[in.readInt()];
+        in.readFully(bits);
+        return BitSet.valueOf(bits);
+    }
+
+    private DataInputStream openReader(long position) throws IOException {
+        FileChannel reader = FileChannel.open(path, StandardOpenOption.READ);
+        reader.position(position);
+        InputStream in = Channels.newInputStream(reader);
+        return new DataInputStream(new BufferedInputStream(in, 1 << 16));
+    }
+
+    private int writeFully(ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * 编码 BEGIN 记录、分块的 NAMES 记录以及最后的 INDEX 记录
+     * 每个分块都能独立解析：分块的第一个文件总是写入目录，原名称的差量也从空字符串开始
+     *
+     * @param id    批次编号
+     * @param time  开始时间
+     * @param root  所有文件共同的上级目录
+     * @param pairs 文件对
+     * @return 编码后的记录
+     * @throws IOException 编码失败时抛出
+     */
+    private static List<ByteBuffer> encodeBegin(long id, long time, String root,
+                                                List<FileRenameTool.RenamePair> pairs) throws IOException {
+        List<ByteBuffer> records = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(pairs.size());
+        out.writeLong(time);
+        out.writeUTF(root);
+        out.flush();
+        records.add(encodeRecord(BEGIN, id, bytes.toByteArray()));
+        ByteBuffer parks = encodeParks(id, pairs);
+        if (parks != null) {
+            records.add(parks);
+        }
+
+        // 分块位置相对于 BEGIN 记录
+        List<Long> offsets = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        Map<Path, List<Integer>> directories = new LinkedHashMap<>();
+        long offset = 0;
+        for (ByteBuffer record : records) {
+            offset += record.remaining();
+        }
+
+        bytes.reset();
+        Path lastDir = null;
+        String lastName = "";
+        int count = 0;
+        for (FileRenameTool.RenamePair pair : pairs) {
+            // 同一目录下的文件对共用目录对象，通常只需比较引用
+            boolean dirChanged = pair.dir != lastDir && !pair.dir.equals(lastDir);
+            int shared = commonPrefix(lastName, pair.oldName);
+            writeVarInt(out, shared << 1 | (dirChanged ? 1 : 0));
+            if (dirChanged) {
+                out.writeUTF(pair.dir.toAbsolutePath().toString());
+                lastDir = pair.dir;
+                List<Integer> chunks = directories.computeIfAbsent(pair.dir, dir -> new ArrayList<>());
+                if (chunks.isEmpty() || chunks.get(chunks.size() - 1) != offsets.size()) {
+                    chunks.add(offsets.size());
+                }
+            }
+            out.writeUTF(pair.oldName.substring(shared));
+            writeNewName(out, pair.oldName, pair.newName);
+            lastName = pair.oldName;
+            if (++count == ENTRY_CHUNK || bytes.size() >= ENTRY_CHUNK_BYTES) {
+                out.flush();
+                offset += addChunkRecord(records, id, bytes, offsets, counts, offset, count);
+                lastDir = null;
+                lastName = "";
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            out.flush();
+            addChunkRecord(records, id, bytes, offsets, counts, offset, count);
+        }
+
+        bytes.reset();
+        out.writeInt(offsets.size());
+        for (int i = 0; i < offsets.size(); i++) {
+            writeVarLong(out, offsets.get(i));
+            writeVarInt(out, counts.get(i));
+        }
+        out.writeInt(directories.size());
+        for (Map.Entry<Path, List<Integer>> entry : directories.entrySet()) {
+            out.writeUTF(entry.getKey().toAbsolutePath().toString());
+            writeVarInt(out, entry.getValue().size());
+            for (int chunk : entry.getValue()) {
+                writeVarInt(out, chunk);
+            }
+        }
+        out.flush();
+        records.add(encodeRecord(INDEX, id, bytes.toByteArray()));
+        return records;
+    }
+
+    /**
+     * 编码 PARKS 记录：重命名环中先移到临时名称的文件下标（与上一个下标的差）及其临时名称
+     *
+     * @param id    批次编号
+     * @param pairs 文件对
+     * @return 编码后的记录，没有重命名环时返回 null
+     * @throws IOException 编码失败时抛出
+     */
+    private static ByteBuffer encodeParks(long id, List<FileRenameTool.RenamePair> pairs) throws IOException {
+        ByteArrayOutputStream bytes = null;
+        DataOutputStream out = null;
+        int last = 0;
+        for (int i = 0; i < pairs.size(); i++) {
+            String parkName = pairs.get(i).parkName;
+            if (parkName == null) {
+                continue;
+            }
+            if (out == null) {
+                bytes = new ByteArrayOutputStream();
+                out = new DataOutputStream(bytes);
+            }
+            writeVarInt(out, i - last);
+            out.writeUTF(parkName);
+            last = i;
+        }
+        if (out == null) {
+            return null;
+        }
+        out.flush();
+        return encodeRecord(PARKS, id, bytes.toByteArray());
+    }
+
+    /**
+     * 解析 PARKS 记录，为对应的文件对设置临时名称
+     *
+     * @param record 记录
+     * @param pairs  批次中的全部文件对
+     * @throws IOException 内容无法解析时抛出
+     */
+    private static void decodeParks(Record record, List<FileRenameTool.RenamePair> pairs) throws IOException {
+        DataInputStream payload = record.payload();
+        payload.readLong();
+        int index = 0;
+        while (payload.available() > 0) {
+            index += readVarInt(payload);
+            if (index >= pairs.size()) {
+                throw new IOException("撤销日志已损坏: 临时名称的下标越界");
+            }
+            pairs.get(index).parkName = payload.readUTF();
+        }
+    }
+
+    private static int addChunkRecord(List<ByteBuffer> records, long id, ByteArrayOutputStream bytes,
+                                      List<Long> offsets, List<Integer> counts, long offset, int count) {
+        ByteBuffer record = encodeRecord(NAMES, id, bytes.toByteArray());
+        records.add(record);
+        offsets.add(offset);
+        counts.add(count);
+        bytes.reset();
+        return record.remaining();
+    }
+
+    /**
+     * 解析 INDEX 记录
+     *
+     * @param base    BEGIN 记录的位置
+     * @param payload 记录内容
+     * @return 索引
+     * @throws IOException 内容无法解析时抛出
+     */
+    private static Index decodeIndex(long base, DataInputStream payload) throws IOException {
+        payload.readLong();
+        int chunkCount = payload.readInt();
+        long[] chunkOffsets = new long[chunkCount];
+        int[] chunkStarts = new int[chunkCount];
+        int start = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            chunkOffsets[i] = base + readVarLong(payload);
+            chunkStarts[i] = start;
+            start += readVarInt(payload);
+        }
+        int dirCount = payload.readInt();
+        Map<Path, int[]> directories = new LinkedHashMap<>(dirCount * 2);
+        for (int i = 0; i < dirCount; i++) {
+            Path dir = Paths.get(payload.readUTF());
+            int[] chunks = new int[readVarInt(payload)];
+            for (int j = 0; j < chunks.length; j++) {
+                chunks[j] = readVarInt(payload);
+            }
+            directories.put(dir, chunks);
+        }
+        return new Index(chunkOffsets, chunkStarts, directories);
+    }
+
+    /**
+     * 解析一条 NAMES 或旧格式的 ENTRIES 记录，追加到文件对列表
+     *
+     * @param record 记录
+     * @param pairs  文件对输出，文件对象指向重命名前的文件
+     * @throws IOException 内容无法解析时抛出
+     */
+    private static void decodeEntries(Record record, List<FileRenameTool.RenamePair> pairs) throws IOException {
+        DataInputStream payload = record.payload();
+        payload.readLong();
+        Path dir = null;
+        if (record.type == ENTRIES) {
+            while (payload.available() > 0) {
+                if (payload.readBoolean()) {
+                    dir = Paths.get(payload.readUTF());
+                }
+                String oldName = payload.readUTF();
+                String newName = payload.readUTF();
+                pairs.add(new FileRenameTool.RenamePair(dir, oldName, newName));
+            }
+            return;
+        }
+        NameReader reader = new NameReader(record.payload, Long.BYTES);
+        while (reader.hasMore()) {
+            int header = reader.readVarInt();
+            if ((header & 1) != 0) {
+                dir = Paths.get(reader.readString());
+            }
+            String oldName = reader.readOldName(header >>> 1);
+            int prefix = reader.readVarInt();
+            int suffix = reader.readVarInt();
+            pairs.add(new FileRenameTool.RenamePair(dir, oldName, reader.readNewName(prefix, suffix)));
+        }
+    }
+
+    /**
+     * 直接在记录内容上解析 NAMES 记录，名称在复用的字符数组中还原，每个名称只创建一次字符串
+     */
+    private static final class NameReader {
+        private final byte[] data;
+        private int position;
+        private char[] oldName = new char[64];   // 上一个原名称，下一个原名称的差量在此基础上还原
+        private int oldLength;
+        private char[] newName = new char[64];
+
+        NameReader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        boolean hasMore() {
+            return position < data.length;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("撤销日志已损坏: 变长整数过长");
+        }
+
+        String readString() throws IOException {
+            char[] chars = new char[utfLength()];
+            return new String(chars, 0, readUtf(chars, 0));
+        }
+
+        String readOldName(int shared) throws IOException {
+            oldName = ensure(oldName, shared + utfLength());
+            oldLength = readUtf(oldName, shared);
+            return new String(oldName, 0, oldLength);
+        }
+
+        String readNewName(int prefix, int suffix) throws IOException {
+            newName = ensure(newName, prefix + suffix + utfLength());
+            System.arraycopy(oldName, 0, newName, 0, prefix);
+            int length = readUtf(newName, prefix);
+            System.arraycopy(oldName, oldLength - suffix, newName, length, suffix);
+            return new String(newName, 0, length + suffix);
+        }
+
+        /**
+         * 下一个字符串的字节数，也是其字符数的上限
+         */
+        private int utfLength() {
+            return (data[position] & 0xFF) << 8 | (data[position + 1] & 0xFF);
+        }
+
+        /**
+         * 读取 writeUTF 写入的字符串（2 字节长度 + 修改版 UTF-8），追加到字符数组
+         *
+         * @return 追加后的长度
+         */
+        private int readUtf(char[] chars, int at) throws IOException {
+            int end = position + 2 + utfLength();
+            if (end > data.length) {
+                throw new IOException("撤销日志已损坏: 名称越界");
+            }
+            position += 2;
+            while (position < end) {
+                int b = data[position++] & 0xFF;
+                if (b < 0x80) {
+                    chars[at++] = (char) b;
+                } else if ((b & 0xE0) == 0xC0) {
+                    chars[at++] = (char) ((b & 0x1F) << 6 | (data[position++] & 0x3F));
+                } else {
+                    chars[at++] = (char) ((b & 0x0F) << 12 | (data[position++] & 0x3F) << 6 | (data[position++] & 0x3F));
+                }
+            }
+            return at;
+        }
+
+        private static char[] ensure(char[] chars, int length) {
+            return chars.length >= length ? chars : Arrays.copyOf(chars, Math.max(length, chars.length * 2));
+        }
+    }
+
+    /**
+     * 写入新名称相对原名称的差量：首尾相同部分的长度，以及中间不同的内容
+     * 如 "Movie 2019.mkv" -> "[2019] Movie 2019.mkv" 只写入 "[2019] "
+     *
+     * @param out     输出流
+     * @param oldName 原名称
+     * @param newName 新名称
+     * @throws IOException 写入失败时抛出
+     */
+    private static void writeNewName(DataOutputStream out, String oldName, String newName) throws IOException {
+        int prefix = commonPrefix(oldName, newName);
+        int max = Math.min(oldName.length(), newName.length()) - prefix;
+        int suffix = 0;
+        while (suffix < max && oldName.charAt(oldName.length() - 1 - suffix)
+                == newName.charAt(newName.length() - 1 - suffix)) {
+            suffix++;
+        }
+        writeVarInt(out, prefix);
+        writeVarInt(out, suffix);
+        out.writeUTF(newName.substring(prefix, newName.length() - suffix));
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 所有文件共同的上级目录，用于在操作历史中显示
+     *
+     * @param pairs 文件对
+     * @return 共同的上级目录，没有时返回空字符串
+     */
+    private static String commonRoot(List<FileRenameTool.RenamePair> pairs) {
+        Path root = null;
+        Path lastDir = null;
+        for (FileRenameTool.RenamePair pair : pairs) {
+            if (pair.dir == lastDir) {
+                continue;
+            }
+            lastDir = pair.dir;
+            Path dir = pair.dir.toAbsolutePath();
+            if (root == null) {
+                root = dir;
+            }
+            while (root != null && !dir.startsWith(root)) {
+                root = root.getParent();
+            }
+            if (root == null) {
+                break;
+            }
+        }
+        return root == null ? "" : root.toString();
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("撤销日志已损坏: 变长整数过长");
+    }
+
+    private static ByteBuffer encodeCommit(long id, BitSet successes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] bits = successes.toByteArray();
+        out.writeInt(successes.cardinality());
+        out.writeInt(bits.length);
+        out.write(bits);
+        out.flush();
+        return encodeRecord(COMMIT, id, bytes.toByteArray());
+    }
+
+    private static byte[] encodeBits(BitSet bits) {
+        byte[] bytes = bits.toByteArray();
+        return ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).array();
+    }
+
+    /**
+     * 编码一条记录：类型 + 长度 + (批次编号 + 内容) + CRC32
+     *
+     * @param type 记录类型
+     * @param id   批次编号
+     * @param body 内容，可以为 null
+     * @return 编码后的记录
+     */
+    private static ByteBuffer encodeRecord(byte type, long id, byte[] body) {
+        int bodyLength = body == null ? 0 : body.length;
+        int length = Long.BYTES + bodyLength;
+        ByteBuffer buffer = ByteBuffer.allocate(1 + Integer.BYTES + length + Integer.BYTES);
+        buffer.put(type).putInt(length).putLong(id);
+        if (body != null) {
+            buffer.put(body);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 从日志中读出的一条记录
+     */
+    private static final class Record {
+        final byte type;
+        final byte[] payload;
+
+        private Record(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        /**
+         * 读取下一条记录
+         *
+         * @param in 输入流
+         * @return 记录，到达末尾或记录不完整、校验失败时返回 null
+         * @throws IOException 读取失败时抛出
+         */
+        static Record read(DataInputStream in) throws IOException {
+            try {
+                int type = in.read();
+                if (type < 0) {
+                    return null;
+                }
+                int length = in.readInt();
+                if (length < Long.BYTES || length > MAX_RECORD_SIZE) {
+                    return null;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                int expected = in.readInt();
+
+                CRC32 crc = new CRC32();
+                crc.update(type);
+                crc.update(ByteBuffer.allocate(Integer.BYTES).putInt(length).array());
+                crc.update(payload);
+                return (int) crc.getValue() == expected ? new Record((byte) type, payload) : null;
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        DataInputStream payload() {
+            return new DataInputStream(new ByteArrayInputStream(payload));
+        }
+
+        long id() {
+            return ByteBuffer.wrap(payload).getLong();
+        }
+
+        long encodedSize() {
+            return 1 + Integer.BYTES + payload.length + Integer.BYTES;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (lock.isValid()) {
+                lock.release();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * 获取日志路径
+     *
+     * @return 日志路径
+     */
+    Path path() {
+        return path;
+    }
+
+    /**
+     * 获取批次索引的只读视图
+     *
+     * @return 批次索引
+     */
+    List<Batch> batches() {
+        return Collections.unmodifiableList(batches);
+    }
+}
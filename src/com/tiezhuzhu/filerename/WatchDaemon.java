@@ -0,0 +1,449 @@
+package com.tiezhuzhu.filerename;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监听模式
+ * 基于 {@link WatchService} 持续监听目录，新文件出现后按规则链自动重命名，直到进程被终止（Ctrl+C）。
+ * 启动时先处理目录中已有的文件，之后只处理新出现的文件。
+ *
+ * <p>短时间内连续到达的事件会合并为一个批次：目录安静 {@code rename.watchQuiet} 毫秒（默认 500）后执行，
+ * 持续有文件写入时最迟在第一个事件后 {@code rename.watchMaxDelay} 毫秒（默认 5000）执行。
+ * 每个批次与普通重命名一样先写撤销日志再执行，可在交互模式中用 {@code u} 撤销。
+ *
+ * <p>已处理过的名称（含本工具重命名后的新名称）以 64 位哈希按目录记录，重命名本身产生的事件不会被再次处理；
+ * 事件队列溢出时重新列出该目录，也只处理未记录过的名称。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+final class WatchDaemon {
+
+    private static final long DEFAULT_QUIET_MILLIS = 500;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 5000;
+    // 暂时性失败（如文件仍被写入程序占用）的文件最多随后续批次重试的次数
+    private static final int MAX_REQUEUE = 10;
+    // 收到终止信号后等待当前批次完成的最长时间
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+
+    /**
+     * 一个被监听的目录
+     */
+    private static final class Watched {
+        final Path dir;
+        final int depth;
+        final WatchKey key;
+        // 已处理过的名称哈希
+        final Set<Long> handled = new HashSet<>();
+
+        Watched(Path dir, int depth, WatchKey key) {
+            this.dir = dir;
+            this.depth = depth;
+            this.key = key;
+        }
+    }
+
+    private final List<RenameRule> rules;
+    // 目录项过滤条件
+    private final EntryFilter filter = EntryFilter.defaults();
+    private final int maxDepth;
+    private final boolean dryRun;
+    private final PrintStream results;
+    private final long quietNanos;
+    private final long maxDelayNanos;
+    private final WatchService watcher;
+    private final Map<WatchKey, Watched> byKey = new HashMap<>();
+    private final Map<Path, Watched> byDir = new HashMap<>();
+    // 等待处理的名称，按目录分组
+    private final Map<Watched, Set<String>> pending = new LinkedHashMap<>();
+    // 暂时性失败的文件已重试的次数
+    private final Map<Path, Integer> requeued = new HashMap<>();
+    private long firstEventNanos;
+    private long lastEventNanos;
+
+    private volatile boolean stopping;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    // 汇总统计
+    private long batchCount;
+    private long errorCount;
+    private long plannedCount;
+    private long renamedCount;
+    private long conflictCount;
+    private final Map<RenameFailure, Integer> failureCounts = new EnumMap<>(RenameFailure.class);
+
+    /**
+     * 创建监听器
+     *
+     * @param rules    规则链
+     * @param maxDepth 监听的子目录深度，0 表示只监听指定目录
+     * @param dryRun   是否只输出计划而不执行
+     * @param results  机器可读结果的输出流
+     * @throws IOException 无法创建 WatchService 时抛出
+     */
+    WatchDaemon(List<RenameRule> rules, int maxDepth, boolean dryRun, PrintStream results) throws IOException {
+        this.rules = rules;
+        this.maxDepth = maxDepth;
+        this.dryRun = dryRun;
+        this.results = results;
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("rename.watchQuiet", DEFAULT_QUIET_MILLIS));
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(
+                Long.getLong("rename.watchMaxDelay", DEFAULT_MAX_DELAY_MILLIS));
+        this.watcher = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * 监听目录并持续处理新文件，直到进程被终止
+     *
+     * @param roots 要监听的目录
+     * @return 退出码
+     */
+    int run(List<Path> roots) {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "rename-watch-stop"));
+        long startTime = System.nanoTime();
+        try {
+            for (Path root : roots) {
+                scanDirectory(root.toAbsolutePath().normalize(), 0);
+            }
+            System.err.println(">>> 正在监听 " + byDir.size() + " 个目录，按 Ctrl+C 退出。");
+            loop();
+        } catch (ClosedWatchServiceException e) {
+            // 收到终止信号
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            printSummary(startTime);
+            stopped.countDown();
+        }
+        return errorCount == 0 && failedCount() == 0 && conflictCount == 0
+                ? BatchMode.EXIT_OK : BatchMode.EXIT_FAILURES;
+    }
+
+    /**
+     * 关闭监听并等待正在执行的批次完成，由终止信号触发
+     */
+    private void stop() {
+        stopping = true;
+        try {
+            watcher.close();
+            stopped.await(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            System.err.println("关闭监听失败: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() throws InterruptedException {
+        while (!stopping) {
+            WatchKey key;
+            if (pending.isEmpty()) {
+                key = watcher.take();
+            } else {
+                long wait = Math.min(lastEventNanos + quietNanos, firstEventNanos + maxDelayNanos) - System.nanoTime();
+                key = wait > 0 ? watcher.poll(wait, TimeUnit.NANOSECONDS) : null;
+            }
+            if (key != null) {
+                collect(key);
+            } else {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * 开始监听目录，并将目录中尚未处理过的目录项加入待处理队列；深度允许时递归监听子目录
+     *
+     * @param dir   目录
+     * @param depth 目录相对于监听根目录的深度
+     */
+    private void scanDirectory(Path dir, int depth) {
+        Watched watched = byDir.get(dir);
+        if (watched == null) {
+            try {
+                WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watched = new Watched(dir, depth, key);
+            } catch (IOException e) {
+                errorCount++;
+                System.err.println("警告: 无法监听目录 " + dir + ": " + e.getMessage());
+                return;
+            }
+            byKey.put(watched.key, watched);
+            byDir.put(dir, watched);
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                // 被排除的目录项不读取属性，被排除的目录也不监听
+                if (filter.excludes(name)) {
+                    continue;
+                }
+                if (depth < maxDepth && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    if (!byDir.containsKey(path) && !filter.excludesDirectory(name, null)) {
+                        scanDirectory(path, depth + 1);
+                    }
+                } else if (!watched.handled.contains(DirectorySnapshot.hash(name))) {
+                    enqueue(watched, name);
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            errorCount++;
+            System.err.println("警告: 无法读取目录 " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 取出一个目录的全部事件
+     *
+     * @param key 监听键
+     */
+    private void collect(WatchKey key) {
+        Watched watched = byKey.get(key);
+        if (watched == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                System.err.println("警告: 目录 " + watched.dir + " 的事件过多，重新扫描该目录。");
+                scanDirectory(watched.dir, watched.depth);
+                continue;
+            }
+
+            String name = event.context().toString();
+            Path path = watched.dir.resolve(name);
+            if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                watched.handled.remove(DirectorySnapshot.hash(name));
+                Set<String> names = pending.get(watched);
+                if (names != null) {
+                    names.remove(name);
+                }
+                unregister(path);
+            } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+                // 文件仍在写入，推迟所在批次
+                Set<String> names = pending.get(watched);
+                if (names != null && names.contains(name)) {
+                    lastEventNanos = System.nanoTime();
+                }
+            } else if (filter.excludes(name)) {
+                continue;
+            } else if (watched.depth < maxDepth && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                // 新目录：开始监听，并处理监听生效前已写入的文件
+                if (!filter.excludesDirectory(name, null)) {
+                    scanDirectory(path, watched.depth + 1);
+                }
+            } else if (!watched.handled.contains(DirectorySnapshot.hash(name))) {
+                // 本工具重命名产生的新名称已记录为处理过，不会再次处理
+                enqueue(watched, name);
+            }
+        }
+        if (!key.reset()) {
+            unregister(watched.dir);
+        }
+    }
+
+    private void enqueue(Watched watched, String name) {
+        long now = System.nanoTime();
+        if (pending.isEmpty()) {
+            firstEventNanos = now;
+        }
+        lastEventNanos = now;
+        pending.computeIfAbsent(watched, w -> new LinkedHashSet<>()).add(name);
+    }
+
+    /**
+     * 停止监听已删除或移走的目录及其全部子目录
+     *
+     * @param dir 目录
+     */
+    private void unregister(Path dir) {
+        if (!byDir.containsKey(dir)) {
+            return;
+        }
+        Iterator<Map.Entry<Path, Watched>> iterator = byDir.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Watched watched = iterator.next().getValue();
+            if (watched.dir.startsWith(dir)) {
+                watched.key.cancel();
+                byKey.remove(watched.key);
+                pending.remove(watched);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 对目录中待处理的普通文件并行读取内容并应用规则
+     *
+     * @param dir   目录
+     * @param names 待处理的名称
+     * @return 普通文件的名称到新名称的映射，无需重命名的新名称为 null
+     */
+    private Map<String, String> readContent(Path dir, Set<String> names) {
+        List<String> files = new ArrayList<>();
+        for (String name : names) {
+            if (!FileRenameTool.shouldSkipFile(name) && FileRenameTool.isCandidateFile(dir.resolve(name))) {
+                files.add(name);
+            }
+        }
+        Map<String, String> newNames = new HashMap<>();
+        String[] renamed = FileContent.applyAll(rules, dir, files);
+        for (int i = 0; i < renamed.length; i++) {
+            newNames.put(files.get(i), renamed[i]);
+        }
+        return newNames;
+    }
+
+    /**
+     * 将待处理队列作为一个批次生成计划并执行，并输出一行 JSON 结果
+     */
+    private void flush() {
+        long startTime = System.nanoTime();
+        long latency = startTime - firstEventNanos;
+        Map<Watched, Set<String>> batch = new LinkedHashMap<>(pending);
+        pending.clear();
+
+        List<FileRenameTool.RenamePair> plan = new ArrayList<>();
+        List<ConflictIndex.Conflict> conflicts = new ArrayList<>();
+        Map<Path, Watched> owners = new HashMap<>();
+        for (Map.Entry<Watched, Set<String>> entry : batch.entrySet()) {
+            Watched watched = entry.getKey();
+            List<FileRenameTool.RenamePair> dirPairs = new ArrayList<>();
+            Map<String, String> contentNames = RenameRule.readsContent(rules)
+                    ? readContent(watched.dir, entry.getValue()) : null;
+            for (String name : entry.getValue()) {
+                if (FileRenameTool.shouldSkipFile(name)) {
+                    watched.handled.add(DirectorySnapshot.hash(name));
+                    continue;
+                }
+                String newName = contentNames != null && contentNames.containsKey(name)
+                        ? contentNames.get(name) : RenameRule.applyAll(rules, name);
+                if (newName == null) {
+                    watched.handled.add(DirectorySnapshot.hash(name));
+                    continue;
+                }
+                // 文件可能在批次执行前已被删除或移走
+                Path path = watched.dir.resolve(name);
+                if (FileRenameTool.isCandidateFile(path)) {
+                    dirPairs.add(new FileRenameTool.RenamePair(watched.dir, name, newName));
+                } else if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                    watched.handled.add(DirectorySnapshot.hash(name));
+                }
+            }
+            ConflictIndex.resolveAgainstTargets(watched.dir, dirPairs, conflicts);
+            plan.addAll(dirPairs);
+            owners.put(watched.dir, watched);
+        }
+        if (plan.isEmpty() && conflicts.isEmpty()) {
+            return;
+        }
+
+        batchCount++;
+        PreviewPrinter.printConflicts(conflicts);
+        int renamed = 0;
+        if (!dryRun && !plan.isEmpty()) {
+            try {
+                renamed = FileRenameTool.renameAndRecord(plan).size();
+            } catch (IOException e) {
+                errorCount++;
+                System.err.println("写入撤销日志失败，本批次未执行: " + e.getMessage());
+                for (FileRenameTool.RenamePair pair : plan) {
+                    pair.failure = RenameFailure.IO_ERROR;
+                }
+            }
+        }
+        settle(plan, owners);
+
+        Map<RenameFailure, Integer> failures = RenameFailure.countAll(plan);
+        PreviewPrinter.printFailures(plan);
+        failures.forEach((reason, count) -> failureCounts.merge(reason, count, Integer::sum));
+        plannedCount += plan.size();
+        renamedCount += renamed;
+        conflictCount += conflicts.size();
+        results.println("{\"batch\":" + batchCount
+                + ",\"directories\":" + batch.size()
+                + ",\"planned\":" + plan.size()
+                + ",\"renamed\":" + renamed
+                + ",\"failed\":" + (dryRun ? 0 : plan.size() - renamed)
+                + ",\"conflicts\":" + conflicts.size()
+                + BatchMode.json(failures)
+                + ",\"latencyMs\":" + latency / 1_000_000
+                + ",\"elapsedMs\":" + (System.nanoTime() - startTime) / 1_000_000
+                + "}");
+        RenameMetrics.export();
+    }
+
+    /**
+     * 记录批次的处理结果：成功的文件以新名称记为已处理，暂时性失败的文件放回队列随后续批次重试
+     *
+     * @param plan   已执行的计划
+     * @param owners 目录到监听记录的索引
+     */
+    private void settle(List<FileRenameTool.RenamePair> plan, Map<Path, Watched> owners) {
+        for (FileRenameTool.RenamePair pair : plan) {
+            // 重新排队按原路径计数，重命名成功后当前路径已是新名称
+            Path source = pair.dir.resolve(pair.oldName);
+            Watched watched = owners.get(pair.dir);
+            if (dryRun) {
+                watched.handled.add(DirectorySnapshot.hash(pair.oldName));
+            } else if (pair.failure == null) {
+                watched.handled.add(DirectorySnapshot.hash(pair.newName));
+                requeued.remove(source);
+            } else if (pair.failure.transientError) {
+                int attempts = requeued.merge(source, 1, Integer::sum);
+                if (attempts <= MAX_REQUEUE) {
+                    enqueue(watched, pair.oldName);
+                } else {
+                    requeued.remove(source);
+                }
+            }
+        }
+    }
+
+    private long failedCount() {
+        return dryRun ? 0 : plannedCount - renamedCount;
+    }
+
+    private void printSummary(long startTime) {
+        results.println("{\"summary\":true"
+                + ",\"watch\":true"
+                + ",\"dryRun\":" + dryRun
+                + ",\"batches\":" + batchCount
+                + ",\"errors\":" + errorCount
+                + ",\"planned\":" + plannedCount
+                + ",\"renamed\":" + renamedCount
+                + ",\"failed\":" + failedCount()
+                + ",\"conflicts\":" + conflictCount
+                + BatchMode.json(failureCounts)
+                + ",\"elapsedMs\":" + (System.nanoTime() - startTime) / 1_000_000
+                + "}");
+        results.flush();
+    }
+}
@@ -0,0 +1,132 @@
+package com.tiezhuzhu.filerename;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 计划执行测试
+ * 中断后重新运行时已完成的重命名环不会被再次交换，同一目录出现在计划中多处时合并为一组执行。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+class PlanApplierTest {
+
+    @TempDir
+    Path dir;
+
+    private Path files;
+    private Path plan;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        files = Files.createDirectory(dir.resolve("files"));
+        plan = dir.resolve("plan" + PlanFile.JSONL_SUFFIX);
+        FileRenameTool.journal = UndoJournal.open(dir.resolve("undo.journal"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        FileRenameTool.journal.close();
+    }
+
+    /**
+     * 重命名完成、检查点完成行写入前中断：重新运行时按已提交的批次跳过，不会把环换回去
+     */
+    @Test
+    void finishedCycleIsNotSwappedBack() throws IOException {
+        createFiles();
+        PlanFile.write(plan, cycle());
+        assertEquals(BatchMode.EXIT_OK, apply());
+
+        Path checkpoint = PlanApplier.defaultCheckpoint(plan, 0, 1);
+        List<String> lines = Files.readAllLines(checkpoint);
+        Files.write(checkpoint, lines.subList(0, lines.size() - 1));
+        assertEquals(BatchMode.EXIT_OK, apply());
+        assertSwapped();
+    }
+
+    /**
+     * 批次已写入撤销日志、还没有开始重命名时中断：重新运行时继续完成该批次，环只交换一次
+     */
+    @Test
+    void pendingCycleIsCompletedOnce() throws IOException {
+        createFiles();
+        List<FileRenameTool.RenamePair> pairs = cycle();
+        PlanFile.write(plan, pairs);
+
+        List<FileRenameTool.RenamePair> batchPairs = cycle();
+        Set<String> existing = new HashSet<>(List.of("A", "B", "C"));
+        ConflictIndex.resolve(batchPairs, existing, new ArrayList<>());
+        long id = FileRenameTool.journal.begin(batchPairs);
+        try (PlanApplier.Checkpoint checkpoint = PlanApplier.Checkpoint.open(
+                PlanApplier.defaultCheckpoint(plan, 0, 1), Files.size(plan), 0, 1)) {
+            checkpoint.started(0);
+            checkpoint.begun(0, FileRenameTool.journal.batch(id));
+        }
+
+        assertEquals(BatchMode.EXIT_OK, apply());
+        assertSwapped();
+        assertEquals(0, FileRenameTool.journal.pendingBatches().size());
+    }
+
+    /**
+     * 同一目录被其它目录隔开出现两次：合并为一组后 A -> B 等待 B -> C 先执行，而不是因 B 已存在而冲突
+     */
+    @Test
+    void repeatedDirectoryRunsAsOneGroup() throws IOException {
+        createFiles();
+        Path other = Files.createDirectory(dir.resolve("other"));
+        Files.writeString(other.resolve("x"), "x");
+        PlanFile.write(plan, List.of(
+                new FileRenameTool.RenamePair(files, "A", "B"),
+                new FileRenameTool.RenamePair(other, "x", "y"),
+                new FileRenameTool.RenamePair(files, "B", "C2"),
+                new FileRenameTool.RenamePair(files, "A", "B")));
+        Files.delete(files.resolve("C"));
+
+        assertEquals(BatchMode.EXIT_OK, apply());
+        assertEquals("a", Files.readString(files.resolve("B")));
+        assertEquals("b", Files.readString(files.resolve("C2")));
+        assertEquals("x", Files.readString(other.resolve("y")));
+    }
+
+    private void createFiles() throws IOException {
+        Files.writeString(files.resolve("A"), "a");
+        Files.writeString(files.resolve("B"), "b");
+        Files.writeString(files.resolve("C"), "c");
+    }
+
+    private List<FileRenameTool.RenamePair> cycle() {
+        List<FileRenameTool.RenamePair> pairs = new ArrayList<>();
+        pairs.add(new FileRenameTool.RenamePair(files, "A", "B"));
+        pairs.add(new FileRenameTool.RenamePair(files, "B", "A"));
+        pairs.add(new FileRenameTool.RenamePair(files, "C", "D"));
+        return pairs;
+    }
+
+    private void assertSwapped() throws IOException {
+        assertEquals("b", Files.readString(files.resolve("A")));
+        assertEquals("a", Files.readString(files.resolve("B")));
+        assertEquals("c", Files.readString(files.resolve("D")));
+    }
+
+    private int apply() {
+        PrintStream results = new PrintStream(OutputStream.nullOutputStream());
+        return new PlanApplier(0, 1, 1, 1, false, PlanApplier.defaultCheckpoint(plan, 0, 1), results).run(plan);
+    }
+}
@@ -0,0 +1,89 @@
+package com.tiezhuzhu.filerename;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * 计划文件测试
+ * 写入后读出的文件对与原计划一致，含 ..、路径分隔符等越出所在目录的文件名的计划被拒绝。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+class PlanFileTest {
+
+    // 越出所在目录或无效的文件名
+    private static final String[] UNSAFE_NAMES = {
+            "", ".", "..", "../../escaped.txt", "../other/f", "sub/f", "sub\\f", "/etc/passwd"
+    };
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 跨越多个分块、多个目录的计划，读出的文件对与写入的一致，同一目录的连续文件对为一组
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {PlanFile.JSONL_SUFFIX, PlanFile.BINARY_SUFFIX})
+    void roundTrip(String suffix) throws IOException {
+        List<FileRenameTool.RenamePair> pairs = new ArrayList<>();
+        for (int d = 0; d < 3; d++) {
+            Path directory = dir.resolve("dir-" + d);
+            for (int i = 0; i < 5000; i++) {
+                String name = "IMG_" + i + ".jpg";
+                pairs.add(new FileRenameTool.RenamePair(directory, name, "[2019] " + name));
+            }
+        }
+        Path plan = dir.resolve("plan" + suffix);
+        PlanFile.write(plan, pairs);
+
+        List<List<FileRenameTool.RenamePair>> groups = new ArrayList<>();
+        try (PlanFile.Input input = PlanFile.openInput(plan)) {
+            List<FileRenameTool.RenamePair> group;
+            while ((group = input.nextGroup()) != null) {
+                groups.add(group);
+            }
+        }
+        assertEquals(3, groups.size());
+        int i = 0;
+        for (List<FileRenameTool.RenamePair> group : groups) {
+            for (FileRenameTool.RenamePair actual : group) {
+                FileRenameTool.RenamePair expected = pairs.get(i++);
+                assertEquals(expected.dir.toAbsolutePath(), actual.dir);
+                assertEquals(expected.oldName, actual.oldName);
+                assertEquals(expected.newName, actual.newName);
+            }
+        }
+        assertEquals(pairs.size(), i);
+    }
+
+    /**
+     * 原名或新名越出所在目录的计划被拒绝
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {PlanFile.JSONL_SUFFIX, PlanFile.BINARY_SUFFIX})
+    void rejectsUnsafeNames(String suffix) throws IOException {
+        Path unsafe = dir.resolve("unsafe" + suffix);
+        Path directory = dir.resolve("a").resolve("b");
+        for (String name : UNSAFE_NAMES) {
+            for (boolean inTarget : new boolean[]{true, false}) {
+                // 写入时不检查文件名，模拟在其它机器上生成或被篡改的计划
+                PlanFile.write(unsafe, List.of(inTarget
+                        ? new FileRenameTool.RenamePair(directory, "x.txt", name)
+                        : new FileRenameTool.RenamePair(directory, name, "x.txt")));
+                try (PlanFile.Input input = PlanFile.openInput(unsafe)) {
+                    assertThrows(IOException.class, input::nextGroup, "文件名 \"" + name + "\" 未被拒绝");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.tiezhuzhu.filerename;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 撤销日志测试
+ * 含非 BMP 字符（代理对被差量从中间截断）、与上一个名称或原名称没有共同前缀/后缀的文件名，
+ * 跨越分块边界、带临时名称的批次，在部分成功、部分撤销、重新打开和压缩之后按整批、目录和文件读出的结果都与写入的一致；
+ * 旧版本的 ENTRIES 批次同样能读出，并在压缩时无损转换为 NAMES 和 INDEX 记录。
+ *
+ * @author August Lee
+ * @since 2025/12/26 16:40
+ */
+class UndoJournalTest {
+
+    // 与 UndoJournal 中的记录格式一致，用于写出旧版本的日志
+    private static final int JOURNAL_MAGIC = 0x46524A31;
+    private static final byte BEGIN = 1;
+    private static final byte ENTRIES = 2;
+    private static final byte COMMIT = 3;
+    private static final int ENTRY_CHUNK = 4096;
+    // 超过该批次数后打开日志时压缩
+    private static final int MAX_BATCHES = 100;
+    // 测试用的文件名：原名称 -> 新名称
+    private static final String[][] TRICKY_NAMES = {
+            {"\uD83D\uDE00照片.jpg", "[2019] \uD83D\uDE00照片.jpg"},   // 非 BMP 字符，与新名称没有共同前缀
+            {"\uD83D\uDE00照片 2.jpg", "\uD83D\uDE00照片 2 [x].jpg"},  // 与上一个原名称共享完整的代理对
+            {"\uD83D\uDE01照片.jpg", "\uD83D\uDE00照片.jpg"},          // 与上一个原名称、与新名称都只共享高位代理
+            {"a\uD83D\uDE00", "a\uD83D\uDE01"},                    // 只有低位代理不同，没有共同后缀
+            {"\uD83D\uDE00b", "\uD83D\uDE01b"},                    // 共同前缀和后缀之间只有一个低位代理
+            {"abc", "xyz"},                                        // 没有共同前缀和后缀
+            {"same.txt", "same.txt.bak"},                          // 没有共同后缀
+            {"a [x] b", "a  b"},                                   // 差量为空
+            {"aa", "aaa"},
+            {"aaa", "aa"},
+            {"café naïve.mp3", "[2020] café naïve.mp3"},           // 两字节编码的字符
+            {"𠀀𠀁𠀂.txt", "𠀂𠀁𠀀.txt"},                            // 扩展区汉字
+    };
+    private static final String TRICKY_DIRECTORY = "目录\uD83D\uDE00";
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 目录名含非 ASCII 字符，平台的文件名编码无法表示时（如 C 区域设置）跳过
+     */
+    @BeforeEach
+    void requireUnicodePaths() {
+        String encoding = System.getProperty("sun.jnu.encoding");
+        Charset charset = encoding != null && Charset.isSupported(encoding)
+                ? Charset.forName(encoding) : Charset.defaultCharset();
+        assumeTrue(charset.newEncoder().canEncode(TRICKY_DIRECTORY), "文件名编码不支持非 ASCII 字符，需在 UTF-8 区域设置下运行");
+    }
+
+    /**
+     * 新格式批次在部分成功、部分撤销、重新打开和压缩后读出的内容与写入的一致
+     */
+    @Test
+    void roundTrip() throws IOException {
+        Path journalPath = dir.resolve("check.journal");
+        List<FileRenameTool.RenamePair> pairs = checkPairs();
+        BitSet live = new BitSet(pairs.size());
+        List<FileRenameTool.RenamePair> successList = new ArrayList<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            if (i % 5 != 0) {
+                live.set(i);
+                successList.add(pairs.get(i));
+            }
+        }
+
+        UndoJournal check = UndoJournal.open(journalPath);
+        long id = check.begin(pairs);
+        check.commit(id, pairs, successList);
+        verify(check, id, pairs, live, "提交后");
+
+        BitSet undone = new BitSet();
+        for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+            if (i % 7 == 0) {
+                undone.set(i);
+            }
+        }
+        check.markUndone(check.batch(id), undone);
+        live.andNot(undone);
+        verify(check, id, pairs, live, "部分撤销后");
+        check.close();
+
+        check = UndoJournal.open(journalPath);
+        verify(check, id, pairs, live, "重新打开后");
+        check = compact(check, journalPath);
+        verify(check, id, pairs, live, "压缩后");
+        check.close();
+    }
+
+    /**
+     * 旧版本只有 ENTRIES 记录的批次可以读出，压缩后转换为 NAMES 和 INDEX 记录且内容不变
+     */
+    @Test
+    void legacyEntries() throws IOException {
+        Path journalPath = dir.resolve("legacy.journal");
+        List<FileRenameTool.RenamePair> pairs = checkPairs();
+        for (FileRenameTool.RenamePair pair : pairs) {
+            pair.parkName = null;
+        }
+        BitSet live = new BitSet(pairs.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            if (i % 3 != 0) {
+                live.set(i);
+            }
+        }
+        long id = 1;
+        Files.write(journalPath, legacyJournal(id, pairs, live));
+
+        UndoJournal check = UndoJournal.open(journalPath);
+        verify(check, id, pairs, live, "旧版本日志");
+        check = compact(check, journalPath);
+        assertTrue(check.batch(id).indexOffset >= 0, "旧版本日志压缩后没有转换为带 INDEX 的新格式");
+        verify(check, id, pairs, live, "旧版本日志压缩后");
+        check.close();
+    }
+
+    /**
+     * 测试用的批次：特殊文件名分布在多个目录中，并跨越分块边界
+     */
+    private List<FileRenameTool.RenamePair> checkPairs() {
+        Path parent = dir.resolve(TRICKY_DIRECTORY);
+        Path[] directories = {parent, parent.resolve("子目录"), dir.resolve("other")};
+        List<FileRenameTool.RenamePair> pairs = new ArrayList<>();
+        int serial = 0;
+        // 特殊文件名出现在第一个分块开头、第一个分块末尾到第二个分块开头以及最后一个分块中
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < TRICKY_NAMES.length; i++) {
+                Path directory = directories[(round + i / 4) % directories.length];
+                pairs.add(new FileRenameTool.RenamePair(directory, TRICKY_NAMES[i][0], TRICKY_NAMES[i][1]));
+            }
+            int fill = round == 0 ? ENTRY_CHUNK - 2 * TRICKY_NAMES.length + 5 : ENTRY_CHUNK / 2;
+            for (int i = 0; i < fill; i++, serial++) {
+                String name = (serial % 7 == 0 ? "\uD83C\uDFB5" : "")
+                        + "Series_" + (1900 + serial % 200) + "-episode " + serial + ".mkv";
+                pairs.add(new FileRenameTool.RenamePair(directories[serial / 500 % directories.length],
+                        name, "[2019] " + name));
+            }
+        }
+        for (int i = 0; i < pairs.size(); i += 97) {
+            pairs.get(i).parkName = pairs.get(i).oldName + ".rename-tmp";
+        }
+        return pairs;
+    }
+
+    /**
+     * 写入只有未被保留的批次，使批次数超过上限，重新打开时触发压缩
+     */
+    private static UndoJournal compact(UndoJournal check, Path journalPath) throws IOException {
+        List<FileRenameTool.RenamePair> filler = List.of(new FileRenameTool.RenamePair(
+                journalPath.getParent(), "filler", "filler 2"));
+        for (int i = 0; i < MAX_BATCHES; i++) {
+            check.commit(check.begin(filler), filler, Collections.emptyList());
+        }
+        long size = Files.size(journalPath);
+        check.close();
+        check = UndoJournal.open(journalPath);
+        assertTrue(Files.size(journalPath) < size, "撤销日志没有被压缩");
+        return check;
+    }
+
+    /**
+     * 比较日志中读出的批次与写入的文件对：整批、每个目录（含上级目录）和部分单个文件
+     */
+    private static void verify(UndoJournal check, long id, List<FileRenameTool.RenamePair> pairs, BitSet live,
+                               String stage) throws IOException {
+        UndoJournal.Batch batch = check.batch(id);
+        List<FileRenameTool.RenamePair> all = check.loadAll(batch);
+        BitSet everything = new BitSet(pairs.size());
+        everything.set(0, pairs.size());
+        compare(stage + "读出整批", pairs, everything, all, everything, true);
+
+        batch.cachedPairs = null;
+        UndoJournal.Selection selection = check.select(batch, null);
+        compare(stage + "选出整批", pairs, live, selection.pairs, selection.indices, false);
+
+        Set<Path> targets = new LinkedHashSet<>();
+        for (FileRenameTool.RenamePair pair : pairs) {
+            targets.add(pair.dir);
+            targets.add(pair.dir.getParent());
+        }
+        for (int i = 0; i < TRICKY_NAMES.length; i++) {
+            targets.add(pairs.get(i).dir.resolve(pairs.get(i).newName));
+            targets.add(pairs.get(i).dir.resolve(pairs.get(i).oldName));
+        }
+        for (Path target : targets) {
+            BitSet expected = new BitSet(pairs.size());
+            for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+                FileRenameTool.RenamePair pair = pairs.get(i);
+                if (pair.dir.startsWith(target) || pair.dir.resolve(pair.newName).equals(target)
+                        || pair.dir.resolve(pair.oldName).equals(target)) {
+                    expected.set(i);
+                }
+            }
+            selection = check.select(batch, target);
+            compare(stage + "选出 " + target, pairs, expected, selection.pairs, selection.indices, false);
+        }
+    }
+
+    private static void compare(String what, List<FileRenameTool.RenamePair> pairs, BitSet expected,
+                                List<FileRenameTool.RenamePair> actual, BitSet indices, boolean withParkNames) {
+        assertEquals(expected, indices, what);
+        assertEquals(expected.cardinality(), actual.size(), what);
+        int n = 0;
+        for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(i + 1), n++) {
+            FileRenameTool.RenamePair written = pairs.get(i);
+            FileRenameTool.RenamePair read = actual.get(n);
+            String message = what + ": 第 " + (i + 1) + " 个文件";
+            assertEquals(written.dir.toAbsolutePath(), read.dir, message);
+            assertEquals(written.oldName, read.oldName, message);
+            assertEquals(written.newName, read.newName, message);
+            if (withParkNames) {
+                assertEquals(written.parkName, read.parkName, message);
+            }
+        }
+    }
+
+    /**
+     * 按旧版本的格式写出日志：BEGIN 只有文件数，文件对保存在 ENTRIES 记录中，每条记录最多 4096 个文件对
+     */
+    private static byte[] legacyJournal(long id, List<FileRenameTool.RenamePair> pairs, BitSet successes)
+            throws IOException {
+        ByteArrayOutputStream journalBytes = new ByteArrayOutputStream();
+        DataOutputStream journalOut = new DataOutputStream(journalBytes);
+        journalOut.writeInt(JOURNAL_MAGIC);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(pairs.size());
+        writeRecord(journalOut, BEGIN, id, bytes);
+
+        Path lastDir = null;
+        int count = 0;
+        for (FileRenameTool.RenamePair pair : pairs) {
+            boolean dirChanged = !pair.dir.equals(lastDir);
+            out.writeBoolean(dirChanged);
+            if (dirChanged) {
+                out.writeUTF(pair.dir.toAbsolutePath().toString());
+                lastDir = pair.dir;
+            }
+            out.writeUTF(pair.oldName);
+            out.writeUTF(pair.newName);
+            if (++count == ENTRY_CHUNK) {
+                writeRecord(journalOut, ENTRIES, id, bytes);
+                lastDir = null;
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            writeRecord(journalOut, ENTRIES, id, bytes);
+        }
+
+        byte[] bits = successes.toByteArray();
+        out.writeInt(successes.cardinality());
+        out.writeInt(bits.length);
+        out.write(bits);
+        writeRecord(journalOut, COMMIT, id, bytes);
+        journalOut.flush();
+        return journalBytes.toByteArray();
+    }
+
+    /**
+     * 写出一条记录（类型 + 长度 + 批次编号和内容 + CRC32），写完后清空内容缓冲区
+     */
+    private static void writeRecord(DataOutputStream journalOut, byte type, long id, ByteArrayOutputStream body)
+            throws IOException {
+        byte[] content = body.toByteArray();
+        body.reset();
+        ByteBuffer record = ByteBuffer.allocate(1 + Integer.BYTES + Long.BYTES + content.length);
+        record.put(type).putInt(Long.BYTES + content.length).putLong(id).put(content);
+        CRC32 crc = new CRC32();
+        crc.update(record.array());
+        journalOut.write(record.array());
+        journalOut.writeInt((int) crc.getValue());
+    }
+}